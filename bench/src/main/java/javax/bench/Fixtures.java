@@ -0,0 +1,64 @@
+package javax.bench;
+
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import javax.sql.SQLDataSource;
+import javax.sqlite.SQLiteDatabase;
+
+/**
+ * Bases de datos SQLite en memoria para los benchmarks.
+ */
+final class Fixtures {
+
+  static final String SALES = "CREATE TABLE IF NOT EXISTS sales("
+          + "id INTEGER PRIMARY KEY, code TEXT UNIQUE, qty INTEGER, "
+          + "price REAL, amount REAL, note TEXT)";
+
+  private Fixtures() {
+  }
+
+  /** Abre una base de datos SQLite en memoria. */
+  static SQLiteDatabase openSQLite() throws SQLException {
+    String url = "jdbc:sqlite::memory:";
+    return new SQLiteDatabase(url, DriverManager.getConnection(url));
+  }
+
+  /**
+   * Data source de una sola coneccion a SQLite en memoria; la coneccion se
+   * conserva mientras el SQLDatabase prestado siga abierto.
+   */
+  static SQLDataSource sqliteDataSource() {
+    return new SQLDataSource()
+            .setDriverClassName("org.sqlite.JDBC")
+            .setUrl("jdbc:sqlite::memory:")
+            .setMaxPoolSize(1);
+  }
+
+  static Map<String, Object> sale(int i) {
+    Map<String, Object> row = new LinkedHashMap<String, Object>();
+    row.put("code", "C" + i);
+    row.put("qty", i % 100);
+    row.put("price", i * 0.25);
+    row.put("amount", (i % 7 == 0) ? null : i * 1.5);
+    row.put("note", "note " + (i % 13));
+    return row;
+  }
+
+  /** Crea la tabla sales con <code>rows</code> filas. */
+  static void createSales(SQLiteDatabase db, int rows) throws SQLException {
+    db.execSQL(SALES);
+    final int chunk = 10000;
+    for (int start = 0; start < rows; start += chunk) {
+      int end = Math.min(rows, start + chunk);
+      List<Map<String, Object>> list = new ArrayList<Map<String, Object>>(end - start);
+      for (int i = start; i < end; i++) {
+        list.add(sale(i));
+      }
+      db.insertAll("sales", list);
+    }
+  }
+}
@@ -0,0 +1,54 @@
+package javax.bench;
+
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import javax.sqlite.SQLiteDatabase;
+import javax.util.DBUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * {@link DBUtils#fromList} sobre resultados de 10k y 1M filas.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+public class FromListBenchmark {
+
+  @Param({"10000", "1000000"})
+  int rows;
+
+  SQLiteDatabase db;
+
+  @Setup(Level.Trial)
+  public void setUp() throws SQLException {
+    db = Fixtures.openSQLite();
+    Fixtures.createSales(db, rows);
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    db.close();
+  }
+
+  @Benchmark
+  public List<Map<String, Object>> fromList() throws SQLException {
+    return DBUtils.fromList(db.query("SELECT * FROM sales"), true);
+  }
+}
@@ -0,0 +1,72 @@
+package javax.bench;
+
+import java.sql.SQLException;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import javax.sql.SQLDataSource;
+import javax.sql.SQLDatabase;
+import javax.sqlite.SQLiteDatabase;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Insercion de una fila con {@link SQLDatabase#insert} y
+ * {@link SQLiteDatabase#insertWithOnConflict}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class InsertBenchmark {
+
+  SQLDataSource src;
+  SQLDatabase sqlDb;
+  SQLiteDatabase sqliteDb;
+  Map<String, Object> row;
+
+  @Setup(Level.Trial)
+  public void setUp() throws SQLException {
+    src = Fixtures.sqliteDataSource();
+    sqlDb = src.getDatabase();
+    sqlDb.execSQL(Fixtures.SALES);
+    sqliteDb = Fixtures.openSQLite();
+    sqliteDb.execSQL(Fixtures.SALES);
+    row = Fixtures.sale(0);
+    row.remove("code");
+  }
+
+  @Setup(Level.Iteration)
+  public void truncate() throws SQLException {
+    sqlDb.execSQL("DELETE FROM sales");
+    sqliteDb.execSQL("DELETE FROM sales");
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    sqlDb.close();
+    src.close();
+    sqliteDb.close();
+  }
+
+  @Benchmark
+  public long sqlDatabaseInsert() throws SQLException {
+    return sqlDb.insert("sales", row);
+  }
+
+  @Benchmark
+  public long sqliteInsertWithOnConflict() throws SQLException {
+    return sqliteDb.insertWithOnConflict("sales", row, "OR ABORT");
+  }
+}
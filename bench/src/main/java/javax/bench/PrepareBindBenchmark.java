@@ -0,0 +1,57 @@
+package javax.bench;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+import javax.sqlite.SQLiteDatabase;
+import javax.util.DBUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * {@link DBUtils#prepareBind} con parametros de distintos tipos.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PrepareBindBenchmark {
+
+  SQLiteDatabase db;
+  PreparedStatement ps;
+  Object[] args;
+
+  @Setup(Level.Trial)
+  public void setUp() throws SQLException {
+    db = Fixtures.openSQLite();
+    db.execSQL(Fixtures.SALES);
+    ps = db.compileStatement("SELECT * FROM sales WHERE id = ? AND code = ? "
+            + "AND qty = ? AND price = ? AND amount = ? AND note = ? "
+            + "AND id > ? AND code <> ?");
+    args = new Object[] {1L, "C1", 10, 2.5d, null, "note", 0, "X"};
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    DBUtils.closeQuietly(ps);
+    db.close();
+  }
+
+  @Benchmark
+  public PreparedStatement prepareBind() throws SQLException {
+    DBUtils.prepareBind(ps, args);
+    return ps;
+  }
+}
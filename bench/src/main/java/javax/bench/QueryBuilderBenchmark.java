@@ -0,0 +1,59 @@
+package javax.bench;
+
+import java.util.concurrent.TimeUnit;
+import javax.sql.QueryBuilder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Construccion del sql con {@link QueryBuilder#toString()}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class QueryBuilderBenchmark {
+
+  QueryBuilder query;
+
+  @Setup
+  public void setUp() {
+    QueryBuilder sub = new QueryBuilder()
+            .select("sale_id")
+            .from("refunds")
+            .where().clause("status", "=", "open").endWhere();
+    query = new QueryBuilder()
+            .select("s.id", "s.code", "c.name", "SUM(s.amount) AS total")
+            .from("sales s")
+            .leftJoin("customers c", "c.id = s.customer_id")
+            .where()
+              .clause("s.qty", ">", 10)
+              .and().between("s.price", 1.5, 99.5)
+              .and().in("s.code", "A1", "B2", "C3")
+              .and().not().in("s.id", sub)
+            .endWhere()
+            .groupBy("s.id, s.code, c.name")
+            .orderBy("total DESC")
+            .limit("0,50");
+  }
+
+  @Benchmark
+  public String build() {
+    return query.toString();
+  }
+
+  @Benchmark
+  public Object[] bindArgs() {
+    return query.getBindArgs();
+  }
+}
@@ -0,0 +1,84 @@
+package javax.bench;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+import javax.sql.SQLResultSet;
+import javax.sqlite.SQLiteDatabase;
+import javax.util.StatementCache;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Costo de leer a traves de {@link SQLResultSet} frente al ResultSet del
+ * driver; ambos usan la misma sentencia del {@link StatementCache}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ResultSetDelegationBenchmark {
+
+  static final int ROWS = 1000;
+
+  static final String SQL = "SELECT id, qty, price, code FROM sales";
+
+  SQLiteDatabase db;
+  StatementCache cache;
+
+  @Setup(Level.Trial)
+  public void setUp() throws SQLException {
+    db = Fixtures.openSQLite();
+    Fixtures.createSales(db, ROWS);
+    cache = db.getStatementCache();
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    db.close();
+  }
+
+  static double read(ResultSet rs) throws SQLException {
+    double sum = 0;
+    while (rs.next()) {
+      sum += rs.getLong(1) + rs.getInt(2) + rs.getDouble(3);
+      if (rs.getString(4) == null) sum--;
+    }
+    return sum;
+  }
+
+  @Benchmark
+  public double driverResultSet() throws SQLException {
+    PreparedStatement ps = cache.acquire(SQL);
+    ResultSet rs = ps.executeQuery();
+    try {
+      return read(rs);
+    } finally {
+      rs.close();
+      cache.release(ps);
+    }
+  }
+
+  @Benchmark
+  public double sqlResultSet() throws SQLException {
+    ResultSet rs = SQLResultSet.executeQuery(cache.acquire(SQL), cache);
+    try {
+      return read(rs);
+    } finally {
+      rs.close();
+    }
+  }
+}
@@ -0,0 +1,90 @@
+package javax.bench;
+
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import javax.sqlite.SQLiteDatabase;
+import javax.util.DBUtils;
+import javax.util.Rows;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compara la conversion de un resultado numerico con getObject
+ * ({@link DBUtils#fromList}) contra {@link Rows} con y sin columnas tipadas.
+ * Ejecutar con <code>-prof gc</code> para ver la asignacion por operacion.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RowsBenchmark {
+
+  private static final String SQL = "SELECT id, qty, price, amount FROM sales";
+
+  @Param({"10000"})
+  int rows;
+
+  SQLiteDatabase db;
+
+  @Setup(Level.Trial)
+  public void setUp() throws SQLException {
+    db = Fixtures.openSQLite();
+    Fixtures.createSales(db, rows);
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    db.close();
+  }
+
+  @Benchmark
+  public List<Map<String, Object>> getObjectList() throws SQLException {
+    return DBUtils.fromList(db.query(SQL), true);
+  }
+
+  @Benchmark
+  public Rows rowsUntyped() throws SQLException {
+    return Rows.from(db.query(SQL), true, false);
+  }
+
+  @Benchmark
+  public Rows rowsTyped() throws SQLException {
+    return Rows.from(db.query(SQL), true, true);
+  }
+
+  @Benchmark
+  public double sumGetObjectList() throws SQLException {
+    double sum = 0;
+    for (Map<String, Object> row : DBUtils.fromList(db.query(SQL), true)) {
+      Object amount = row.get("amount");
+      if (amount != null) sum += ((Number) amount).doubleValue();
+    }
+    return sum;
+  }
+
+  @Benchmark
+  public double sumRowsTyped() throws SQLException {
+    Rows result = Rows.from(db.query(SQL), true, true);
+    int amount = result.findColumn("amount");
+    double sum = 0;
+    for (int i = 0; i < result.size(); i++) {
+      sum += result.getDouble(i, amount);
+    }
+    return sum;
+  }
+}
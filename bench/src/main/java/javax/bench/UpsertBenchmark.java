@@ -0,0 +1,63 @@
+package javax.bench;
+
+import java.sql.SQLException;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import javax.sqlite.CreateOrUpdateStatus;
+import javax.sqlite.SQLiteDatabase;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * {@link SQLiteDatabase#upsert} (UPDATE y luego INSERT) frente a
+ * {@link SQLiteDatabase#upsertOnConflict} (una sola sentencia) con una mezcla
+ * de filas existentes y nuevas.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UpsertBenchmark {
+
+  static final int EXISTING = 10000;
+
+  SQLiteDatabase db;
+  int next;
+
+  @Setup(Level.Trial)
+  public void setUp() throws SQLException {
+    db = Fixtures.openSQLite();
+    Fixtures.createSales(db, EXISTING);
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    db.close();
+  }
+
+  @Benchmark
+  public CreateOrUpdateStatus upsert() {
+    // La mitad de las llaves ya existen.
+    int i = next++ % (EXISTING * 2);
+    Map<String, Object> row = Fixtures.sale(i);
+    return db.upsert("sales", row, "code = ?", row.get("code"));
+  }
+
+  @Benchmark
+  public CreateOrUpdateStatus upsertOnConflict() throws SQLException {
+    int i = next++ % (EXISTING * 2);
+    return db.upsertOnConflict("sales", Fixtures.sale(i), "code");
+  }
+}
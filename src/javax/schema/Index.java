@@ -2,6 +2,7 @@ package javax.schema;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.function.Function;
 import javax.util.DBUtils;
@@ -30,6 +31,14 @@ public class Index {
     this.columns.addAll(Arrays.asList(columns));
   }
 
+  public boolean isUnique() {
+    return unique;
+  }
+
+  public List<String> getColumns() {
+    return Collections.unmodifiableList(columns);
+  }
+
   @Override public String toString() {
     StringBuilder sql = new StringBuilder();
     sql.append("CREATE");
@@ -0,0 +1,245 @@
+package javax.schema;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import javax.sql.Database;
+import javax.util.DBUtils;
+
+/**
+ * Sugiere indices a partir de las consultas que se ejecutan.
+ *
+ * Registra por tabla las columnas usadas en el WHERE (por igualdad o por
+ * rango) y en el ORDER BY de las consultas de
+ * {@link javax.sql.QueryBuilder} (ver
+ * {@link javax.sql.QueryBuilder#setIndexAdvisor}). {@link #analyze} ejecuta
+ * <code>EXPLAIN QUERY PLAN</code> sobre cada consulta registrada y marca las
+ * que recorren toda la tabla; {@link #suggest} propone un {@link Index} por
+ * consulta: primero las columnas de igualdad, despues una de rango o las del
+ * ORDER BY.
+ *
+ * <pre>
+ * IndexAdvisor advisor = new IndexAdvisor();
+ * QueryBuilder.setIndexAdvisor(advisor);
+ * ...
+ * advisor.analyze(db);
+ * for (Index index : advisor.suggest(tables)) System.out.println(index);
+ * </pre>
+ */
+public class IndexAdvisor {
+
+  /** Formas de consulta que se recuerdan; despues se ignoran las nuevas. */
+  private static final int MAX_SHAPES = 1000;
+
+  private final Map<String, Shape> shapes = new LinkedHashMap<String, Shape>();
+
+  /**
+   * Registra una consulta.
+   *
+   * @param table tabla consultada
+   * @param equality columnas comparadas por igualdad (<code>=</code>,
+   *      <code>IN</code>, <code>IS</code>)
+   * @param range columnas comparadas por rango (<code>&lt;</code>,
+   *      <code>BETWEEN</code>, <code>LIKE</code>...)
+   * @param orderBy columnas del ORDER BY
+   * @param sql [opcional] la consulta, para {@link #analyze}
+   * @param bindArgs [opcional] parametros de la consulta
+   */
+  public synchronized void record(String table, List<String> equality,
+          List<String> range, List<String> orderBy, String sql, Object[] bindArgs) {
+    List<String> columns = indexColumns(equality, range, orderBy);
+    if (columns.isEmpty()) return;
+    String key = key(table) + ":" + columns;
+    Shape shape = shapes.get(key);
+    if (shape == null) {
+      if (shapes.size() >= MAX_SHAPES) return;
+      shape = new Shape(table, columns);
+      shapes.put(key, shape);
+    }
+    shape.count++;
+    if (sql != null && shape.sql == null) {
+      shape.sql = sql;
+      shape.bindArgs = bindArgs;
+    }
+  }
+
+  /**
+   * Columnas del indice: las de igualdad, despues una de rango; las del
+   * ORDER BY solo sirven si no hay rango.
+   */
+  private static List<String> indexColumns(List<String> equality,
+          List<String> range, List<String> orderBy) {
+    List<String> columns = new ArrayList<String>();
+    for (String col : equality) addColumn(columns, col);
+    if (!range.isEmpty()) {
+      addColumn(columns, range.get(0));
+    } else {
+      for (String col : orderBy) addColumn(columns, col);
+    }
+    return columns;
+  }
+
+  private static void addColumn(List<String> columns, String col) {
+    for (String it : columns) {
+      if (it.equalsIgnoreCase(col)) return;
+    }
+    columns.add(col);
+  }
+
+  private static String key(String name) {
+    return name.toLowerCase(Locale.ROOT);
+  }
+
+  /**
+   * Ejecuta <code>EXPLAIN QUERY PLAN</code> de cada consulta registrada.
+   *
+   * @return las consultas que recorren toda la tabla o que ordenan con un
+   *      b-tree temporal
+   */
+  public int analyze(Database db) throws SQLException {
+    List<Shape> list;
+    synchronized (this) {
+      list = new ArrayList<Shape>(shapes.values());
+    }
+    int count = 0;
+    for (Shape shape : list) {
+      if (shape.sql == null) continue;
+      boolean slow = isFullScan(db, shape.table, shape.sql, shape.bindArgs);
+      synchronized (this) {
+        shape.analyzed = true;
+        shape.fullScan = slow;
+      }
+      if (slow) count++;
+    }
+    return count;
+  }
+
+  /**
+   * @return @true si el plan de la consulta recorre toda la tabla
+   *      (<code>SCAN tabla</code> sin indice) u ordena con
+   *      <code>USE TEMP B-TREE FOR ORDER BY</code>
+   */
+  public static boolean isFullScan(Database db, String table, String sql,
+          Object... bindArgs) throws SQLException {
+    ResultSet rs = db.query("EXPLAIN QUERY PLAN " + sql, bindArgs);
+    try {
+      int detail = rs.getMetaData().getColumnCount();
+      String name = key(table);
+      while (rs.next()) {
+        String line = rs.getString(detail);
+        if (line == null) continue;
+        String text = key(line);
+        if (text.contains("temp b-tree for order by")) return true;
+        if ((text.startsWith("scan table " + name) || text.startsWith("scan " + name))
+                && !text.contains(" using ")) {
+          return true;
+        }
+      }
+      return false;
+    } finally {
+      DBUtils.closeQuietly(rs);
+    }
+  }
+
+  /** @return los indices sugeridos, de la consulta mas frecuente a la menos. */
+  public List<Index> suggest() {
+    return suggest(new Table[0]);
+  }
+
+  /**
+   * @param known tablas con los indices que ya existen; se omiten las
+   *      sugerencias que ya cubre un indice con las mismas primeras columnas
+   *
+   * @return los indices sugeridos, de la consulta mas frecuente a la menos.
+   *      Si se llamo {@link #analyze}, solo los de consultas que recorren
+   *      toda la tabla.
+   */
+  public List<Index> suggest(Table... known) {
+    List<Shape> list;
+    synchronized (this) {
+      list = new ArrayList<Shape>();
+      for (Shape shape : shapes.values()) {
+        if (!shape.analyzed || shape.fullScan) list.add(shape.copy());
+      }
+    }
+    Collections.sort(list, new Comparator<Shape>() {
+      @Override public int compare(Shape a, Shape b) {
+        return Long.compare(b.count, a.count);
+      }
+    });
+    List<Index> result = new ArrayList<Index>();
+    for (Shape shape : list) {
+      if (isCovered(shape, result) || isCovered(shape, known)) continue;
+      Index index = new Index(indexName(shape), shape.table);
+      index.columns(shape.columns.toArray(new String[0]));
+      result.add(index);
+    }
+    return result;
+  }
+
+  private static boolean isCovered(Shape shape, Table[] tables) {
+    for (Table table : tables) {
+      if (key(table.name).equals(key(shape.table))
+              && isCovered(shape, table.indexs)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static boolean isCovered(Shape shape, Iterable<Index> indexes) {
+    for (Index index : indexes) {
+      if (!key(index.tablename).equals(key(shape.table))) continue;
+      List<String> columns = index.getColumns();
+      if (columns.size() < shape.columns.size()) continue;
+      boolean prefix = true;
+      for (int i = 0; i < shape.columns.size() && prefix; i++) {
+        prefix = columns.get(i).equalsIgnoreCase(shape.columns.get(i));
+      }
+      if (prefix) return true;
+    }
+    return false;
+  }
+
+  private static String indexName(Shape shape) {
+    StringBuilder sb = new StringBuilder("idx_").append(shape.table);
+    for (String col : shape.columns) sb.append('_').append(col);
+    return sb.toString().replaceAll("[^A-Za-z0-9_]", "_");
+  }
+
+  /** Olvida las consultas registradas. */
+  public synchronized void clear() {
+    shapes.clear();
+  }
+
+  private static final class Shape {
+    final String table;
+    final List<String> columns;
+    long count;
+    String sql;
+    Object[] bindArgs;
+    boolean analyzed;
+    boolean fullScan;
+
+    Shape(String table, List<String> columns) {
+      this.table = table;
+      this.columns = columns;
+    }
+
+    Shape copy() {
+      Shape copy = new Shape(table, columns);
+      copy.count = count;
+      copy.sql = sql;
+      copy.bindArgs = bindArgs;
+      copy.analyzed = analyzed;
+      copy.fullScan = fullScan;
+      return copy;
+    }
+  }
+}
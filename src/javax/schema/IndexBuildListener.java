@@ -0,0 +1,16 @@
+package javax.schema;
+
+/**
+ * Avance de la construccion de indices diferidos.
+ */
+public interface IndexBuildListener {
+
+  /**
+   * @param index indice recien creado
+   * @param built indices creados hasta ahora, incluyendo este
+   * @param total indices a crear
+   * @param millis duracion del <code>CREATE INDEX</code>
+   */
+  public void onIndexBuilt(Index index, int built, int total, long millis);
+  
+}
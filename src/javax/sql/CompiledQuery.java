@@ -0,0 +1,59 @@
+package javax.sql;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+
+/**
+ * Query congelado por {@link QueryBuilder#compile()}: el sql con 
+ * <code>?</code> y los parametros con los que se construyo. Es inmutable, se 
+ * puede compartir entre hilos y cada ejecucion pasa por una sentencia 
+ * preparada, reutilizada por el cache de la coneccion.
+ */
+public final class CompiledQuery {
+
+  private final String sql;
+  private final Object[] bindArgs;
+
+  CompiledQuery(String sql, Object[] bindArgs) {
+    this.sql = sql;
+    this.bindArgs = bindArgs.clone();
+  }
+
+  public String getSql() {
+    return sql;
+  }
+
+  /** @return copia de los parametros con los que se compilo el query. */
+  public Object[] getBindArgs() {
+    return bindArgs.clone();
+  }
+
+  /** @return numero de <code>?</code> del query. */
+  public int getParameterCount() {
+    return bindArgs.length;
+  }
+
+  /** Ejecuta el query con los parametros con los que se compilo. */
+  public ResultSet query(Database db) throws SQLException {
+    return db.query(sql, bindArgs.clone());
+  }
+
+  /**
+   * Ejecuta el query con nuevos parametros.
+   *
+   * @param db base de datos
+   * @param bindArgs valores de los <code>?</code>, en el mismo orden
+   */
+  public ResultSet query(Database db, Object... bindArgs) throws SQLException {
+    if (bindArgs.length != this.bindArgs.length) {
+      throw new SQLException("Expected " + this.bindArgs.length 
+              + " bind args but got " + bindArgs.length + ": " + sql);
+    }
+    return db.query(sql, bindArgs);
+  }
+
+  @Override public String toString() {
+    return sql + "; " + Arrays.toString(bindArgs);
+  }
+}
@@ -2,9 +2,24 @@ package javax.sql;
 
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
 
 public interface Database {
 
   public ResultSet query(String toString) throws SQLException;
   
+  /**
+   * Ejecuta una consulta con parametros. Por omision solo acepta consultas
+   * sin parametros, para no romper las implementaciones que solo tienen
+   * {@link #query(String)}.
+   *
+   * @throws SQLFeatureNotSupportedException si hay parametros y la
+   *      implementacion no los soporta
+   */
+  default ResultSet query(String sql, Object... bindArgs) throws SQLException {
+    if (bindArgs == null || bindArgs.length == 0) return query(sql);
+    throw new SQLFeatureNotSupportedException(
+            "Bind arguments not supported by " + getClass().getName());
+  }
+  
 }
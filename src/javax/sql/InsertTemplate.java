@@ -0,0 +1,90 @@
+package javax.sql;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.util.DBUtils;
+
+/**
+ * Sentencia <code>INSERT [conflicto] INTO tabla(c1,c2) VALUES (?,?)</code> ya
+ * generada para una tabla y un conjunto ordenado de columnas. Es inmutable;
+ * {@link #of} la guarda en un cache, de modo que los inserts repetidos no
+ * vuelven a construir el sql.
+ *
+ * <pre>
+ * InsertTemplate insert = InsertTemplate.of("ventas", "id", "total");
+ * db.insert(insert, 1, 10.5);
+ * </pre>
+ */
+public final class InsertTemplate {
+
+  /** Plantillas que se recuerdan; despues se generan sin guardarse. */
+  private static final int MAX_TEMPLATES = 1024;
+
+  private static final ConcurrentHashMap<TemplateKey, InsertTemplate> CACHE =
+          new ConcurrentHashMap<TemplateKey, InsertTemplate>();
+
+  private final String table;
+  private final String[] columns;
+  private final String sql;
+
+  private InsertTemplate(String conflictAlgorithm, String table, String[] columns) {
+    this.table = table;
+    this.columns = columns;
+    this.sql = DBUtils.insertSql(conflictAlgorithm, table, Arrays.asList(columns), 1);
+  }
+
+  public static InsertTemplate of(String table, String... columns) {
+    return withOnConflict(null, table, columns);
+  }
+
+  /**
+   * @param conflictAlgorithm [opcional] OR REPLACE, OR IGNORE...
+   * @param table nombre de la tabla
+   * @param columns columnas, en el orden de los valores
+   */
+  public static InsertTemplate withOnConflict(String conflictAlgorithm, String table,
+          String... columns) {
+    TemplateKey key = new TemplateKey(table, columns, conflictAlgorithm);
+    InsertTemplate template = CACHE.get(key);
+    if (template == null) {
+      template = new InsertTemplate(conflictAlgorithm, table, columns.clone());
+      if (CACHE.size() < MAX_TEMPLATES) {
+        // La llave guardada no comparte el arreglo del llamador.
+        key = new TemplateKey(table, template.columns, conflictAlgorithm);
+        InsertTemplate old = CACHE.putIfAbsent(key, template);
+        if (old != null) template = old;
+      }
+    }
+    return template;
+  }
+
+  public String getTable() {
+    return table;
+  }
+
+  public String[] getColumns() {
+    return columns.clone();
+  }
+
+  public int getColumnCount() {
+    return columns.length;
+  }
+
+  public String getSql() {
+    return sql;
+  }
+
+  /** @return los valores del Map en el orden de las columnas. */
+  public Object[] bindArgs(Map<String, ?> values) {
+    Object[] args = new Object[columns.length];
+    for (int i = 0; i < args.length; i++) {
+      args[i] = values.get(columns[i]);
+    }
+    return args;
+  }
+
+  @Override public String toString() {
+    return sql;
+  }
+}
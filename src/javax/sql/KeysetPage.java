@@ -0,0 +1,131 @@
+package javax.sql;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.util.Base64;
+import java.util.Date;
+import javax.util.Rows;
+
+/**
+ * Pagina de {@link QueryBuilder#page(int)}: las filas y el cursor de la
+ * siguiente pagina.
+ *
+ * El cursor es un texto opaco (Base64 url) con los valores de las columnas
+ * llave de la ultima fila; se pasa a {@link QueryBuilder#after(String)} para
+ * pedir la siguiente pagina.
+ */
+public final class KeysetPage {
+
+  private final Rows rows;
+  private final Object[] lastKey;
+  private final boolean hasMore;
+
+  KeysetPage(Rows rows, Object[] lastKey, boolean hasMore) {
+    this.rows = rows;
+    this.lastKey = lastKey;
+    this.hasMore = hasMore;
+  }
+
+  public Rows getRows() {
+    return rows;
+  }
+
+  /**
+   * @return @true si hay filas despues de esta pagina.
+   */
+  public boolean hasMore() {
+    return hasMore;
+  }
+
+  /** @return los valores llave de la ultima fila, o null si no hay filas. */
+  public Object[] getLastKey() {
+    return (lastKey == null) ? null : lastKey.clone();
+  }
+
+  /** @return el cursor de la siguiente pagina, o null si es la ultima. */
+  public String getNextCursor() {
+    return hasMore ? encode(lastKey) : null;
+  }
+
+  @Override public String toString() {
+    return "KeysetPage{rows=" + rows.size() + ", hasMore=" + hasMore + "}";
+  }
+
+  /** Convierte los valores llave a un cursor. */
+  public static String encode(Object[] key) {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    DataOutputStream out = new DataOutputStream(bytes);
+    try {
+      out.writeByte(key.length);
+      for (Object value : key) {
+        if (value == null) {
+          out.writeByte('N');
+        } else if (value instanceof Long || value instanceof Integer
+                || value instanceof Short || value instanceof Byte) {
+          out.writeByte('L');
+          out.writeLong(((Number) value).longValue());
+        } else if (value instanceof Double || value instanceof Float) {
+          out.writeByte('D');
+          out.writeDouble(((Number) value).doubleValue());
+        } else if (value instanceof BigDecimal) {
+          out.writeByte('M');
+          out.writeUTF(((BigDecimal) value).toPlainString());
+        } else if (value instanceof Date) {
+          out.writeByte('T');
+          out.writeLong(((Date) value).getTime());
+        } else if (value instanceof byte[]) {
+          byte[] b = (byte[]) value;
+          out.writeByte('B');
+          out.writeInt(b.length);
+          out.write(b);
+        } else {
+          out.writeByte('S');
+          out.writeUTF(value.toString());
+        }
+      }
+    } catch (IOException e) {
+      throw new IllegalStateException(e);
+    }
+    return Base64.getUrlEncoder().withoutPadding()
+            .encodeToString(bytes.toByteArray());
+  }
+
+  /**
+   * Obtiene los valores llave de un cursor.
+   *
+   * @throws IllegalArgumentException si el cursor no es valido
+   */
+  public static Object[] decode(String cursor) {
+    try {
+      DataInputStream in = new DataInputStream(new ByteArrayInputStream(
+              Base64.getUrlDecoder().decode(cursor)));
+      Object[] key = new Object[in.readUnsignedByte()];
+      for (int i = 0; i < key.length; i++) {
+        int type = in.readUnsignedByte();
+        switch (type) {
+          case 'N': key[i] = null; break;
+          case 'L': key[i] = in.readLong(); break;
+          case 'D': key[i] = in.readDouble(); break;
+          case 'M': key[i] = new BigDecimal(in.readUTF()); break;
+          case 'T': key[i] = new Timestamp(in.readLong()); break;
+          case 'B':
+            byte[] b = new byte[in.readInt()];
+            in.readFully(b);
+            key[i] = b;
+            break;
+          case 'S': key[i] = in.readUTF(); break;
+          default:
+            throw new IllegalArgumentException("Invalid cursor: " + cursor);
+        }
+      }
+      return key;
+    } catch (IOException e) {
+      throw new IllegalArgumentException("Invalid cursor: " + cursor, e);
+    }
+  }
+}
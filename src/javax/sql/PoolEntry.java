@@ -0,0 +1,68 @@
+package javax.sql;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import javax.util.DBUtils;
+import javax.util.StatementCache;
+
+/**
+ * Coneccion fisica administrada por el pool de {@link SQLDataSource}.
+ */
+final class PoolEntry {
+
+  final Connection conn;
+  final StatementCache statements;
+  final int generation;
+  final long createdAt;
+  long lastUsedAt;
+
+  PoolEntry(Connection conn, int generation, int statementCacheSize) {
+    this.conn = conn;
+    this.statements = new StatementCache(conn, statementCacheSize);
+    this.generation = generation;
+    this.createdAt = System.currentTimeMillis();
+    this.lastUsedAt = createdAt;
+  }
+
+  /** @return @true si la coneccion supero su tiempo de vida maximo. */
+  boolean isExpired(long now, long maxLifetime) {
+    return maxLifetime > 0 && now - createdAt >= maxLifetime;
+  }
+
+  /** @return @true si la coneccion lleva ociosa mas del tiempo permitido. */
+  boolean isIdleTooLong(long now, long idleTimeout) {
+    return idleTimeout > 0 && now - lastUsedAt >= idleTimeout;
+  }
+
+  /**
+   * Valida que la coneccion siga viva antes de prestarla.
+   *
+   * @param timeout segundos de espera para la validacion
+   */
+  boolean isValid(int timeout) {
+    try {
+      return !conn.isClosed() && conn.isValid(timeout);
+    } catch (SQLException e) {
+      return false;
+    }
+  }
+
+  /**
+   * Deja la coneccion lista para el siguiente prestamo, deshaciendo cualquier
+   * transaccion que haya quedado abierta.
+   */
+  void reset() throws SQLException {
+    if (!conn.getAutoCommit()) {
+      conn.rollback();
+      conn.setAutoCommit(Boolean.TRUE);
+    }
+    if (conn.isReadOnly()) {
+      conn.setReadOnly(Boolean.FALSE);
+    }
+  }
+
+  void close() {
+    statements.close();
+    DBUtils.closeQuietly(conn);
+  }
+}
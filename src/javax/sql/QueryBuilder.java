@@ -1,15 +1,21 @@
 package javax.sql;
 
 import javax.util.DBUtils;
+import javax.util.Rows;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Locale;
+import javax.schema.IndexAdvisor;
 
 public class QueryBuilder {
 
+  /** Recibe las columnas de las consultas que se ejecutan, si no es null. */
+  private static volatile IndexAdvisor advisor;
+
   private Database db;
   private boolean distinct = false;
   private List<Object> columns;
@@ -21,6 +27,9 @@ public class QueryBuilder {
   private String having;
   private String orderBy;
   private String limit;
+  private String[] keyset;
+  private boolean keysetDesc;
+  private Object[] after;
 
   public QueryBuilder() {
     this(null);
@@ -129,18 +138,195 @@ public class QueryBuilder {
     return this;
   }
 
+  /**
+   * Pagina por llave (keyset): ordena por las columnas y cada pagina 
+   * continua despues de la ultima llave con 
+   * <code>WHERE (k1,k2) &gt; (?,?) ORDER BY k1,k2 LIMIT n</code>, de modo que
+   * cada pagina cuesta lo mismo sin importar su profundidad. La combinacion
+   * de columnas debe ser unica y NOT NULL, y deben estar en la seleccion; 
+   * reemplaza a {@link #orderBy}.
+   *
+   * @param keyColumns columnas de la llave, la ultima normalmente el id
+   */
+  public QueryBuilder keyset(String... keyColumns) {
+    return keyset(false, keyColumns);
+  }
+  /** Igual que {@link #keyset} en orden descendente. */
+  public QueryBuilder keysetDesc(String... keyColumns) {
+    return keyset(true, keyColumns);
+  }
+  private QueryBuilder keyset(boolean desc, String... keyColumns) {
+    if (keyColumns == null || keyColumns.length == 0)
+      throw new IllegalArgumentException("keyColumns is empty");
+    this.keyset = keyColumns.clone();
+    this.keysetDesc = desc;
+    return this;
+  }
+  
+  /**
+   * Continua despues del cursor de {@link KeysetPage#getNextCursor()}; null
+   * pide la primera pagina.
+   */
+  public QueryBuilder after(String cursor) {
+    return after((cursor == null) ? null : KeysetPage.decode(cursor));
+  }
+  /** Continua despues de los valores llave, en el orden de {@link #keyset}. */
+  public QueryBuilder after(Object[] keyValues) {
+    if (keyValues != null && keyset != null && keyValues.length != keyset.length) {
+      throw new IllegalArgumentException("Expected " + keyset.length 
+              + " key values but got " + keyValues.length);
+    }
+    this.after = (keyValues == null) ? null : keyValues.clone();
+    return this;
+  }
+  
+  /**
+   * Ejecuta el query paginado por {@link #keyset} y lee una pagina.
+   *
+   * @param size filas por pagina
+   *
+   * @return la pagina con el cursor de la siguiente
+   */
+  public KeysetPage page(int size) throws SQLException {
+    if (this.keyset == null) throw new IllegalStateException("keyset == null");
+    if (size < 1) throw new IllegalArgumentException("size < 1");
+    if (this.after != null && this.after.length != this.keyset.length) {
+      throw new IllegalArgumentException("Expected " + keyset.length 
+              + " key values but got " + after.length);
+    }
+    if (this.db == null) throw new SQLException("SQLiteDatabase == null");
+    // Una fila de mas indica si hay otra pagina.
+    ResultSet rs = query(toString((size < Integer.MAX_VALUE) ? size + 1 : size));
+    Rows rows;
+    boolean hasMore;
+    try {
+      rows = Rows.from(rs, size);
+      hasMore = rs.next();
+    } finally {
+      DBUtils.closeQuietly(rs);
+    }
+    if (rows.isEmpty()) return new KeysetPage(rows, null, false);
+    int last = rows.size() - 1;
+    Object[] lastKey = new Object[keyset.length];
+    for (int i = 0; i < keyset.length; i++) {
+      String name = keyset[i];
+      int column = rows.findColumn(name.substring(name.lastIndexOf('.') + 1));
+      if (column < 0) throw new SQLException("Keyset column not selected: " + name);
+      lastKey[i] = rows.get(last, column);
+    }
+    return new KeysetPage(rows, lastKey, hasMore);
+  }
+
   /** Construye y ejecuta el query. */
   public ResultSet get() throws SQLException {
     if (this.db == null) throw new SQLException("SQLiteDatabase == null");
-    return this.db.query(toString());
+    return query(toString());
+  }
+
+  private ResultSet query(String sql) throws SQLException {
+    final Object[] bindArgs = getBindArgs();
+    final IndexAdvisor indexAdvisor = advisor;
+    if (indexAdvisor != null) advise(indexAdvisor, sql, bindArgs);
+    return this.db.query(sql, bindArgs);
   }
   public ResultSet get(Database db) throws SQLException {
     this.db = db;
     return this.get();
   }
  
-  /** Compilamos el query. */
+  public static IndexAdvisor getIndexAdvisor() {
+    return advisor;
+  }
+
+  /**
+   * Registra en el advisor las columnas del WHERE y ORDER BY de cada
+   * consulta que se ejecuta con {@link #get()}; null deja de registrar.
+   */
+  public static void setIndexAdvisor(IndexAdvisor indexAdvisor) {
+    advisor = indexAdvisor;
+  }
+
+  /**
+   * Solo se registran las consultas sobre una tabla (no sobre un subquery);
+   * las columnas de otra tabla del JOIN o con funciones se ignoran.
+   */
+  private void advise(IndexAdvisor indexAdvisor, String sql, Object[] bindArgs) {
+    if (this.from != null || this.table == null) return;
+    String[] names = this.table.trim().split("\\s+");
+    String tableName = names[0];
+    String alias = names[names.length - 1];
+    List<String> equality = new ArrayList<String>();
+    List<String> range = new ArrayList<String>();
+    List<String> order = new ArrayList<String>();
+    if (this.where != null && !this.where.hasOr) {
+      for (int i = 0; i < this.where.columns.size(); i++) {
+        String col = column(this.where.columns.get(i), tableName, alias);
+        if (col == null) continue;
+        if (this.where.ranges.get(i)) range.add(col); else equality.add(col);
+      }
+    }
+    if (this.keyset != null) {
+      for (String key : this.keyset) {
+        String col = column(key, tableName, alias);
+        if (col == null) break;
+        order.add(col);
+      }
+      if (this.after != null && !order.isEmpty()) range.add(order.get(0));
+    } else if (this.orderBy != null) {
+      for (String part : this.orderBy.split(",")) {
+        String[] tokens = part.trim().split("\\s+");
+        String col = column(tokens[0], tableName, alias);
+        if (col == null) break;
+        order.add(col);
+      }
+    }
+    indexAdvisor.record(tableName, equality, range, order, sql, bindArgs);
+  }
+
+  /** @return el nombre de la columna sin la tabla, o null si no aplica. */
+  private static String column(String name, String table, String alias) {
+    String col = name.trim();
+    int dot = col.lastIndexOf('.');
+    if (dot >= 0) {
+      String owner = col.substring(0, dot);
+      if (!owner.equalsIgnoreCase(table) && !owner.equalsIgnoreCase(alias)) {
+        return null;
+      }
+      col = col.substring(dot + 1);
+    }
+    return col.matches("[A-Za-z_][A-Za-z0-9_]*") ? col : null;
+  }
+
+  /**
+   * Obtiene los parametros de los <code>?</code> del query, en orden.
+   */
+  public Object[] getBindArgs() {
+    List<Object> args = new ArrayList<Object>();
+    appendBindArgs(args);
+    return args.toArray();
+  }
+  
+  void appendBindArgs(List<Object> args) {
+    if (this.from != null) this.from.appendBindArgs(args);
+    if (this.where != null) args.addAll(this.where.args);
+    if (this.keyset != null && this.after != null) args.addAll(Arrays.asList(this.after));
+  }
+  
+  /**
+   * Congela el query en un {@link CompiledQuery} inmutable que se puede 
+   * ejecutar muchas veces, desde varios hilos, con nuevos parametros.
+   */
+  public CompiledQuery compile() {
+    return new CompiledQuery(toString(), getBindArgs());
+  }
+ 
+  /** Compilamos el query; los valores se representan con <code>?</code>. */
   @Override public String toString() {
+    return toString(0);
+  }
+
+  /** @param pageLimit LIMIT de {@link #page}, 0 usa {@link #limit} */
+  private String toString(int pageLimit) {
     // SELECT:
     StringBuilder query = new StringBuilder();
     query.append("SELECT ");
@@ -166,18 +352,64 @@ public class QueryBuilder {
       }
     }
     // EXTRAS:
-    DBUtils.appendClause(query, " WHERE ", this.where);
+    if (this.keyset != null && this.after != null) {
+      appendKeysetWhere(query);
+    } else {
+      DBUtils.appendClause(query, " WHERE ", this.where);
+    }
     DBUtils.appendClause(query, " GROUP BY ", this.groupBy);
     DBUtils.appendClause(query, " HAVING ", this.having);
-    DBUtils.appendClause(query, " ORDER BY ", this.orderBy);
-    DBUtils.appendClause(query, " LIMIT ", this.limit);
+    if (this.keyset != null) {
+      query.append(" ORDER BY ");
+      for (int i = 0; i < this.keyset.length; i++) {
+        if (i > 0) query.append(',');
+        query.append(this.keyset[i]);
+        if (this.keysetDesc) query.append(" DESC");
+      }
+    } else {
+      DBUtils.appendClause(query, " ORDER BY ", this.orderBy);
+    }
+    if (this.keyset != null && pageLimit > 0) {
+      query.append(" LIMIT ").append(pageLimit);
+    } else {
+      DBUtils.appendClause(query, " LIMIT ", this.limit);
+    }
     return query.toString();
   }
   
+  /** <code>WHERE (where) AND (k1,k2) &gt; (?,?)</code> */
+  private void appendKeysetWhere(StringBuilder query) {
+    query.append(" WHERE ");
+    String where = (this.where == null) ? "" : this.where.toString().trim();
+    if (!where.isEmpty()) query.append('(').append(where).append(") AND ");
+    final String op = this.keysetDesc ? " < " : " > ";
+    if (this.keyset.length == 1) {
+      query.append(this.keyset[0]).append(op).append('?');
+      return;
+    }
+    query.append('(');
+    for (int i = 0; i < this.keyset.length; i++) {
+      if (i > 0) query.append(',');
+      query.append(this.keyset[i]);
+    }
+    query.append(')').append(op).append('(');
+    for (int i = 0; i < this.keyset.length; i++) {
+      query.append((i > 0) ? ",?" : "?");
+    }
+    query.append(')');
+  }
+  
   public static class Where {
     private final QueryBuilder qs;
     private final StringBuilder sql = new StringBuilder();
+    private final List<Object> args = new ArrayList<Object>();
     private int countClauses = 0;
+    /** Columnas comparadas, para {@link IndexAdvisor}. */
+    final List<String> columns = new ArrayList<String>();
+    /** Por columna: @true si es por rango, @false si es por igualdad. */
+    final List<Boolean> ranges = new ArrayList<Boolean>();
+    boolean hasOr;
+    private boolean negated;
     
     public Where(QueryBuilder querySelect) {
       qs = querySelect;
@@ -193,21 +425,45 @@ public class QueryBuilder {
     public Where or() {
       if (countClauses > 0) {
         sql.append(" OR");
+        hasOr = true;
       }
       return this;
     }
     
     public Where not() {
       sql.append(" NOT");
+      negated = true;
       return this;
     }
 
+    /** Registra la columna segun el operador; != y NOT no usan indice. */
+    private void track(String columnName, String op) {
+      boolean not = negated;
+      negated = false;
+      if (not) return;
+      String upper = op.trim().toUpperCase(Locale.ROOT);
+      boolean range;
+      if (upper.equals("=") || upper.equals("==") || upper.equals("IS")
+              || upper.equals("IN")) {
+        range = false;
+      } else if (upper.equals("<") || upper.equals(">") || upper.equals("<=")
+              || upper.equals(">=") || upper.equals("BETWEEN")
+              || upper.equals("LIKE") || upper.equals("GLOB")) {
+        range = true;
+      } else {
+        return;
+      }
+      columns.add(columnName.trim());
+      ranges.add(range);
+    }
+
     public Where clause(String columnName, String op, Object value) {
+      track(columnName, op);
       sql.append(" ")
          .append(columnName.trim())
          .append(" ").append(op.trim()).append(" ")
-         .append(toValue(value))
       ;
+      appendValue(value);
       countClauses++;
       return this;
     }
@@ -217,24 +473,26 @@ public class QueryBuilder {
     }
     
     public Where between(String columnName, Object low, Object high) {
+      track(columnName, "BETWEEN");
       sql.append(" ")
          .append(columnName)
          .append(" BETWEEN ")
-         .append(toValue(low))
-         .append(" AND ")
-         .append(toValue(high))
       ;
+      appendValue(low);
+      sql.append(" AND ");
+      appendValue(high);
       countClauses++;
       return this;
     }
     
     public Where in(String columnName, Object... values) {
+      track(columnName, "IN");
       sql.append(" ");
       sql.append(columnName);
       sql.append(" IN (");
       for (int i = 0; i < values.length; i++) {
         if (i > 0) sql.append(", ");
-        sql.append(toValue(values[i]));
+        appendValue(values[i]);
       }
       sql.append(")");
       countClauses++;
@@ -242,22 +500,26 @@ public class QueryBuilder {
     }
     
     public Where in(String columnName, QueryBuilder qs) {
+      track(columnName, "IN");
       sql.append(" ")
          .append(columnName)
          .append(" IN (")
          .append(qs.toString())
          .append(")")
       ;
+      qs.appendBindArgs(args);
       countClauses++;
       return this;
     }
     
     public Where exists(QueryBuilder qs) {
+      negated = false;
       // EXISTS (SELECT * FROM `producto` WHERE `id` = 0 )
       sql.append(" EXISTS (")
          .append(qs.toString())
          .append(")")
       ;
+      qs.appendBindArgs(args);
       countClauses++;
       return this;
     }
@@ -267,6 +529,36 @@ public class QueryBuilder {
       return this;
     }
     
+    /**
+     * Agrega sql libre con sus parametros.
+     * 
+     * @param str fragmento con <code>?</code>
+     * @param bindArgs valores de los <code>?</code>
+     */
+    public Where str(String str, Object... bindArgs) {
+      sql.append(str);
+      if (bindArgs != null) args.addAll(Arrays.asList(bindArgs));
+      return this;
+    }
+    
+    /** @return parametros de la clausula, en orden. */
+    public Object[] getBindArgs() {
+      return args.toArray();
+    }
+    
+    /** 
+     * Agrega un <code>?</code> y su valor; NULL se escribe literal para 
+     * conservar <code>IS NULL</code>.
+     */
+    private void appendValue(Object value) {
+      if (value == null) {
+        sql.append("NULL ");
+      } else {
+        sql.append('?');
+        args.add(value);
+      }
+    }
+    
     public QueryBuilder endWhere() {
       return qs;
     }
@@ -288,4 +580,4 @@ public class QueryBuilder {
       }
     }
   }
-}
\ No newline at end of file
+}
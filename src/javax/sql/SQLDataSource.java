@@ -1,9 +1,26 @@
 package javax.sql;
 
+import java.lang.reflect.Method;
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 import javax.util.Debug;
+import javax.util.QueryMetrics;
+import javax.util.QueryStats;
+import javax.util.ResultCache;
+import javax.util.RetryPolicy;
+import javax.util.StatementCache;
 
 public class SQLDataSource implements AutoCloseable {
   /**
@@ -18,60 +35,234 @@ public class SQLDataSource implements AutoCloseable {
   String username;
   String password;
   
-  private SQLDatabase mDatabase;
-  private boolean mIsInitializing;
+  /**
+   * Conecciones abiertas por debajo de las cuales no se cierran las ociosas
+   * por {@link #idleTimeout}. No se abren por adelantado: el pool solo
+   * conserva las que ya creo.
+   */
+  int minPoolSize = 0;
+  /** Numero maximo de conecciones abiertas al mismo tiempo. */
+  int maxPoolSize = 10;
+  /** Milisegundos que espera {@link #getDatabase()} por una coneccion libre. */
+  long borrowTimeout = 30000;
+  /** Milisegundos que una coneccion puede estar ociosa antes de cerrarse. */
+  long idleTimeout = 600000;
+  /** Milisegundos de vida maxima de una coneccion fisica. */
+  long maxLifetime = 1800000;
+  /** Segundos de espera de {@link Connection#isValid(int)} al prestar. */
+  int validationTimeout = 5;
+  /** Sentencias preparadas que se conservan por coneccion, cero lo deshabilita. */
+  int statementCacheSize = StatementCache.DEFAULT_SIZE;
+  /** Filas por sentencia de {@link SQLDatabase#insertAll}. */
+  int batchSize = 500;
+  /** 
+   * Fetch size de {@link SQLDatabase#queryForwardOnly}; cero usa el del
+   * driver, salvo en MySQL/MariaDB donde se usa Integer.MIN_VALUE (streaming).
+   */
+  int fetchSize = 0;
+  /** Metricas de las sentencias de todas las conecciones del pool. */
+  final QueryMetrics metrics = new QueryMetrics();
+  /** Cache de resultados compartido por las bases de datos, null apagado. */
+  volatile ResultCache resultCache;
+  /** Reintentos de {@link SQLDatabase#runInTransaction}. */
+  volatile RetryPolicy retryPolicy = RetryPolicy.DEFAULT;
+  
+  /** Ejecutor de las operaciones asincronas de {@link SQLDatabase}. */
+  private Executor executor;
+  private ExecutorService mDefaultExecutor;
+  /** Operaciones asincronas que pueden usar una coneccion al mismo tiempo. */
+  private int asyncParallelism;
+  private Semaphore mAsyncPermits;
+  
+  private final LinkedList<PoolEntry> mIdle = new LinkedList<PoolEntry>();
+  private int mTotal;
+  private int mGeneration;
    
+  /**
+   * Obtiene una base de datos con una coneccion prestada del pool. La 
+   * coneccion regresa al pool al llamar {@link SQLDatabase#close()}.
+   *
+   * @return base de datos lista para usarse
+   * @throws SQLException si no hay conecciones disponibles dentro del 
+   *      {@link #borrowTimeout}
+   */
   public SQLDatabase getDatabase() throws SQLException {
+    SQLDatabase db = newDatabase();
+    db.pooled = borrow();
+    return db;
+  }
+  
+  public SQLDatabase newDatabase() {
+    return new SQLDatabase(this);
+  }
+  
+  /**
+   * Presta una coneccion del pool, abriendo una nueva si no hay ociosas y no 
+   * se ha alcanzado el {@link #maxPoolSize}.
+   */
+  PoolEntry borrow() throws SQLException {
+    final long deadline = System.currentTimeMillis() + borrowTimeout;
+    while (true) {
+      PoolEntry pc = null;
+      int generation;
+      synchronized (this) {
+        evictLocked();
+        while (mIdle.isEmpty() && mTotal >= maxPoolSize) {
+          long wait = deadline - System.currentTimeMillis();
+          if (wait <= 0) {
+            throw new SQLException("Timeout waiting for connection: " + url 
+                    + "; maxPoolSize=" + maxPoolSize);
+          }
+          try {
+            wait(wait);
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted waiting for connection", e);
+          }
+          evictLocked();
+        }
+        if (!mIdle.isEmpty()) {
+          pc = mIdle.removeFirst();
+        } else {
+          mTotal++;
+        }
+        generation = mGeneration;
+      }
+      
+      if (pc == null) {
+        try {
+          return new PoolEntry(connect(), generation, statementCacheSize);
+        } catch (SQLException e) {
+          discard(null);
+          throw e;
+        } catch (RuntimeException e) {
+          discard(null);
+          throw e;
+        }
+      }
+      
+      if (pc.isValid(validationTimeout)) {
+        pc.lastUsedAt = System.currentTimeMillis();
+        return pc;
+      }
+      Debug.i(getClass(), "INVALID ", url);
+      discard(pc);
+    }
+  }
+  
+  /**
+   * Regresa una coneccion al pool. Si la coneccion expiro, pertenece a un pool
+   * ya cerrado o no se pudo limpiar, se cierra fisicamente.
+   */
+  void release(PoolEntry pc) {
+    if (pc == null) return;
+    
+    boolean reusable;
+    try {
+      reusable = !pc.conn.isClosed();
+      if (reusable) pc.reset();
+    } catch (SQLException e) {
+      reusable = false;
+    }
+    
+    final long now = System.currentTimeMillis();
     synchronized (this) {
-      return getDatabaseLocked();
+      if (reusable && pc.generation == mGeneration 
+              && !pc.isExpired(now, maxLifetime)) {
+        pc.lastUsedAt = now;
+        mIdle.addFirst(pc);
+        notifyAll();
+        return;
+      }
+    }
+    discard(pc);
+  }
+  
+  /** Cierra una coneccion y libera su lugar en el pool. */
+  private void discard(PoolEntry pc) {
+    if (pc != null) {
+      pc.close();
+      Debug.i(getClass(), "CLOSE ", url);
+    }
+    synchronized (this) {
+      mTotal--;
+      notifyAll();
     }
   }
   
   /**
-   * Connect to a sample database
-   *
-   * @return
-   * @throws java.sql.SQLException
-   */
-  private SQLDatabase getDatabaseLocked() throws SQLException {
-    if (mDatabase != null) {
-      if (mDatabase.isClosed()) {
-        // ¡Maldición! El usuario cerró la base de datos llamando a mDatabase.close ().
-        mDatabase = null;
-      } else {
-        // La base de datos ya está abierta para los negocios.
-        return mDatabase;
+   * Retira del pool las conecciones ociosas que superaron el 
+   * {@link #idleTimeout} (mientras queden mas de {@link #minPoolSize} 
+   * abiertas) o el {@link #maxLifetime}.
+   */
+  private void evictLocked() {
+    if (mIdle.isEmpty()) return;
+    
+    final long now = System.currentTimeMillis();
+    // Las mas antiguas quedan al final de la lista.
+    Iterator<PoolEntry> it = mIdle.descendingIterator();
+    while (it.hasNext()) {
+      PoolEntry pc = it.next();
+      if (pc.isExpired(now, maxLifetime) 
+              || (mTotal > minPoolSize && pc.isIdleTooLong(now, idleTimeout))) {
+        it.remove();
+        mTotal--;
+        pc.close();
+        Debug.i(getClass(), "EVICT ", url);
       }
     }
-
-    if (mIsInitializing) {
-      throw new IllegalStateException("getDatabase called recursively");
+  }
+  
+  /**
+   * Obtiene el ejecutor de las operaciones asincronas. Si no se configuro 
+   * uno, usa hilos virtuales cuando la JVM los soporta o, en su defecto, un 
+   * pool de {@link #maxPoolSize} hilos daemon.
+   */
+  public synchronized Executor getExecutor() {
+    if (executor != null) return executor;
+    if (mDefaultExecutor == null) {
+      mDefaultExecutor = newDefaultExecutor(maxPoolSize);
     }
-
-    SQLDatabase db = mDatabase;
+    return mDefaultExecutor;
+  }
+  
+  private static ExecutorService newDefaultExecutor(int threads) {
     try {
-      mIsInitializing = true;
-
-      if (db == null) {
-        db = newDatabase();
-        db.conn = connect();
-      }
-     
-      mDatabase = db;
-      return db;
-    } finally {
-      mIsInitializing = Boolean.FALSE;
-      if (db != null && db != mDatabase) {
-        db.close();
-      }
+      Method method = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+      return (ExecutorService) method.invoke(null);
+    } catch (Exception unsupported) {
+      final AtomicInteger count = new AtomicInteger();
+      return Executors.newFixedThreadPool(threads, new ThreadFactory() {
+        @Override public Thread newThread(Runnable r) {
+          Thread thread = new Thread(r, "SQLDataSource-async-" + count.incrementAndGet());
+          thread.setDaemon(true);
+          return thread;
+        }
+      });
     }
   }
   
-  public SQLDatabase newDatabase() {
-    //Connection conn = connect();
-    return new SQLDatabase(this);
+  /**
+   * Limita cuantas operaciones asincronas toman una coneccion a la vez; las 
+   * demas esperan turno sin consumir el {@link #borrowTimeout}.
+   */
+  synchronized Semaphore asyncPermits() {
+    if (mAsyncPermits == null) {
+      int permits = (asyncParallelism > 0) ? asyncParallelism : maxPoolSize;
+      mAsyncPermits = new Semaphore(permits, true);
+    }
+    return mAsyncPermits;
+  }
+  
+  /** @return numero de conecciones abiertas, ociosas o prestadas. */
+  public synchronized int getPoolSize() {
+    return mTotal;
   }
   
+  /** @return numero de conecciones ociosas en el pool. */
+  public synchronized int getIdleCount() {
+    return mIdle.size();
+  }
   
   /**
    * Establece la coneccion con la base de datos.
@@ -92,18 +283,25 @@ public class SQLDataSource implements AutoCloseable {
   }
   
   /**
-   * Close any open database object.
+   * Cierra las conecciones ociosas del pool. Las conecciones prestadas se 
+   * cierran fisicamente cuando regresan.
    */
-  @Override public synchronized void close() {
-    try {
-      if (mIsInitializing) throw new IllegalStateException("Closed during initialization");
-
-      if (mDatabase != null && !mDatabase.isClosed()) {
-        mDatabase.close();
-        mDatabase = null;
+  @Override public void close() {
+    List<PoolEntry> closing;
+    synchronized (this) {
+      if (mDefaultExecutor != null) {
+        mDefaultExecutor.shutdown();
+        mDefaultExecutor = null;
       }
-    } catch (SQLException ignore) {
-      // Empty
+      mGeneration++;
+      closing = new ArrayList<PoolEntry>(mIdle);
+      mTotal -= mIdle.size();
+      mIdle.clear();
+      notifyAll();
+    }
+    for (PoolEntry pc : closing) {
+      pc.close();
+      Debug.i(getClass(), "CLOSE ", url);
     }
   }
   
@@ -139,6 +337,178 @@ public class SQLDataSource implements AutoCloseable {
     return this;
   }
 
+  public int getMinPoolSize() {
+    return minPoolSize;
+  }
+  /**
+   * Establece cuantas conecciones abiertas se conservan aunque superen el
+   * idleTimeout; las que superan el maxLifetime se cierran igual.
+   */
+  public SQLDataSource setMinPoolSize(int minPoolSize) {
+    this.minPoolSize = minPoolSize;
+    return this;
+  }
+
+  public int getMaxPoolSize() {
+    return maxPoolSize;
+  }
+  public synchronized SQLDataSource setMaxPoolSize(int maxPoolSize) {
+    if (maxPoolSize < 1) 
+      throw new IllegalArgumentException("maxPoolSize < 1");
+    this.maxPoolSize = maxPoolSize;
+    this.mAsyncPermits = null;
+    return this;
+  }
+
+  public long getBorrowTimeout() {
+    return borrowTimeout;
+  }
+  public SQLDataSource setBorrowTimeout(long borrowTimeout) {
+    this.borrowTimeout = borrowTimeout;
+    return this;
+  }
+
+  public long getIdleTimeout() {
+    return idleTimeout;
+  }
+  public SQLDataSource setIdleTimeout(long idleTimeout) {
+    this.idleTimeout = idleTimeout;
+    return this;
+  }
+
+  public long getMaxLifetime() {
+    return maxLifetime;
+  }
+  public SQLDataSource setMaxLifetime(long maxLifetime) {
+    this.maxLifetime = maxLifetime;
+    return this;
+  }
+
+  public int getValidationTimeout() {
+    return validationTimeout;
+  }
+  public SQLDataSource setValidationTimeout(int validationTimeout) {
+    this.validationTimeout = validationTimeout;
+    return this;
+  }
+
+  public int getStatementCacheSize() {
+    return statementCacheSize;
+  }
+  public SQLDataSource setStatementCacheSize(int statementCacheSize) {
+    this.statementCacheSize = statementCacheSize;
+    return this;
+  }
+
+  public int getBatchSize() {
+    return batchSize;
+  }
+  public SQLDataSource setBatchSize(int batchSize) {
+    if (batchSize < 1) 
+      throw new IllegalArgumentException("batchSize < 1");
+    this.batchSize = batchSize;
+    return this;
+  }
+
+  public int getFetchSize() {
+    return fetchSize;
+  }
+  public SQLDataSource setFetchSize(int fetchSize) {
+    this.fetchSize = fetchSize;
+    return this;
+  }
+
+  /**
+   * Fetch size a aplicar en {@link SQLDatabase#queryForwardOnly}. El valor
+   * negativo (streaming) solo lo aceptan MySQL y MariaDB; PostgreSQL, Oracle
+   * y SQL Server lanzan SQLException, por lo que ahi se usa el del driver.
+   */
+  int streamingFetchSize() {
+    final boolean mysql = isMySQL();
+    if (fetchSize == 0) return mysql ? Integer.MIN_VALUE : 0;
+    if (fetchSize < 0 && !mysql) return 0;
+    return fetchSize;
+  }
+
+  /**
+   * @return @true si la url (o sin url, el driver) es de MySQL o MariaDB; el
+   *      driver por defecto es el de MySQL, por eso manda la url.
+   */
+  boolean isMySQL() {
+    if (url != null) {
+      String u = url.toLowerCase(Locale.ROOT);
+      return u.startsWith("jdbc:mysql:") || u.startsWith("jdbc:mariadb:");
+    }
+    String d = (driverClassName == null) ? "" 
+            : driverClassName.toLowerCase(Locale.ROOT);
+    return d.contains("mysql") || d.contains("mariadb");
+  }
+
+  public QueryMetrics getMetrics() {
+    return metrics;
+  }
+  public SQLDataSource setMetricsEnabled(boolean enabled) {
+    metrics.setEnabled(enabled);
+    return this;
+  }
+  /**
+   * Establece los milisegundos a partir de los cuales una sentencia se 
+   * escribe en el slow query log; un valor negativo lo apaga.
+   */
+  public SQLDataSource setSlowQueryThreshold(long millis) {
+    metrics.setSlowQueryThresholdMillis(millis);
+    return this;
+  }
+
+  /** @return los tiempos por forma de sentencia, ver {@link QueryMetrics}. */
+  public List<QueryStats> getStatistics() {
+    return metrics.getStatistics();
+  }
+
+  public ResultCache getResultCache() {
+    return resultCache;
+  }
+  /**
+   * Guarda los resultados de {@link SQLDatabase#query} en el cache; las 
+   * escrituras de las bases de datos de este pool invalidan las tablas que
+   * modifican. Con null se apaga.
+   */
+  public SQLDataSource setResultCache(ResultCache resultCache) {
+    this.resultCache = resultCache;
+    return this;
+  }
+
+  public RetryPolicy getRetryPolicy() {
+    return retryPolicy;
+  }
+  public SQLDataSource setRetryPolicy(RetryPolicy retryPolicy) {
+    if (retryPolicy == null) throw new NullPointerException("retryPolicy == null");
+    this.retryPolicy = retryPolicy;
+    return this;
+  }
+
+  /**
+   * Establece el ejecutor de las operaciones asincronas; null regresa al 
+   * ejecutor por defecto.
+   */
+  public synchronized SQLDataSource setExecutor(Executor executor) {
+    this.executor = executor;
+    return this;
+  }
+
+  public int getAsyncParallelism() {
+    return asyncParallelism;
+  }
+  /**
+   * Establece cuantas operaciones asincronas se ejecutan a la vez; cero usa
+   * el {@link #maxPoolSize}.
+   */
+  public synchronized SQLDataSource setAsyncParallelism(int asyncParallelism) {
+    this.asyncParallelism = asyncParallelism;
+    this.mAsyncPermits = null;
+    return this;
+  }
+
   public SQLDataSource setDebuggable(boolean b) {
     Debug.setDebuggable(b);
     return this;
@@ -5,10 +5,29 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Savepoint;
 import java.sql.Statement;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.stream.Stream;
+import javax.sqlite.CreateOrUpdateStatus;
 import javax.util.Debug;
+import javax.util.InsertBatch;
+import javax.util.QueryMetrics;
+import javax.util.QueryStats;
+import javax.util.ResultCache;
+import javax.util.RetryPolicy;
+import javax.util.RowIterator;
+import javax.util.Rows;
+import javax.util.RowsResultSet;
+import javax.util.StatementCache;
 
 /**
  *
@@ -16,10 +35,19 @@ import javax.util.Debug;
  */
 public class SQLDatabase implements AutoCloseable, Database {
 
+// Constantes
+
+  /** Numero maximo de parametros por sentencia que acepta MySQL. */
+  public static final int MAX_BIND_ARGS = 65535;
+
 // Variables
   
   private SQLDataSource src;
-  Connection conn;
+  PoolEntry pooled;
+  /** Tablas escritas en la transaccion abierta, null es todas. */
+  private Set<String> written;
+  /** Transacciones de {@link #runInTransaction} abiertas, incluyendo savepoints. */
+  private int transactionDepth;
 
 // Costructor
   
@@ -30,17 +58,37 @@ public class SQLDatabase implements AutoCloseable, Database {
 // Funciones  
   
   /**
-   * Establece la coneccion con la base de datos.
+   * Obtiene la coneccion con la base de datos, tomandola del pool si aun no 
+   * se tiene una.
    *
    * @return la coneccion
    *
    * @throws SQLException
    */
   public Connection getConnection() throws SQLException {
-    if (isClosed()) {
-      conn = src.connect();
+    synchronized (this) {
+      if (pooled == null) {
+        pooled = src.borrow();
+      }
+      return pooled.conn;
+    }
+  }
+
+  /**
+   * @return cache de sentencias preparadas de la coneccion actual.
+   *
+   * @throws SQLException
+   */
+  public StatementCache getStatementCache() throws SQLException {
+    synchronized (this) {
+      getConnection();
+      return pooled.statements;
     }
-    return conn;
+  }
+
+  /** @return los tiempos por forma de sentencia, ver {@link QueryMetrics}. */
+  public List<QueryStats> getStatistics() {
+    return src.metrics.getStatistics();
   }
 
   @Override protected void finalize() throws Throwable {
@@ -51,10 +99,19 @@ public class SQLDatabase implements AutoCloseable, Database {
     }
   }
 
+  /**
+   * Regresa la coneccion al pool del {@link SQLDataSource}.
+   */
   @Override public void close() {
+    endWrites();
+    PoolEntry pc;
     synchronized (this) {
-      DBUtils.closeQuietly(conn);
-      Debug.i(getClass(), "CLOSE ", src.url);
+      pc = pooled;
+      pooled = null;
+    }
+    if (pc != null) {
+      src.release(pc);
+      Debug.i(getClass(), "RELEASE ", src.url);
     }
   }
   
@@ -64,7 +121,8 @@ public class SQLDatabase implements AutoCloseable, Database {
    * @throws SQLException
    */
   public boolean isClosed() throws SQLException {
-    return conn == null || conn.isClosed();
+    PoolEntry pc = pooled;
+    return pc == null || pc.conn.isClosed();
   }
 
   /**
@@ -94,32 +152,143 @@ public class SQLDatabase implements AutoCloseable, Database {
    * @throws SQLException
    */
   public ResultSet query(String sql, Object... bindArgs) throws SQLException {
+    final ResultCache resultCache = src.resultCache;
+    if (resultCache != null && ResultCache.isCacheable(sql)) {
+      return cachedQuery(resultCache, sql, bindArgs);
+    }
+    return executeQuery(sql, bindArgs);
+  }
+  
+  @Override public ResultSet query(String sql) throws SQLException {
+    final ResultCache resultCache = src.resultCache;
+    if (resultCache != null && ResultCache.isCacheable(sql)) {
+      return cachedQuery(resultCache, sql, null);
+    }
+    return executeQuery(sql);
+  }
+  
+  /**
+   * Regresa el resultado del cache de {@link SQLDataSource#getResultCache()}
+   * o lo guarda en el; solo se guardan las consultas hechas fuera de una 
+   * transaccion.
+
+   * Los resultados de mas de {@link ResultCache#getMaxRows()} filas no se
+   * guardan: se leen esas filas y el resto se sigue leyendo del ResultSet.
+   * La copia conserva los valores tal como los regresa getObject.
+   */
+  private ResultSet cachedQuery(ResultCache resultCache, String sql, 
+          Object[] bindArgs) throws SQLException {
+    Rows rows = resultCache.get(sql, bindArgs);
+    if (rows != null) return new RowsResultSet(rows);
+
+    final long generation = resultCache.generation();
+    final boolean autoCommit = getConnection().getAutoCommit();
+    final int maxRows = resultCache.getMaxRows();
+    ResultSet rs = (bindArgs == null) ? executeQuery(sql) 
+            : executeQuery(sql, bindArgs);
+    boolean streaming = false;
+    try {
+      // Una fila de mas indica que el resultado no cabe en el cache.
+      rows = Rows.from(rs, (maxRows < Integer.MAX_VALUE) ? maxRows + 1 : maxRows);
+      if (rows.size() > maxRows) {
+        streaming = true;
+        return new RowsResultSet(rows, rs);
+      }
+    } finally {
+      if (!streaming) DBUtils.closeQuietly(rs);
+    }
+    if (autoCommit) resultCache.put(sql, bindArgs, rows, generation);
+    return new RowsResultSet(rows);
+  }
+  
+  private ResultSet executeQuery(String sql, Object[] bindArgs) 
+  throws SQLException {
+    final QueryMetrics metrics = src.metrics;
+    final long start = metrics.start();
+    StatementCache cache = getStatementCache();
     PreparedStatement statement = null;
     try {
-      statement = compileStatement(sql);
+      statement = cache.acquire(sql);
       DBUtils.prepareBind(statement, bindArgs);
-      ResultSet resultSet = SQLResultSet.executeQuery(statement);
-       /**/Debug.i(getClass(), DBUtils.concat(sql, "; ", Arrays.toString(bindArgs)));
-      return resultSet;
+      ResultSet resultSet = SQLResultSet.executeQuery(statement, cache);
+       /**/Debug.sql(getClass(), sql, bindArgs);
+      return SQLResultSet.track(resultSet, 
+              metrics.record(sql, bindArgs, start, 0));
     } catch(SQLException e) {
-      DBUtils.closeQuietly(statement);
+      metrics.failed(sql, start);
+      cache.discard(statement);
       throw e;
     }
   }
   
-  @Override public ResultSet query(String sql) throws SQLException {
+  private ResultSet executeQuery(String sql) throws SQLException {
+    final QueryMetrics metrics = src.metrics;
+    final long start = metrics.start();
     Statement statement = null;
     try {
       statement = createStatement();
       ResultSet resultSet = SQLResultSet.executeQuery(statement, sql);
-      /**/Debug.i(getClass(), sql);
-      return resultSet;
+      /**/Debug.sql(getClass(), sql, null);
+      return SQLResultSet.track(resultSet, metrics.record(sql, null, start, 0));
     } catch(SQLException e) {
+      metrics.failed(sql, start);
       DBUtils.closeQuietly(statement);
       throw e;
     } 
   }
 
+  /**
+   * Ejecuta una consulta con un cursor de solo avance y el fetch size de 
+   * {@link SQLDataSource#getFetchSize()}, de modo que el driver entregue las
+   * filas conforme se leen. Con MySQL en modo streaming no se pueden ejecutar
+   * otras sentencias en la misma coneccion hasta cerrar el ResultSet.
+   *
+   * @param sql query a ejecutar
+   * @param bindArgs [opcional] parametros del query
+   *
+   * @return ResultSet con el resultado obtenido
+   *
+   * @throws SQLException
+   */
+  public ResultSet queryForwardOnly(String sql, Object... bindArgs) 
+  throws SQLException {
+    final QueryMetrics metrics = src.metrics;
+    final long start = metrics.start();
+    PreparedStatement statement = null;
+    try {
+      statement = getConnection().prepareStatement(sql, 
+              ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+      final int fetchSize = src.streamingFetchSize();
+      if (fetchSize != 0) statement.setFetchSize(fetchSize);
+      DBUtils.prepareBind(statement, bindArgs);
+      ResultSet resultSet = SQLResultSet.executeQuery(statement);
+      /**/Debug.sql(getClass(), sql, bindArgs);
+      return SQLResultSet.track(resultSet, 
+              metrics.record(sql, bindArgs, start, 0));
+    } catch(SQLException e) {
+      metrics.failed(sql, start);
+      DBUtils.closeQuietly(statement);
+      throw e;
+    }
+  }
+  
+  /**
+   * Recorre el resultado de una consulta fila por fila sin cargarlo en memoria.
+   * La sentencia se cierra al consumir la ultima fila o al cerrar el iterador.
+   */
+  public RowIterator iterate(String sql, Object... bindArgs) throws SQLException {
+    return new RowIterator(queryForwardOnly(sql, bindArgs));
+  }
+  
+  /**
+   * Obtiene un Stream perezoso del resultado de una consulta; se debe cerrar
+   * si no se consume por completo.
+   */
+  public Stream<Map<String, Object>> stream(String sql, Object... bindArgs) 
+  throws SQLException {
+    return iterate(sql, bindArgs).stream();
+  }
+
   /**
    * Ejecuta sentencias a la base de datos.
    *
@@ -131,22 +300,38 @@ public class SQLDatabase implements AutoCloseable, Database {
    * @throws SQLException
    */
   public boolean execSQL(String sql, Object... bindArgs) throws SQLException {
-    PreparedStatement statement  = null;
+    final QueryMetrics metrics = src.metrics;
+    final long start = metrics.start();
+    StatementCache cache = getStatementCache();
+    PreparedStatement statement = cache.acquire(sql);
     try {
-      statement = compileStatement(sql);
       DBUtils.prepareBind(statement, bindArgs);
-      /**/Debug.i(getClass(), DBUtils.concat(sql, "; ", Arrays.toString(bindArgs)));
-      return statement.execute(sql);
-    } finally {
-      DBUtils.closeQuietly(statement);
+      /**/Debug.sql(getClass(), sql, bindArgs);
+      boolean result = statement.execute();
+      metrics.record(sql, bindArgs, start, result ? 0 : statement.getUpdateCount());
+      cache.release(statement);
+      invalidate(sql);
+      return result;
+    } catch(SQLException e) {
+      metrics.failed(sql, start);
+      cache.discard(statement);
+      throw e;
     }
   }
   public boolean execSQL(String sql) throws SQLException {
+    final QueryMetrics metrics = src.metrics;
+    final long start = metrics.start();
     Statement statement  = null;
     try {
       statement = createStatement();
-      /**/Debug.i(getClass(), sql);
-      return statement.execute(sql);
+      /**/Debug.sql(getClass(), sql, null);
+      boolean result = statement.execute(sql);
+      metrics.record(sql, null, start, result ? 0 : statement.getUpdateCount());
+      invalidate(sql);
+      return result;
+    } catch(SQLException e) {
+      metrics.failed(sql, start);
+      throw e;
     } finally {
       DBUtils.closeQuietly(statement);
     }
@@ -161,14 +346,22 @@ public class SQLDatabase implements AutoCloseable, Database {
    * @throws SQLException 
    */
   public int executeUpdate(String sql, Object... bindArgs) throws SQLException {
-    PreparedStatement ps = null;
+    final QueryMetrics metrics = src.metrics;
+    final long start = metrics.start();
+    StatementCache cache = getStatementCache();
+    PreparedStatement ps = cache.acquire(sql);
     try {
-      ps = compileStatement(sql);
       DBUtils.prepareBind(ps, bindArgs);
-      /**/Debug.i(getClass(), DBUtils.concat(sql, "; ", Arrays.toString(bindArgs)));
-      return ps.executeUpdate();
-    } finally {
-      DBUtils.closeQuietly(ps);
+      /**/Debug.sql(getClass(), sql, bindArgs);
+      int rows = ps.executeUpdate();
+      metrics.record(sql, bindArgs, start, rows);
+      cache.release(ps);
+      invalidate(sql);
+      return rows;
+    } catch(SQLException e) {
+      metrics.failed(sql, start);
+      cache.discard(ps);
+      throw e;
     }
   }
   
@@ -183,26 +376,34 @@ public class SQLDatabase implements AutoCloseable, Database {
    * @throws SQLException 
    */
   public long insertAndGetId(String sql, Object... bindArgs) throws SQLException {
-    PreparedStatement ps = null;
+    final QueryMetrics metrics = src.metrics;
+    final long start = metrics.start();
+    StatementCache cache = getStatementCache();
+    PreparedStatement ps = cache.acquire(sql, Statement.RETURN_GENERATED_KEYS);
     try {
-      ps = getConnection().prepareStatement(sql, Statement.RETURN_GENERATED_KEYS);
       DBUtils.prepareBind(ps, bindArgs);
-      if (ps.executeUpdate() == 1) {
-        /**/Debug.i(getClass(), DBUtils.concat(sql, "; ", Arrays.toString(bindArgs)));
+      long id = -1;
+      int rows = ps.executeUpdate();
+      metrics.record(sql, bindArgs, start, rows);
+      if (rows == 1) {
+        /**/Debug.sql(getClass(), sql, bindArgs);
         ResultSet rs = null;
         try {
           //obtengo las ultimas llaves generadas
           rs = ps.getGeneratedKeys();
           // retorna la llave.
-          return rs.next() ? rs.getLong(1) : 0;
+          id = rs.next() ? rs.getLong(1) : 0;
         } finally {
           DBUtils.closeQuietly(rs);
         }
-      } else {
-        return -1;
       }
-    } finally {
-      DBUtils.closeQuietly(ps);
+      cache.release(ps);
+      invalidate(sql);
+      return id;
+    } catch(SQLException e) {
+      metrics.failed(sql, start);
+      cache.discard(ps);
+      throw e;
     }
   }
   
@@ -220,27 +421,318 @@ public class SQLDatabase implements AutoCloseable, Database {
    * @throws SQLException
    */
   public long insert(String table, Map<String, Object> initialValues) throws SQLException {
-    StringBuilder sql = new StringBuilder();
-    sql.append("INSERT INTO ");
-    sql.append(table);
-    sql.append('(');
-
     int size = initialValues.size();
+    String[] columns = new String[size];
     Object[] bindArgs = new Object[size];
     int i = 0;
-    for (String colName : initialValues.keySet()) {
-      sql.append((i > 0) ? "," : "");
-      sql.append(colName);
-      bindArgs[i++] = initialValues.get(colName);
+    for (Map.Entry<String, Object> entry : initialValues.entrySet()) {
+      columns[i] = entry.getKey();
+      bindArgs[i++] = entry.getValue();
+    }
+    return insert(InsertTemplate.of(table, columns), bindArgs);
+  }
+
+  /**
+   * Inserta un registro con una sentencia ya generada.
+   *
+   * @param template sentencia de {@link InsertTemplate#of}
+   * @param values valores en el orden de las columnas de la plantilla
+   *
+   * @return el ID de la fila recién insertada, o -1 si se produjo un error
+   *
+   * @throws SQLException
+   */
+  public long insert(InsertTemplate template, Object... values) throws SQLException {
+    if (values.length != template.getColumnCount()) {
+      throw new SQLException("Expected " + template.getColumnCount()
+              + " values but got " + values.length + ": " + template.getSql());
+    }
+    return insertAndGetId(template.getSql(), values);
+  }
+  
+  /**
+   * Inserta varias filas agrupandolas por columnas en sentencias
+   * <code>INSERT INTO t(c1,c2) VALUES (?,?),(?,?)</code> de hasta
+   * {@link SQLDataSource#getBatchSize()} filas, dentro de una transaccion.
+   *
+   * @param table nombre de la tabla donde se van a insertar las filas
+   * @param rows filas a insertar, las claves deben ser los nombres de las 
+   *      columnas
+   *
+   * @return el número de filas insertadas
+   *
+   * @throws SQLException
+   */
+  public int insertAll(String table, Iterable<Map<String, Object>> rows) 
+  throws SQLException {
+    return insertAll(table, rows, null);
+  }
+  
+  /**
+   * Igual que {@link #insertAll(String, Iterable)} pero obtiene las llaves 
+   * generadas.
+   *
+   * @return los ID de las filas insertadas en el mismo orden que 
+   *      <code>rows</code>
+   *
+   * @throws SQLException
+   */
+  public long[] insertAllAndGetIds(String table, 
+          Collection<Map<String, Object>> rows) throws SQLException {
+    long[] ids = new long[rows.size()];
+    insertAll(table, rows, ids);
+    return ids;
+  }
+  
+  private int insertAll(String table, Iterable<Map<String, Object>> rows, 
+          long[] ids) throws SQLException {
+    Connection conn = getConnection();
+    boolean autoCommit = conn.getAutoCommit();
+    if (autoCommit) conn.setAutoCommit(Boolean.FALSE);
+    try {
+      InsertBatch batch = new InsertBatch(src.batchSize, MAX_BIND_ARGS);
+      int count = 0;
+      int index = 0;
+      for (Map<String, Object> row : rows) {
+        InsertBatch.Group group = batch.add(index++, row);
+        if (group != null) count += insertGroup(table, group, ids);
+      }
+      for (InsertBatch.Group group : batch.drain()) {
+        count += insertGroup(table, group, ids);
+      }
+      if (autoCommit) {
+        conn.commit();
+        endWrites();
+      }
+      return count;
+    } catch (SQLException e) {
+      if (autoCommit) {
+        rollbackQuietly(conn);
+        endWrites();
+      }
+      throw e;
+    } finally {
+      if (autoCommit) conn.setAutoCommit(Boolean.TRUE);
+    }
+  }
+  
+  private int insertGroup(String table, InsertBatch.Group group, long[] ids)
+  throws SQLException {
+    String sql = DBUtils.insertSql(null, table, group.columns, group.size());
+    final QueryMetrics metrics = src.metrics;
+    final long start = metrics.start();
+    StatementCache cache = getStatementCache();
+    PreparedStatement ps = cache.acquire(sql, (ids == null) 
+            ? Statement.NO_GENERATED_KEYS : Statement.RETURN_GENERATED_KEYS);
+    try {
+      DBUtils.prepareBind(ps, group.bindArgs());
+      int rows = ps.executeUpdate();
+      metrics.record(sql, null, start, rows);
+      if (Debug.isLoggable(Debug.Level.INFO))
+        Debug.i(getClass(), "INSERT ", table, "; rows=", group.size());
+      if (ids != null) {
+        ResultSet rs = null;
+        try {
+          rs = ps.getGeneratedKeys();
+          for (int i = 0; i < group.size() && rs.next(); i++) {
+            ids[group.indexes.get(i)] = rs.getLong(1);
+          }
+        } finally {
+          DBUtils.closeQuietly(rs);
+        }
+      }
+      cache.release(ps);
+      invalidate(sql);
+      return rows;
+    } catch(SQLException e) {
+      metrics.failed(sql, start);
+      cache.discard(ps);
+      throw e;
+    }
+  }
+  
+  /**
+   * Inserta o actualiza una fila con una sola sentencia
+   * <code>INSERT ... ON DUPLICATE KEY UPDATE ...</code> de MySQL.
+   *
+   * El estado se obtiene de las filas afectadas: 1 si se inserto y 2 si se
+   * actualizo. Con la opcion CLIENT_FOUND_ROWS del driver (el default de
+   * Connector/J) una fila existente sin cambios tambien cuenta 1; para
+   * distinguirla se debe usar <code>useAffectedRows=true</code>.
+   *
+   * @param table nombre de la tabla
+   * @param values valores de la fila
+   * @param keyColumns [opcional] columnas que no se actualizan si la fila
+   *      ya existe
+   *
+   * @return el estado de la fila
+   *
+   * @throws SQLException
+   */
+  public CreateOrUpdateStatus upsert(String table, Map<String, Object> values,
+          String... keyColumns) throws SQLException {
+    List<String> columns = new ArrayList<String>(values.keySet());
+    String sql = DBUtils.upsertDuplicateKeySql(table, columns,
+            Arrays.asList(keyColumns));
+    Object[] bindArgs = new Object[columns.size()];
+    for (int i = 0; i < bindArgs.length; i++) {
+      bindArgs[i] = values.get(columns.get(i));
     }
-    sql.append(')');
-    sql.append(" VALUES (");
-    for (i = 0; i < size; i++) {
-      sql.append((i > 0) ? ",?" : "?");
+    final QueryMetrics metrics = src.metrics;
+    final long start = metrics.start();
+    StatementCache cache = getStatementCache();
+    PreparedStatement ps = cache.acquire(sql, Statement.RETURN_GENERATED_KEYS);
+    try {
+      DBUtils.prepareBind(ps, bindArgs);
+      /**/Debug.sql(getClass(), sql, bindArgs);
+      int count = ps.executeUpdate();
+      metrics.record(sql, bindArgs, start, count);
+      long id = -1;
+      if (count == 1) {
+        ResultSet rs = null;
+        try {
+          rs = ps.getGeneratedKeys();
+          id = rs.next() ? rs.getLong(1) : 0;
+        } finally {
+          DBUtils.closeQuietly(rs);
+        }
+      }
+      cache.release(ps);
+      invalidate(sql);
+      return upsertStatus(count, id);
+    } catch(SQLException e) {
+      metrics.failed(sql, start);
+      cache.discard(ps);
+      throw e;
     }
-    sql.append(')');
+  }
 
-    return insertAndGetId(sql.toString(), bindArgs);
+  /**
+   * Igual que {@link #upsert(String, Map, String...)} para varias filas,
+   * dentro de una transaccion. Las filas se agrupan por columnas y se
+   * ejecutan con <code>executeBatch</code> en lotes de hasta
+   * {@link SQLDataSource#getBatchSize()} filas; el estado de cada fila se
+   * obtiene de su conteo en el lote, sin el ID insertado. Con
+   * <code>rewriteBatchedStatements=true</code> el driver no informa el
+   * conteo por fila y el estado queda sin crear ni actualizar.
+   *
+   * @return el estado de cada fila en el mismo orden que <code>rows</code>
+   *
+   * @throws SQLException
+   */
+  public List<CreateOrUpdateStatus> upsertAll(String table,
+          Iterable<Map<String, Object>> rows, String... keyColumns)
+          throws SQLException {
+    final List<String> keys = Arrays.asList(keyColumns);
+    final List<CreateOrUpdateStatus> result =
+            new ArrayList<CreateOrUpdateStatus>();
+    Connection conn = getConnection();
+    boolean autoCommit = conn.getAutoCommit();
+    if (autoCommit) conn.setAutoCommit(Boolean.FALSE);
+    try {
+      InsertBatch batch = new InsertBatch(src.batchSize, Integer.MAX_VALUE);
+      int index = 0;
+      for (Map<String, Object> row : rows) {
+        result.add(null);
+        InsertBatch.Group group = batch.add(index++, row);
+        if (group != null) upsertGroup(table, group, keys, result);
+      }
+      for (InsertBatch.Group group : batch.drain()) {
+        upsertGroup(table, group, keys, result);
+      }
+      if (autoCommit) {
+        conn.commit();
+        endWrites();
+      }
+      return result;
+    } catch (SQLException e) {
+      if (autoCommit) {
+        rollbackQuietly(conn);
+        endWrites();
+      }
+      throw e;
+    } finally {
+      if (autoCommit) conn.setAutoCommit(Boolean.TRUE);
+    }
+  }
+
+  private void upsertGroup(String table, InsertBatch.Group group,
+          List<String> keys, List<CreateOrUpdateStatus> result)
+          throws SQLException {
+    String sql = DBUtils.upsertDuplicateKeySql(table, group.columns, keys);
+    final QueryMetrics metrics = src.metrics;
+    final long start = metrics.start();
+    StatementCache cache = getStatementCache();
+    PreparedStatement ps = cache.acquire(sql);
+    try {
+      for (Object[] bindArgs : group.rows) {
+        DBUtils.prepareBind(ps, bindArgs);
+        ps.addBatch();
+      }
+      int[] counts = ps.executeBatch();
+      metrics.record(sql, null, start, group.size());
+      if (Debug.isLoggable(Debug.Level.INFO))
+        Debug.i(getClass(), "UPSERT ", table, "; rows=", group.size());
+      for (int i = 0; i < group.size(); i++) {
+        int count = (i < counts.length) ? counts[i] : Statement.SUCCESS_NO_INFO;
+        result.set(group.indexes.get(i), upsertStatus(count, -1));
+      }
+      cache.release(ps);
+      invalidate(sql);
+    } catch(SQLException e) {
+      metrics.failed(sql, start);
+      cache.discard(ps);
+      throw e;
+    }
+  }
+
+  private static CreateOrUpdateStatus upsertStatus(int count, long insertId) {
+    switch (count) {
+      case 1:
+        return new CreateOrUpdateStatus(Boolean.TRUE, Boolean.FALSE, -1, insertId);
+      case 2:
+        return new CreateOrUpdateStatus(Boolean.FALSE, Boolean.TRUE, 1, -1);
+      default:
+        return new CreateOrUpdateStatus(Boolean.FALSE, Boolean.FALSE, -1, -1);
+    }
+  }
+
+  private static void rollbackQuietly(Connection conn) {
+    try {
+      conn.rollback();
+    } catch (SQLException ignore) {
+      // Empty
+    }
+  }
+
+  /**
+   * Invalida en el cache de resultados la tabla que modifica la sentencia;
+   * dentro de una transaccion la vuelve a invalidar al terminarla o al 
+   * cerrar la base de datos, para descartar lo que otras conecciones 
+   * leyeron antes del commit.
+   */
+  private void invalidate(String sql) throws SQLException {
+    final ResultCache resultCache = src.resultCache;
+    if (resultCache == null) return;
+    String table = ResultCache.writtenTable(sql);
+    resultCache.invalidate(table);
+    if (!getConnection().getAutoCommit()) {
+      synchronized (this) {
+        if (written == null) written = new HashSet<String>();
+        written.add(table);
+      }
+    }
+  }
+  
+  private void endWrites() {
+    final Set<String> tables;
+    synchronized (this) {
+      tables = written;
+      written = null;
+    }
+    final ResultCache resultCache = src.resultCache;
+    if (tables == null || resultCache == null) return;
+    for (String table : tables) resultCache.invalidate(table);
   }
   
   /**
@@ -262,33 +754,42 @@ public class SQLDatabase implements AutoCloseable, Database {
    */
   public int update(String tabla, Map<String, Object> datos, String whereClause, Object... whereArgs)
   throws SQLException {
-    StringBuilder sql = new StringBuilder();
-    sql.append("UPDATE ");
-    sql.append(tabla);
-    sql.append(" SET ");
-
     int setValuesSize = datos.size();
-    int bindArgsSize = (whereArgs == null) ? setValuesSize : (setValuesSize + whereArgs.length);
+    int bindArgsSize = (whereArgs == null) ? setValuesSize
+            : (setValuesSize + whereArgs.length);
+    String[] columns = new String[setValuesSize];
     Object[] bindArgs = new Object[bindArgsSize];
     int i = 0;
-    for (String colName : datos.keySet()) {
-      sql.append((i > 0) ? "," : "");
-      sql.append(colName);
-      bindArgs[i++] = datos.get(colName);
-      sql.append("=?");
+    for (Map.Entry<String, Object> entry : datos.entrySet()) {
+      columns[i] = entry.getKey();
+      bindArgs[i++] = entry.getValue();
     }
-
     if (whereArgs != null) {
-      for (i = setValuesSize; i < bindArgsSize; i++) {
-        bindArgs[i] = whereArgs[i - setValuesSize];
-      }
-    }
-    if (whereClause != null && !whereClause.isEmpty()) {
-      sql.append(" WHERE ");
-      sql.append(whereClause);
+      System.arraycopy(whereArgs, 0, bindArgs, setValuesSize, whereArgs.length);
     }
+    return update(UpdateTemplate.of(tabla, whereClause, columns), bindArgs);
+  }
 
-    return executeUpdate(sql.toString(), bindArgs);
+  /**
+   * Actualiza registros con una sentencia ya generada.
+   *
+   * @param template sentencia de {@link UpdateTemplate#of}
+   * @param bindArgs valores en el orden de las columnas de la plantilla,
+   *      seguidos de los argumentos de la clausula where
+   *
+   * @return el número de filas afectadas.
+   *
+   * @throws SQLException
+   */
+  public int update(UpdateTemplate template, Object... bindArgs) throws SQLException {
+    final int expected = template.getParameterCount();
+    if ((expected < 0) ? bindArgs.length < template.getColumnCount()
+            : bindArgs.length != expected) {
+      throw new SQLException("Expected " + ((expected < 0) ? "at least "
+              + template.getColumnCount() : String.valueOf(expected))
+              + " values but got " + bindArgs.length + ": " + template.getSql());
+    }
+    return executeUpdate(template.getSql(), bindArgs);
   }
   
   /**
@@ -370,6 +871,197 @@ public class SQLDatabase implements AutoCloseable, Database {
     return query(query.toString(), whereArgs);
   }
   
+  /**
+   * Operacion que se ejecuta con una base de datos prestada del pool.
+   */
+  public interface Task<T> {
+    T call(SQLDatabase db) throws SQLException;
+  }
+  
+  public <T> T runInTransaction(Task<T> task) throws SQLException {
+    return runInTransaction(Boolean.FALSE, task);
+  }
+  
+  /**
+   * Ejecuta la operacion dentro de una transaccion: confirma si termina bien
+   * y deshace si lanza una excepcion. Si falla por un deadlock o un lock 
+   * wait timeout se deshace y se vuelve a ejecutar completa segun el 
+   * {@link SQLDataSource#getRetryPolicy()}, por lo que no debe tener efectos
+   * fuera de la base de datos.
+   *
+   * Dentro de otra transaccion usa un SAVEPOINT: al fallar solo deshace lo 
+   * suyo y no reintenta, el reintento le toca a la transaccion externa.
+   *
+   * @param readOnly @true para abrir la transaccion de solo lectura
+   *      (<code>Connection.setReadOnly</code>)
+   * @param task operacion a ejecutar
+   *
+   * @return el resultado de la operacion
+   */
+  public <T> T runInTransaction(boolean readOnly, Task<T> task) 
+  throws SQLException {
+    final Connection conn = getConnection();
+    if (transactionDepth > 0 || !conn.getAutoCommit()) {
+      return runInSavepoint(conn, task);
+    }
+    final RetryPolicy policy = src.retryPolicy;
+    for (int attempt = 1; ; attempt++) {
+      try {
+        return runOnce(conn, readOnly, task);
+      } catch (SQLException e) {
+        if (attempt >= policy.getMaxAttempts() || !policy.isRetryable(e)) throw e;
+        Debug.w(getClass(), "Retrying transaction (", attempt, "): ", e.getMessage());
+        policy.sleep(attempt);
+      }
+    }
+  }
+  
+  private <T> T runOnce(Connection conn, boolean readOnly, Task<T> task) 
+  throws SQLException {
+    if (readOnly) conn.setReadOnly(Boolean.TRUE);
+    boolean success = false;
+    transactionDepth++;
+    try {
+      conn.setAutoCommit(Boolean.FALSE);
+      T result = task.call(this);
+      conn.commit();
+      endWrites();
+      success = true;
+      return result;
+    } finally {
+      transactionDepth--;
+      if (!success) {
+        rollbackQuietly(conn);
+        endWrites();
+      }
+      conn.setAutoCommit(Boolean.TRUE);
+      if (readOnly) conn.setReadOnly(Boolean.FALSE);
+    }
+  }
+  
+  private <T> T runInSavepoint(Connection conn, Task<T> task) 
+  throws SQLException {
+    Savepoint savepoint = conn.setSavepoint();
+    boolean success = false;
+    transactionDepth++;
+    try {
+      T result = task.call(this);
+      success = true;
+      return result;
+    } finally {
+      transactionDepth--;
+      if (success) {
+        conn.releaseSavepoint(savepoint);
+      } else {
+        try {
+          conn.rollback(savepoint);
+        } catch (SQLException ignore) {
+          // Empty
+        }
+      }
+    }
+  }
+  
+  /**
+   * Ejecuta una operacion en el ejecutor de {@link SQLDataSource} con su 
+   * propia coneccion del pool, de modo que varias operaciones independientes
+   * corren en paralelo, limitadas por 
+   * {@link SQLDataSource#getAsyncParallelism()}. La operacion no ve los 
+   * cambios sin confirmar de esta base de datos.
+   *
+   * @param task operacion a ejecutar
+   *
+   * @return futuro con el resultado de la operacion
+   */
+  public <T> CompletableFuture<T> async(final Task<T> task) {
+    final CompletableFuture<T> future = new CompletableFuture<T>();
+    try {
+      src.getExecutor().execute(new Runnable() {
+        @Override public void run() {
+          if (future.isDone()) return;
+          Semaphore permits = src.asyncPermits();
+          SQLDatabase db = null;
+          try {
+            permits.acquire();
+            try {
+              db = src.getDatabase();
+              future.complete(task.call(db));
+            } finally {
+              DBUtils.closeQuietly(db);
+              permits.release();
+            }
+          } catch (Throwable e) {
+            if (e instanceof InterruptedException) {
+              Thread.currentThread().interrupt();
+            }
+            future.completeExceptionally(e);
+          }
+        }
+      });
+    } catch (RuntimeException e) {
+      future.completeExceptionally(e);
+    }
+    return future;
+  }
+  
+  /**
+   * Ejecuta una consulta de forma asincrona.
+   *
+   * @param sql query a ejecutar
+   * @param bindArgs [opcional] parametros del query
+   *
+   * @return futuro con las filas del resultado, ya leidas y desconectadas,
+   *      con los mismos valores que regresa getObject de {@link #query}
+   */
+  public CompletableFuture<Rows> queryAsync(final String sql, 
+          final Object... bindArgs) {
+    return async(new Task<Rows>() {
+      @Override public Rows call(SQLDatabase db) throws SQLException {
+        return Rows.from(db.query(sql, bindArgs), Boolean.TRUE);
+      }
+    });
+  }
+  
+  /**
+   * Ejecuta una sentencia update o delete de forma asincrona.
+   *
+   * @return futuro con el número de filas afectadas
+   */
+  public CompletableFuture<Integer> executeUpdateAsync(final String sql, 
+          final Object... bindArgs) {
+    return async(new Task<Integer>() {
+      @Override public Integer call(SQLDatabase db) throws SQLException {
+        return db.executeUpdate(sql, bindArgs);
+      }
+    });
+  }
+  
+  /**
+   * Inserta un registro de forma asincrona.
+   *
+   * @return futuro con el ID de la fila recién insertada, o -1 si se produjo
+   *      un error
+   */
+  public CompletableFuture<Long> insertAsync(final String table, 
+          final Map<String, Object> initialValues) {
+    return async(new Task<Long>() {
+      @Override public Long call(SQLDatabase db) throws SQLException {
+        return db.insert(table, initialValues);
+      }
+    });
+  }
+  
+  /**
+   * Obtiene un recorrido de la tabla completa en rangos de su llave 
+   * primaria, leidos en paralelo con conecciones del pool.
+   *
+   * @param table nombre de la tabla
+   * @param keyColumn llave primaria, o una columna unica e indexada
+   */
+  public TableScan scan(String table, String keyColumn) {
+    return new TableScan(this, src, table, keyColumn);
+  }
+  
   /** Obtiene un constructor de quierys. */
   public QueryBuilder table(String table) {
     return new QueryBuilder(this).from(table);
@@ -23,15 +23,26 @@ import java.sql.Time;
 import java.sql.Timestamp;
 import java.util.Calendar;
 import java.util.Map;
+import javax.util.QueryStats;
+import javax.util.StatementCache;
 
 public class SQLResultSet implements ResultSet {
    
   final ResultSet delegate;
   final Statement statement;
+  final StatementCache cache;
+  private boolean closed;
+  private QueryStats stats;
+  private long rows;
 
   SQLResultSet(ResultSet delegate, Statement statement) {
+    this(delegate, statement, null);
+  }
+  
+  SQLResultSet(ResultSet delegate, Statement statement, StatementCache cache) {
     this.delegate = delegate;
     this.statement = statement;
+    this.cache = cache;
   }
   
   public static ResultSet executeQuery(Statement statement, String sql) 
@@ -57,14 +68,54 @@ public class SQLResultSet implements ResultSet {
       throw e;
     }
   }
+  
+  /**
+   * Ejecuta una sentencia tomada de un {@link StatementCache}; al cerrar el 
+   * ResultSet la sentencia regresa al cache en lugar de cerrarse.
+   */
+  public static ResultSet executeQuery(PreparedStatement statement, 
+          StatementCache cache) throws SQLException {
+    ResultSet resultSet = null;
+    try {
+      resultSet = statement.executeQuery();
+      return new SQLResultSet(resultSet, statement, cache);
+    } catch(SQLException e) {
+      DBUtils.closeQuietly(resultSet);
+      throw e;
+    }
+  }
+
+  /**
+   * Cuenta las filas leidas del ResultSet y las suma a <code>stats</code> al
+   * cerrarlo.
+   *
+   * @return el mismo ResultSet
+   */
+  public static ResultSet track(ResultSet resultSet, QueryStats stats) {
+    if (stats != null && resultSet instanceof SQLResultSet) {
+      ((SQLResultSet) resultSet).stats = stats;
+    }
+    return resultSet;
+  }
 
   @Override public boolean next() throws SQLException {
-    return delegate.next();
+    boolean next = delegate.next();
+    if (next) rows++;
+    return next;
   }
 
   @Override public void close() {
+    synchronized (this) {
+      if (closed) return;
+      closed = true;
+    }
+    if (stats != null) stats.addRows(rows);
     DBUtils.closeQuietly(delegate);
-    DBUtils.closeQuietly(statement);
+    if (cache != null) {
+      cache.release((PreparedStatement) statement);
+    } else {
+      DBUtils.closeQuietly(statement);
+    }
   }
 
   @Override public boolean wasNull() throws SQLException {
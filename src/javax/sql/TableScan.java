@@ -0,0 +1,408 @@
+package javax.sql;
+
+import java.math.BigInteger;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+import javax.util.DBUtils;
+import javax.util.Debug;
+import javax.util.RowIterator;
+
+/**
+ * Recorre una tabla completa dividiendola en rangos de su llave primaria,
+ * cada uno leido en paralelo con su propia coneccion del pool mediante
+ * {@link SQLDatabase#async}.
+ *
+ * <pre>
+ * long rows = db.scan("ventas", "id")
+ *     .columns("id", "total")
+ *     .partitions(8)
+ *     .forEach(new TableScan.RowHandler() {...});
+ * </pre>
+ *
+ * Los limites de los rangos se obtienen con <code>MIN</code>/<code>MAX</code>
+ * de una llave entera o, con {@link #sampled(boolean)} o llaves no enteras,
+ * muestreando la llave en orden para repartir las filas por igual.
+ */
+public class TableScan {
+
+  /** Recibe las filas; se llama desde varios hilos a la vez. */
+  public interface RowHandler {
+    void handle(Map<String, Object> row) throws SQLException;
+  }
+
+  /** Marca el fin de una particion en el buffer de {@link #stream()}. */
+  private static final Object END = new Object();
+
+  private final SQLDatabase db;
+  private final String table;
+  private final String keyColumn;
+  private String columns = "*";
+  private String whereClause;
+  private Object[] whereArgs = {};
+  private int partitions;
+  private int bufferSize = 1024;
+  private boolean sampled;
+
+  TableScan(SQLDatabase db, SQLDataSource src, String table, String keyColumn) {
+    this.db = db;
+    this.table = table;
+    this.keyColumn = keyColumn;
+    this.partitions = Math.max(1, Math.min(
+            Runtime.getRuntime().availableProcessors(), src.getMaxPoolSize() - 1));
+  }
+
+  public TableScan columns(String... columns) {
+    StringBuilder sb = new StringBuilder();
+    DBUtils.appendColumns(sb, columns);
+    this.columns = sb.toString().trim();
+    return this;
+  }
+
+  /** Filtra las filas; se combina con la condicion de cada rango. */
+  public TableScan where(String whereClause, Object... whereArgs) {
+    this.whereClause = whereClause;
+    this.whereArgs = (whereArgs == null) ? new Object[0] : whereArgs.clone();
+    return this;
+  }
+
+  /**
+   * Establece el numero de rangos; por defecto los procesadores disponibles,
+   * sin pasar del tamaño del pool menos la coneccion de esta base de datos.
+   */
+  public TableScan partitions(int partitions) {
+    if (partitions < 1) throw new IllegalArgumentException("partitions < 1");
+    this.partitions = partitions;
+    return this;
+  }
+
+  /** Filas que {@link #stream()} retiene antes de frenar a los lectores. */
+  public TableScan bufferSize(int bufferSize) {
+    if (bufferSize < 1) throw new IllegalArgumentException("bufferSize < 1");
+    this.bufferSize = bufferSize;
+    return this;
+  }
+
+  /** Obtiene los limites muestreando la llave en vez de MIN/MAX. */
+  public TableScan sampled(boolean sampled) {
+    this.sampled = sampled;
+    return this;
+  }
+
+  /**
+   * Lee todos los rangos en paralelo y pasa cada fila al handler, que debe
+   * ser seguro entre hilos. Si un rango falla se detienen los demas.
+   *
+   * @return el numero de filas leidas
+   */
+  public long forEach(final RowHandler handler) throws SQLException {
+    final AtomicLong count = new AtomicLong();
+    final Cancel cancel = new Cancel();
+    List<CompletableFuture<Void>> futures = submit(new RowHandler() {
+      @Override public void handle(Map<String, Object> row) throws SQLException {
+        handler.handle(row);
+        count.incrementAndGet();
+      }
+    }, cancel);
+    for (CompletableFuture<Void> future : futures) {
+      future.whenComplete(new BiConsumer<Void, Throwable>() {
+        @Override public void accept(Void result, Throwable error) {
+          if (error != null) cancel.cancelled = true;
+        }
+      });
+    }
+    try {
+      CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).get();
+    } catch (InterruptedException e) {
+      cancel.cancelled = true;
+      Thread.currentThread().interrupt();
+      throw new SQLException("Interrupted scanning " + table, e);
+    } catch (ExecutionException e) {
+      cancel.cancelled = true;
+      throw toSQLException(e.getCause());
+    }
+    return count.get();
+  }
+
+  /**
+   * Une los rangos en un Stream secuencial con un buffer de
+   * {@link #bufferSize(int)} filas; el orden entre rangos no se conserva.
+   * Se debe cerrar el Stream si no se consume por completo.
+   */
+  public Stream<Map<String, Object>> stream() throws SQLException {
+    final BlockingQueue<Object> buffer = new ArrayBlockingQueue<Object>(bufferSize);
+    final Cancel cancel = new Cancel();
+    final List<CompletableFuture<Void>> futures = submit(new RowHandler() {
+      @Override public void handle(Map<String, Object> row) throws SQLException {
+        put(buffer, cancel, row);
+      }
+    }, cancel);
+    for (CompletableFuture<Void> future : futures) {
+      future.whenComplete(new BiConsumer<Void, Throwable>() {
+        @Override public void accept(Void result, Throwable error) {
+          try {
+            put(buffer, cancel, (error == null) ? END : new Failure(error));
+          } catch (SQLException ignore) {
+            // Cancelado
+          }
+        }
+      });
+    }
+    final MergeIterator it = new MergeIterator(buffer, cancel, futures.size());
+    Spliterator<Map<String, Object>> split = Spliterators.spliteratorUnknownSize(
+            it, Spliterator.NONNULL);
+    return StreamSupport.stream(split, false).onClose(new Runnable() {
+      @Override public void run() {
+        it.close();
+      }
+    });
+  }
+
+  private static void put(BlockingQueue<Object> buffer, Cancel cancel,
+          Object item) throws SQLException {
+    try {
+      while (!buffer.offer(item, 100, TimeUnit.MILLISECONDS)) {
+        if (cancel.cancelled) throw new SQLException("Scan cancelled");
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new SQLException("Interrupted scanning", e);
+    }
+  }
+
+  private List<CompletableFuture<Void>> submit(final RowHandler handler,
+          final Cancel cancel) throws SQLException {
+    List<Object> bounds = boundaries();
+    /**/Debug.i(getClass(), "SCAN ", table, "; partitions=", bounds.size() + 1);
+    List<CompletableFuture<Void>> futures = new ArrayList<CompletableFuture<Void>>();
+    for (int i = 0; i <= bounds.size(); i++) {
+      final Object low = (i == 0) ? null : bounds.get(i - 1);
+      final Object high = (i == bounds.size()) ? null : bounds.get(i);
+      futures.add(db.async(new SQLDatabase.Task<Void>() {
+        @Override public Void call(SQLDatabase conn) throws SQLException {
+          scanRange(conn, low, high, handler, cancel);
+          return null;
+        }
+      }));
+    }
+    return futures;
+  }
+
+  /** Lee las filas con <code>low &lt;= key &lt; high</code>. */
+  private void scanRange(SQLDatabase conn, Object low, Object high,
+          RowHandler handler, Cancel cancel) throws SQLException {
+    List<Object> args = new ArrayList<Object>(Arrays.asList(whereArgs));
+    StringBuilder sql = new StringBuilder("SELECT ").append(columns)
+            .append(" FROM ").append(table);
+    String glue = " WHERE ";
+    if (whereClause != null && !whereClause.isEmpty()) {
+      sql.append(glue).append('(').append(whereClause).append(')');
+      glue = " AND ";
+    }
+    if (low != null) {
+      sql.append(glue).append(keyColumn).append(" >= ?");
+      args.add(low);
+      glue = " AND ";
+    }
+    if (high != null) {
+      sql.append(glue).append(keyColumn).append(" < ?");
+      args.add(high);
+    }
+    RowIterator it = conn.iterate(sql.toString(), args.toArray());
+    try {
+      while (!cancel.cancelled && it.hasNext()) {
+        handler.handle(it.next());
+      }
+    } catch (IllegalStateException e) {
+      throw toSQLException(e.getCause() != null ? e.getCause() : e);
+    } finally {
+      it.close();
+    }
+  }
+
+  /** @return los limites entre rangos, en orden y sin repetir. */
+  List<Object> boundaries() throws SQLException {
+    List<Object> bounds = new ArrayList<Object>();
+    if (partitions == 1) return bounds;
+    if (!sampled) {
+      Object[] minMax = minMax();
+      if (minMax == null) return bounds;
+      BigInteger min = toBigInteger(minMax[0]);
+      BigInteger max = toBigInteger(minMax[1]);
+      if (min != null && max != null) {
+        BigInteger span = max.subtract(min).add(BigInteger.ONE);
+        BigInteger n = BigInteger.valueOf(partitions);
+        Object last = null;
+        for (int i = 1; i < partitions; i++) {
+          Object bound = bigToKey(min.add(span.multiply(BigInteger.valueOf(i))
+                  .divide(n)), minMax[0]);
+          if (!bound.equals(last) && toBigInteger(bound).compareTo(min) > 0) {
+            bounds.add(bound);
+          }
+          last = bound;
+        }
+        return bounds;
+      }
+    }
+    return sampledBoundaries();
+  }
+
+  /** Toma como limite la llave en cada posicion <code>count * i / n</code>. */
+  private List<Object> sampledBoundaries() throws SQLException {
+    List<Object> bounds = new ArrayList<Object>();
+    long count = db.count(table, whereClause, whereArgs);
+    if (count < partitions) return bounds;
+    StringBuilder sql = new StringBuilder("SELECT ").append(keyColumn)
+            .append(" FROM ").append(table);
+    if (whereClause != null && !whereClause.isEmpty()) {
+      sql.append(" WHERE ").append(whereClause);
+    }
+    sql.append(" ORDER BY ").append(keyColumn).append(" LIMIT 1 OFFSET ?");
+    List<Object> args = new ArrayList<Object>(Arrays.asList(whereArgs));
+    args.add(null);
+    Object[] bindArgs = args.toArray();
+    for (int i = 1; i < partitions; i++) {
+      bindArgs[bindArgs.length - 1] = count * i / partitions;
+      ResultSet rs = null;
+      try {
+        rs = db.query(sql.toString(), bindArgs);
+        if (rs.next()) {
+          Object bound = rs.getObject(1);
+          if (bound != null && (bounds.isEmpty()
+                  || !bound.equals(bounds.get(bounds.size() - 1)))) {
+            bounds.add(bound);
+          }
+        }
+      } finally {
+        DBUtils.closeQuietly(rs);
+      }
+    }
+    return bounds;
+  }
+
+  private Object[] minMax() throws SQLException {
+    StringBuilder sql = new StringBuilder("SELECT MIN(").append(keyColumn)
+            .append("), MAX(").append(keyColumn).append(") FROM ").append(table);
+    if (whereClause != null && !whereClause.isEmpty()) {
+      sql.append(" WHERE ").append(whereClause);
+    }
+    ResultSet rs = null;
+    try {
+      rs = db.query(sql.toString(), whereArgs);
+      if (!rs.next() || rs.getObject(1) == null) return null;
+      return new Object[] {rs.getObject(1), rs.getObject(2)};
+    } finally {
+      DBUtils.closeQuietly(rs);
+    }
+  }
+
+  private static BigInteger toBigInteger(Object value) {
+    if (value instanceof Long || value instanceof Integer
+            || value instanceof Short || value instanceof Byte) {
+      return BigInteger.valueOf(((Number) value).longValue());
+    }
+    if (value instanceof BigInteger) return (BigInteger) value;
+    return null;
+  }
+
+  /** Convierte el limite al tipo de la llave. */
+  private static Object bigToKey(BigInteger value, Object type) {
+    if (type instanceof BigInteger) return value;
+    if (type instanceof Integer) return value.intValue();
+    return value.longValue();
+  }
+
+  private static SQLException toSQLException(Throwable e) {
+    if (e instanceof CompletionException && e.getCause() != null) {
+      e = e.getCause();
+    }
+    if (e instanceof SQLException) return (SQLException) e;
+    return new SQLException(e.getMessage(), e);
+  }
+
+  private static final class Cancel {
+    volatile boolean cancelled;
+  }
+
+  private static final class Failure {
+    final Throwable error;
+
+    Failure(Throwable error) {
+      this.error = error;
+    }
+  }
+
+  /** Lee el buffer hasta recibir el fin de todos los rangos. */
+  private static final class MergeIterator
+          implements Iterator<Map<String, Object>> {
+    private final BlockingQueue<Object> buffer;
+    private final Cancel cancel;
+    private int pending;
+    private Object next;
+
+    MergeIterator(BlockingQueue<Object> buffer, Cancel cancel, int pending) {
+      this.buffer = buffer;
+      this.cancel = cancel;
+      this.pending = pending;
+    }
+
+    @Override public boolean hasNext() {
+      while (next == null && pending > 0) {
+        Object item;
+        try {
+          item = buffer.take();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          close();
+          throw new IllegalStateException("Interrupted scanning", e);
+        }
+        if (item == END) {
+          pending--;
+        } else if (item instanceof Failure) {
+          close();
+          throw new IllegalStateException(((Failure) item).error.getMessage(),
+                  ((Failure) item).error);
+        } else {
+          next = item;
+        }
+      }
+      return next != null;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override public Map<String, Object> next() {
+      if (!hasNext()) throw new NoSuchElementException();
+      Object row = next;
+      next = null;
+      return (Map<String, Object>) row;
+    }
+
+    @Override public void remove() {
+      throw new UnsupportedOperationException("remove");
+    }
+
+    void close() {
+      cancel.cancelled = true;
+      pending = 0;
+      next = null;
+      buffer.clear();
+    }
+  }
+}
@@ -0,0 +1,37 @@
+package javax.sql;
+
+import java.util.Arrays;
+
+/**
+ * Llave de los caches de {@link InsertTemplate} y {@link UpdateTemplate}:
+ * tabla, columnas en orden y algoritmo de conflicto.
+ */
+final class TemplateKey {
+  private final String table;
+  private final String[] columns;
+  private final String conflictAlgorithm;
+  private final int hash;
+
+  TemplateKey(String table, String[] columns, String conflictAlgorithm) {
+    this.table = table;
+    this.columns = columns;
+    this.conflictAlgorithm = (conflictAlgorithm == null) ? "" : conflictAlgorithm;
+    int h = table.hashCode();
+    h = 31 * h + Arrays.hashCode(columns);
+    h = 31 * h + this.conflictAlgorithm.hashCode();
+    this.hash = h;
+  }
+
+  @Override public int hashCode() {
+    return hash;
+  }
+
+  @Override public boolean equals(Object obj) {
+    if (this == obj) return true;
+    if (!(obj instanceof TemplateKey)) return false;
+    TemplateKey other = (TemplateKey) obj;
+    return hash == other.hash && table.equals(other.table)
+        && Arrays.equals(columns, other.columns)
+        && conflictAlgorithm.equals(other.conflictAlgorithm);
+  }
+}
@@ -0,0 +1,194 @@
+package javax.sql;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Sentencia <code>UPDATE [conflicto] tabla SET c1=?,c2=? WHERE ...</code> ya
+ * generada para una tabla, un conjunto ordenado de columnas y una clausula
+ * where. Es inmutable; {@link #of} guarda en un cache la parte
+ * <code>UPDATE ... SET</code> y, en otro cache LRU acotado, sus variantes con
+ * clausula where, para que las clausulas con literales no lo hagan crecer
+ * sin limite.
+ *
+ * Los parametros son los valores de las columnas seguidos de los de la
+ * clausula where.
+ */
+public final class UpdateTemplate {
+
+  /** Plantillas que se recuerdan; despues se generan sin guardarse. */
+  private static final int MAX_TEMPLATES = 1024;
+
+  private static final ConcurrentHashMap<TemplateKey, UpdateTemplate> CACHE =
+          new ConcurrentHashMap<TemplateKey, UpdateTemplate>();
+
+  /** Plantillas con where, de la menos a la mas usada; se sincroniza. */
+  private static final LinkedHashMap<WhereKey, UpdateTemplate> WHERE_CACHE =
+          new LinkedHashMap<WhereKey, UpdateTemplate>(16, 0.75f, true);
+
+  private final String table;
+  private final String[] columns;
+  private final String sql;
+  /** Parametros de la clausula where; -1 si no se pueden contar. */
+  private final int whereParameters;
+
+  private UpdateTemplate(UpdateTemplate set, String whereClause) {
+    this.table = set.table;
+    this.columns = set.columns;
+    this.sql = set.sql + " WHERE " + whereClause;
+    this.whereParameters = countParameters(whereClause);
+  }
+
+  private UpdateTemplate(String conflictAlgorithm, String table, String[] columns) {
+    this.table = table;
+    this.columns = columns;
+    this.whereParameters = 0;
+    StringBuilder sb = new StringBuilder(32 + table.length() + columns.length * 12);
+    sb.append("UPDATE ");
+    if (conflictAlgorithm != null && !conflictAlgorithm.isEmpty()) {
+      sb.append(conflictAlgorithm).append(' ');
+    }
+    sb.append(table).append(" SET ");
+    for (int i = 0; i < columns.length; i++) {
+      if (i > 0) sb.append(',');
+      sb.append(columns[i]).append("=?");
+    }
+    this.sql = sb.toString();
+  }
+
+  /**
+   * @return los <code>?</code> fuera de literales, o -1 si la clausula usa
+   *      parametros numerados o con nombre
+   */
+  static int countParameters(String whereClause) {
+    int count = 0;
+    char quote = 0;
+    for (int i = 0; i < whereClause.length(); i++) {
+      char c = whereClause.charAt(i);
+      if (quote != 0) {
+        if (c == quote) quote = 0;
+      } else if (c == '\'' || c == '"' || c == '`') {
+        quote = c;
+      } else if (c == '?') {
+        if (i + 1 < whereClause.length()
+                && Character.isDigit(whereClause.charAt(i + 1))) return -1;
+        count++;
+      } else if ((c == ':' || c == '@' || c == '$') && i + 1 < whereClause.length()
+              && Character.isLetter(whereClause.charAt(i + 1))) {
+        return -1;
+      }
+    }
+    return count;
+  }
+
+  public static UpdateTemplate of(String table, String whereClause,
+          String... columns) {
+    return withOnConflict(null, table, whereClause, columns);
+  }
+
+  /**
+   * @param conflictAlgorithm [opcional] OR REPLACE, OR IGNORE...
+   * @param table nombre de la tabla
+   * @param whereClause [opcional] clausula where con <code>?</code>
+   * @param columns columnas, en el orden de los valores
+   */
+  public static UpdateTemplate withOnConflict(String conflictAlgorithm, String table,
+          String whereClause, String... columns) {
+    TemplateKey key = new TemplateKey(table, columns, conflictAlgorithm);
+    UpdateTemplate template = CACHE.get(key);
+    boolean cached = template != null;
+    if (template == null) {
+      template = new UpdateTemplate(conflictAlgorithm, table, columns.clone());
+      if (CACHE.size() < MAX_TEMPLATES) {
+        // La llave guardada no comparte el arreglo del llamador.
+        key = new TemplateKey(table, template.columns, conflictAlgorithm);
+        UpdateTemplate old = CACHE.putIfAbsent(key, template);
+        if (old != null) template = old;
+        cached = true;
+      }
+    }
+    if (whereClause == null || whereClause.isEmpty()) return template;
+    // Solo se recuerdan las variantes de una plantilla SET del cache.
+    if (!cached) return new UpdateTemplate(template, whereClause);
+    WhereKey whereKey = new WhereKey(template, whereClause);
+    synchronized (WHERE_CACHE) {
+      UpdateTemplate where = WHERE_CACHE.get(whereKey);
+      if (where != null) return where;
+    }
+    UpdateTemplate where = new UpdateTemplate(template, whereClause);
+    synchronized (WHERE_CACHE) {
+      WHERE_CACHE.put(whereKey, where);
+      while (WHERE_CACHE.size() > MAX_TEMPLATES) {
+        WHERE_CACHE.remove(WHERE_CACHE.keySet().iterator().next());
+      }
+    }
+    return where;
+  }
+
+  public String getTable() {
+    return table;
+  }
+
+  public String[] getColumns() {
+    return columns.clone();
+  }
+
+  public int getColumnCount() {
+    return columns.length;
+  }
+
+  /**
+   * @return los parametros de la sentencia: columnas mas los de la clausula
+   *      where, o -1 si la clausula usa parametros numerados o con nombre
+   */
+  public int getParameterCount() {
+    return (whereParameters < 0) ? -1 : columns.length + whereParameters;
+  }
+
+  public String getSql() {
+    return sql;
+  }
+
+  /**
+   * @return los valores del Map en el orden de las columnas, seguidos de
+   *      <code>whereArgs</code>
+   */
+  public Object[] bindArgs(Map<String, ?> values, Object... whereArgs) {
+    int whereSize = (whereArgs == null) ? 0 : whereArgs.length;
+    Object[] args = new Object[columns.length + whereSize];
+    for (int i = 0; i < columns.length; i++) {
+      args[i] = values.get(columns[i]);
+    }
+    if (whereSize > 0) {
+      System.arraycopy(whereArgs, 0, args, columns.length, whereSize);
+    }
+    return args;
+  }
+
+  @Override public String toString() {
+    return sql;
+  }
+
+  /** Plantilla SET (por identidad) y clausula where. */
+  private static final class WhereKey {
+    private final UpdateTemplate set;
+    private final String whereClause;
+
+    WhereKey(UpdateTemplate set, String whereClause) {
+      this.set = set;
+      this.whereClause = whereClause;
+    }
+
+    @Override public int hashCode() {
+      return 31 * System.identityHashCode(set) + whereClause.hashCode();
+    }
+
+    @Override public boolean equals(Object obj) {
+      if (this == obj) return true;
+      if (!(obj instanceof WhereKey)) return false;
+      WhereKey other = (WhereKey) obj;
+      return set == other.set && whereClause.equals(other.whereClause);
+    }
+  }
+}
@@ -0,0 +1,303 @@
+package javax.sqlite;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import javax.schema.Index;
+import javax.schema.Table;
+import javax.util.DBUtils;
+import javax.util.Debug;
+import javax.util.QueryMetrics;
+
+/**
+ * Sesion de carga masiva de {@link SQLiteDatabase#bulkLoad}: inserta las
+ * filas con una sola sentencia preparada y confirma una transaccion cada
+ * {@link #setRowsPerTransaction(int)} filas, en vez de una transaccion (y un
+ * fsync) por fila.
+ *
+ * <pre>
+ * try (SQLiteBulkLoader loader = db.bulkLoad("ventas", "id", "total")) {
+ *   loader.setSynchronous("OFF").setJournalMode("MEMORY").dropIndexes(table);
+ *   for (...) loader.add(id, total);
+ * }
+ * </pre>
+ *
+ * Los pragmas y los indices se cambian con la primera fila y se restauran
+ * al cerrar, aun si la carga falla. Con <code>synchronous=OFF</code> o
+ * <code>journal_mode=MEMORY/OFF</code> una falla de energia durante la carga
+ * puede corromper la base de datos.
+ */
+public class SQLiteBulkLoader implements AutoCloseable {
+  private static final String TAG = "SQLiteBulkLoader";
+
+  private final SQLiteDatabase db;
+  private final Connection conn;
+  private final String table;
+  private final String[] columns;
+  private final String sql;
+  private int rowsPerTransaction = 10000;
+  private String synchronous;
+  private String journalMode;
+  private final List<Index> indexes = new ArrayList<Index>();
+
+  private PreparedStatement statement;
+  private boolean autoCommit;
+  private String oldSynchronous;
+  private String oldJournalMode;
+  private boolean started;
+  private boolean closed;
+  private long rows;
+  private int pending;
+  private long startedAt;
+  private long elapsed;
+
+  SQLiteBulkLoader(SQLiteDatabase db, String conflictAlgorithm, String table,
+          String... columns) {
+    if (columns == null || columns.length == 0)
+      throw new IllegalArgumentException("columns is empty");
+    this.db = db;
+    this.conn = db.connection();
+    this.table = table;
+    this.columns = columns.clone();
+    this.sql = DBUtils.insertSql(conflictAlgorithm, table,
+            Arrays.asList(columns), 1);
+  }
+
+  /** Establece las filas por transaccion. */
+  public SQLiteBulkLoader setRowsPerTransaction(int rowsPerTransaction) {
+    if (rowsPerTransaction < 1)
+      throw new IllegalArgumentException("rowsPerTransaction < 1");
+    this.rowsPerTransaction = rowsPerTransaction;
+    return this;
+  }
+
+  /** <code>PRAGMA synchronous</code> durante la carga: OFF, NORMAL... */
+  public SQLiteBulkLoader setSynchronous(String synchronous) {
+    checkNotStarted();
+    this.synchronous = synchronous;
+    return this;
+  }
+
+  /**
+   * <code>PRAGMA journal_mode</code> durante la carga: MEMORY, OFF...; no
+   * debe haber otras conecciones abiertas.
+   */
+  public SQLiteBulkLoader setJournalMode(String journalMode) {
+    checkNotStarted();
+    this.journalMode = journalMode;
+    return this;
+  }
+
+  /**
+   * Elimina los indices de la tabla durante la carga y los vuelve a crear al
+   * cerrar, de una sola pasada sobre las filas ya cargadas.
+   *
+   * Sin un indice UNIQUE no hay conflicto que detectar: durante la carga
+   * <code>OR IGNORE</code> y <code>OR REPLACE</code> (de
+   * {@link SQLiteDatabase#bulkLoadWithOnConflict}) no descartan duplicados,
+   * y al cerrar falla la creacion del indice si se cargaron duplicados.
+   */
+  public SQLiteBulkLoader dropIndexes(Table schema) {
+    checkNotStarted();
+    indexes.addAll(schema.indexs);
+    return this;
+  }
+
+  private void checkNotStarted() {
+    if (started) throw new IllegalStateException("Bulk load already started");
+  }
+
+  /** Agrega una fila con los valores en el orden de las columnas. */
+  public SQLiteBulkLoader add(Object... values) throws SQLException {
+    if (values.length != columns.length) {
+      throw new SQLException("Expected " + columns.length + " values but got "
+              + values.length + ": " + sql);
+    }
+    if (closed) throw new SQLException("Bulk load closed");
+    if (!started) start();
+    try {
+      DBUtils.prepareBind(statement, values);
+      statement.executeUpdate();
+    } catch (SQLException e) {
+      abort();
+      throw e;
+    }
+    rows++;
+    if (++pending >= rowsPerTransaction) commit();
+    return this;
+  }
+
+  /** Agrega una fila tomando los valores de las columnas de la sesion. */
+  public SQLiteBulkLoader add(Map<String, Object> row) throws SQLException {
+    Object[] values = new Object[columns.length];
+    for (int i = 0; i < values.length; i++) {
+      values[i] = row.get(columns[i]);
+    }
+    return add(values);
+  }
+
+  private void start() throws SQLException {
+    autoCommit = conn.getAutoCommit();
+    if (!autoCommit) {
+      throw new SQLException("Bulk load can't run inside a transaction");
+    }
+    started = true;
+    startedAt = System.nanoTime();
+    try {
+      if (synchronous != null) {
+        oldSynchronous = pragma("synchronous");
+        db.execSQL("PRAGMA synchronous = " + synchronous);
+      }
+      if (journalMode != null) {
+        oldJournalMode = pragma("journal_mode");
+        db.execSQL("PRAGMA journal_mode = " + journalMode);
+      }
+      for (Index index : indexes) {
+        db.execSQL("DROP INDEX IF EXISTS "
+                + DBUtils.sqlEscapeString(index.name));
+      }
+      statement = conn.prepareStatement(sql);
+      conn.setAutoCommit(Boolean.FALSE);
+    } catch (SQLException e) {
+      restore();
+      closed = true;
+      throw e;
+    }
+  }
+
+  private String pragma(String name) throws SQLException {
+    Statement stmt = null;
+    ResultSet rs = null;
+    try {
+      stmt = conn.createStatement();
+      rs = stmt.executeQuery("PRAGMA " + name);
+      return rs.next() ? rs.getString(1) : null;
+    } finally {
+      DBUtils.closeQuietly(rs);
+      DBUtils.closeQuietly(stmt);
+    }
+  }
+
+  private void commit() throws SQLException {
+    final QueryMetrics metrics = db.getMetrics();
+    final long start = metrics.start();
+    try {
+      conn.commit();
+    } catch (SQLException e) {
+      metrics.failed(sql, start);
+      abort();
+      throw e;
+    }
+    metrics.record(sql, null, start, pending);
+    pending = 0;
+  }
+
+  /** Deshace la transaccion abierta y restaura la base de datos. */
+  private void abort() {
+    if (closed) return;
+    closed = true;
+    elapsed = System.nanoTime() - startedAt;
+    try {
+      conn.rollback();
+    } catch (SQLException ignore) {
+      // Empty
+    }
+    rows -= pending;
+    pending = 0;
+    try {
+      restore();
+    } catch (SQLException e) {
+      Debug.e(TAG, "Error restoring " + table, e);
+    }
+  }
+
+  /**
+   * Confirma las filas pendientes, vuelve a crear los indices y restaura los
+   * pragmas.
+   */
+  @Override public void close() throws SQLException {
+    if (closed) return;
+    if (!started) {
+      closed = true;
+      return;
+    }
+    if (pending > 0) commit();
+    closed = true;
+    elapsed = System.nanoTime() - startedAt;
+    restore();
+    if (Debug.isLoggable(Debug.Level.INFO))
+      Debug.i(TAG, "BULK ", table, "; rows=", rows, "; rows/s=",
+              Math.round(getRowsPerSecond()));
+  }
+
+  /**
+   * Restaura primero la coneccion y los pragmas, para que una falla al crear
+   * un indice no deje <code>synchronous=OFF</code> en la coneccion, y despues
+   * intenta cada indice por separado.
+   *
+   * @throws SQLException con la primera falla; las demas como suprimidas
+   */
+  private void restore() throws SQLException {
+    SQLException error = null;
+    try {
+      DBUtils.closeQuietly(statement);
+      statement = null;
+      try {
+        conn.setAutoCommit(autoCommit);
+      } catch (SQLException e) {
+        error = e;
+      }
+      if (oldJournalMode != null) {
+        error = exec("PRAGMA journal_mode = " + oldJournalMode, error);
+        oldJournalMode = null;
+      }
+      if (oldSynchronous != null) {
+        error = exec("PRAGMA synchronous = " + oldSynchronous, error);
+        oldSynchronous = null;
+      }
+      for (Index index : indexes) {
+        error = exec(index.toString(), error);
+      }
+      indexes.clear();
+    } finally {
+      db.invalidate(sql);
+    }
+    if (error != null) throw error;
+  }
+
+  /** Ejecuta la sentencia y regresa la falla acumulada. */
+  private SQLException exec(String sql, SQLException error) {
+    try {
+      db.execSQL(sql);
+      return error;
+    } catch (SQLException e) {
+      Debug.e(TAG, "Error restoring " + table + ": " + sql, e);
+      if (error == null) return e;
+      error.addSuppressed(e);
+      return error;
+    }
+  }
+
+  /** @return filas cargadas y confirmadas. */
+  public long getRowCount() {
+    return rows - pending;
+  }
+
+  /** @return milisegundos desde la primera fila hasta el cierre. */
+  public long getElapsedMillis() {
+    long nanos = (closed || !started) ? elapsed : System.nanoTime() - startedAt;
+    return nanos / 1000000L;
+  }
+
+  /** @return filas por segundo de la carga. */
+  public double getRowsPerSecond() {
+    long nanos = (closed || !started) ? elapsed : System.nanoTime() - startedAt;
+    return (nanos <= 0) ? 0 : getRowCount() * 1e9 / nanos;
+  }
+}
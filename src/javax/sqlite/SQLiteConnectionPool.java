@@ -0,0 +1,151 @@
+package javax.sqlite;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import javax.util.Debug;
+
+/**
+ * Pool de conecciones de solo lectura que usa {@link SQLiteOpenHelper} en
+ * modo WAL. Cada {@link SQLiteDatabase} prestada regresa al pool al llamar
+ * {@link SQLiteDatabase#close()}.
+ */
+final class SQLiteConnectionPool {
+  private static final String TAG = SQLiteConnectionPool.class.getSimpleName();
+
+  private final SQLiteOpenHelper helper;
+  private final int maxSize;
+  private final long borrowTimeout;
+  private final LinkedList<SQLiteDatabase> idle = new LinkedList<SQLiteDatabase>();
+  private int total;
+  private boolean closed;
+
+  SQLiteConnectionPool(SQLiteOpenHelper helper, int maxSize, long borrowTimeout) {
+    this.helper = helper;
+    this.maxSize = Math.max(maxSize, 1);
+    this.borrowTimeout = borrowTimeout;
+  }
+
+  /**
+   * Presta una coneccion de lectura, abriendo una nueva si no hay ociosas y
+   * no se ha alcanzado el maximo.
+   */
+  SQLiteDatabase borrow() throws SQLException {
+    final long deadline = System.currentTimeMillis() + borrowTimeout;
+    synchronized (this) {
+      while (true) {
+        if (closed) throw new SQLException("Reader pool closed");
+        if (!idle.isEmpty()) {
+          SQLiteDatabase db = idle.removeFirst();
+          db.borrowed = true;
+          return db;
+        }
+        if (total < maxSize) {
+          total++;
+          break;
+        }
+        long wait = deadline - System.currentTimeMillis();
+        if (wait <= 0) {
+          throw new SQLException("Timeout waiting for reader connection; max=" + maxSize);
+        }
+        try {
+          wait(wait);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new SQLException("Interrupted waiting for reader connection", e);
+        }
+      }
+    }
+
+    try {
+      SQLiteDatabase db = helper.openReader(this);
+      synchronized (this) {
+        db.borrowed = true;
+      }
+      Debug.i(TAG, "Opened reader ", total, "/", maxSize);
+      return db;
+    } catch (SQLException e) {
+      discard(null);
+      throw e;
+    } catch (RuntimeException e) {
+      discard(null);
+      throw e;
+    }
+  }
+
+  /**
+   * Marca la coneccion como devuelta.
+   *
+   * @return @false si ya no estaba prestada: ya se devolvio o ya se descarto
+   */
+  private synchronized boolean giveBack(SQLiteDatabase db) {
+    if (!db.borrowed) return false;
+    db.borrowed = false;
+    return true;
+  }
+
+  /** Regresa una coneccion al pool. */
+  void release(SQLiteDatabase db) {
+    if (!giveBack(db)) return;
+    boolean reusable;
+    try {
+      Connection conn = db.connection();
+      reusable = !conn.isClosed();
+      if (reusable && !conn.getAutoCommit()) {
+        conn.rollback();
+        conn.setAutoCommit(Boolean.TRUE);
+      }
+    } catch (SQLException e) {
+      reusable = false;
+    }
+
+    synchronized (this) {
+      if (reusable && !closed) {
+        if (!idle.contains(db)) idle.addFirst(db);
+        notifyAll();
+        return;
+      }
+    }
+    discard(db);
+  }
+
+  /**
+   * Desde el finalizer: solo libera el lugar si la coneccion seguia
+   * prestada; si ya se devolvio o descarto, su lugar ya se libero.
+   */
+  void finalized(SQLiteDatabase db) {
+    if (giveBack(db)) {
+      discard(db);
+    } else {
+      db.closeConnection();
+    }
+  }
+
+  /** Cierra una coneccion y libera su lugar en el pool. */
+  void discard(SQLiteDatabase db) {
+    if (db != null) db.closeConnection();
+    synchronized (this) {
+      total--;
+      notifyAll();
+    }
+  }
+
+  /**
+   * Cierra las conecciones ociosas; las prestadas se cierran al regresar.
+   */
+  void close() {
+    List<SQLiteDatabase> closing;
+    synchronized (this) {
+      closed = true;
+      closing = new ArrayList<SQLiteDatabase>(idle);
+      total -= idle.size();
+      idle.clear();
+      notifyAll();
+    }
+    for (SQLiteDatabase db : closing) {
+      db.closeConnection();
+    }
+  }
+}
@@ -4,24 +4,72 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.Savepoint;
 import java.sql.Statement;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.stream.Stream;
 import javax.util.Debug;
+import javax.util.InsertBatch;
+import javax.util.RowIterator;
 import javax.sql.Database;
+import javax.sql.InsertTemplate;
 import javax.sql.QueryBuilder;
 import javax.sql.SQLResultSet;
+import javax.sql.UpdateTemplate;
 import javax.util.DBUtils;
+import javax.util.QueryMetrics;
+import javax.util.QueryStats;
+import javax.util.ResultCache;
+import javax.util.RetryPolicy;
+import javax.util.Rows;
+import javax.util.RowsResultSet;
+import javax.util.StatementCache;
 
 public class SQLiteDatabase implements AutoCloseable, Database {
   private static final String TAG = "SQLiteDatabase";
+  
+  /** Numero maximo de parametros por sentencia (SQLITE_MAX_VARIABLE_NUMBER). */
+  public static final int MAX_BIND_ARGS = 999;
+  /** Primera version de SQLite con INSERT ... ON CONFLICT DO UPDATE. */
+  private static final int UPSERT_VERSION = 3024000;
+  /** Primera version de SQLite con RETURNING. */
+  private static final int RETURNING_VERSION = 3035000;
 
   private final Connection conn;
   private final String url;
+  private final StatementCache statements;
+  private final SQLiteConnectionPool pool;
+  /** Version de SQLite como 3024000; 0 si no se ha leido. */
+  private int sqliteVersion;
+  /** @true mientras esta prestada por el pool; lo protege el pool. */
+  boolean borrowed;
+  private int batchSize = 500;
+  private QueryMetrics metrics = new QueryMetrics();
+  private ResultCache resultCache;
+  private RetryPolicy retryPolicy = RetryPolicy.DEFAULT;
+  /** Transacciones de {@link #runInTransaction} abiertas, incluyendo savepoints. */
+  private int transactionDepth;
+  /** Tablas escritas en la transaccion abierta, null es todas. */
+  private Set<String> written;
   
   public SQLiteDatabase(String url, Connection conn) {
+    this(url, conn, null);
+  }
+  
+  SQLiteDatabase(String url, Connection conn, SQLiteConnectionPool pool) {
     this.url = url;
     this.conn = conn;
+    this.pool = pool;
+    this.statements = new StatementCache(conn);
   }
   
   public String url() {
@@ -31,17 +79,79 @@ public class SQLiteDatabase implements AutoCloseable, Database {
   public Connection connection() {
     return conn;
   }
+  
+  public int getBatchSize() {
+    return batchSize;
+  }
+  
+  /** Establece las filas por sentencia de {@link #insertAll}. */
+  public void setBatchSize(int batchSize) {
+    if (batchSize < 1) 
+      throw new IllegalArgumentException("batchSize < 1");
+    this.batchSize = batchSize;
+  }
+  
+  public QueryMetrics getMetrics() {
+    return metrics;
+  }
+  
+  /** Comparte las metricas de sentencias con otras bases de datos. */
+  public void setMetrics(QueryMetrics metrics) {
+    if (metrics == null) throw new NullPointerException("metrics == null");
+    this.metrics = metrics;
+  }
+  
+  /** @return los tiempos por forma de sentencia, ver {@link QueryMetrics}. */
+  public List<QueryStats> getStatistics() {
+    return metrics.getStatistics();
+  }
+  
+  public ResultCache getResultCache() {
+    return resultCache;
+  }
+  
+  /**
+   * Guarda los resultados de {@link #query} en el cache; las escrituras de 
+   * esta base de datos invalidan las tablas que modifican. Con null se 
+   * apaga.
+   */
+  public void setResultCache(ResultCache resultCache) {
+    this.resultCache = resultCache;
+  }
+  
+  /** @return cache de sentencias preparadas de la coneccion. */
+  public StatementCache getStatementCache() {
+    return statements;
+  }
 
   @Override protected void finalize() throws Throwable {
     try {
-      close();
+      if (pool != null) {
+        pool.finalized(this);
+      } else {
+        closeConnection();
+      }
     } finally {
       super.finalize();
     }
   }
 
+  /**
+   * Cierra la base de datos; si la coneccion pertenece al pool de lectura de
+   * {@link SQLiteOpenHelper} regresa al pool.
+   */
   @Override public void close() {
+    endWrites();
+    if (pool != null) {
+      pool.release(this);
+    } else {
+      closeConnection();
+    }
+  }
+  
+  void closeConnection() {
     synchronized (this) {
+      statements.close();
       DBUtils.closeQuietly(conn);
     }
   }
@@ -72,32 +182,132 @@ public class SQLiteDatabase implements AutoCloseable, Database {
    * @throws SQLException
    */
   @Override public ResultSet query(String sql) throws SQLException {
+    final ResultCache cache = resultCache;
+    if (cache != null && ResultCache.isCacheable(sql)) {
+      return cachedQuery(cache, sql, null);
+    }
+    return executeQuery(sql);
+  }
+  public ResultSet query(String sql, Object... bindArgs) throws SQLException {
+    final ResultCache cache = resultCache;
+    if (cache != null && ResultCache.isCacheable(sql)) {
+      return cachedQuery(cache, sql, bindArgs);
+    }
+    return executeQuery(sql, bindArgs);
+  }
+  
+  /**
+   * Regresa el resultado del cache o lo guarda en el; solo se guardan las
+   * consultas hechas fuera de una transaccion.
+
+   * Los resultados de mas de {@link ResultCache#getMaxRows()} filas no se
+   * guardan: se leen esas filas y el resto se sigue leyendo del ResultSet.
+   * La copia conserva los valores tal como los regresa getObject.
+   */
+  private ResultSet cachedQuery(ResultCache cache, String sql, 
+          Object[] bindArgs) throws SQLException {
+    Rows rows = cache.get(sql, bindArgs);
+    if (rows != null) return new RowsResultSet(rows);
+
+    final long generation = cache.generation();
+    final boolean autoCommit = conn.getAutoCommit();
+    final int maxRows = cache.getMaxRows();
+    ResultSet rs = (bindArgs == null) ? executeQuery(sql) 
+            : executeQuery(sql, bindArgs);
+    boolean streaming = false;
+    try {
+      // Una fila de mas indica que el resultado no cabe en el cache.
+      rows = Rows.from(rs, (maxRows < Integer.MAX_VALUE) ? maxRows + 1 : maxRows);
+      if (rows.size() > maxRows) {
+        streaming = true;
+        return new RowsResultSet(rows, rs);
+      }
+    } finally {
+      if (!streaming) DBUtils.closeQuietly(rs);
+    }
+    if (autoCommit) cache.put(sql, bindArgs, rows, generation);
+    return new RowsResultSet(rows);
+  }
+  
+  private ResultSet executeQuery(String sql) throws SQLException {
+    final long start = metrics.start();
     Statement statement = null;
     try {
       statement = conn.createStatement(/*ResultSet.TYPE_FORWARD_ONLY, 
               ResultSet.CONCUR_READ_ONLY, ResultSet.CLOSE_CURSORS_AT_COMMIT*/);
       ResultSet resultSet = SQLResultSet.executeQuery(statement, sql);
-      /**/Debug.i(TAG, sql);
-      return resultSet;
+      /**/Debug.sql(TAG, sql, null);
+      return SQLResultSet.track(resultSet, metrics.record(sql, null, start, 0));
     } catch (SQLException e) {
+      metrics.failed(sql, start);
       DBUtils.closeQuietly(statement);
       throw e;
     }
   }
-  public ResultSet query(String sql, Object... bindArgs) throws SQLException {
+  private ResultSet executeQuery(String sql, Object[] bindArgs) 
+  throws SQLException {
+    final long start = metrics.start();
     PreparedStatement statement = null;
     try {
-      statement = conn.prepareStatement(sql/*, ResultSet.TYPE_FORWARD_ONLY, 
-              ResultSet.CONCUR_READ_ONLY, ResultSet.CLOSE_CURSORS_AT_COMMIT*/);
+      statement = statements.acquire(sql);
+      DBUtils.prepareBind(statement, bindArgs);
+      ResultSet resultSet = SQLResultSet.executeQuery(statement, statements);
+      /**/Debug.sql(TAG, sql, bindArgs);
+      return SQLResultSet.track(resultSet, 
+              metrics.record(sql, bindArgs, start, 0));
+    } catch (SQLException e) {
+      metrics.failed(sql, start);
+      statements.discard(statement);
+      throw e;
+    }
+  }
+
+  /**
+   * Ejecuta una consulta con un cursor de solo avance; SQLite entrega las 
+   * filas conforme se leen.
+   *
+   * @param sql query a ejecutar
+   * @param bindArgs [opcional] parametros del query
+   *
+   * @return ResultSet con el resultado obtenido
+   *
+   * @throws SQLException
+   */
+  public ResultSet queryForwardOnly(String sql, Object... bindArgs) 
+  throws SQLException {
+    final long start = metrics.start();
+    PreparedStatement statement = null;
+    try {
+      statement = conn.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, 
+              ResultSet.CONCUR_READ_ONLY);
       DBUtils.prepareBind(statement, bindArgs);
       ResultSet resultSet = SQLResultSet.executeQuery(statement);
-      /**/Debug.i(TAG, sql, "; ", Arrays.toString(bindArgs));
-      return resultSet;
+      /**/Debug.sql(TAG, sql, bindArgs);
+      return SQLResultSet.track(resultSet, 
+              metrics.record(sql, bindArgs, start, 0));
     } catch (SQLException e) {
+      metrics.failed(sql, start);
       DBUtils.closeQuietly(statement);
       throw e;
     }
   }
+  
+  /**
+   * Recorre el resultado de una consulta fila por fila sin cargarlo en memoria.
+   * La sentencia se cierra al consumir la ultima fila o al cerrar el iterador.
+   */
+  public RowIterator iterate(String sql, Object... bindArgs) throws SQLException {
+    return new RowIterator(queryForwardOnly(sql, bindArgs));
+  }
+  
+  /**
+   * Obtiene un Stream perezoso del resultado de una consulta; se debe cerrar
+   * si no se consume por completo.
+   */
+  public Stream<Map<String, Object>> stream(String sql, Object... bindArgs) 
+  throws SQLException {
+    return iterate(sql, bindArgs).stream();
+  }
 
   /**
    * Ejecuta sentencias a la base de datos.
@@ -110,20 +320,33 @@ public class SQLiteDatabase implements AutoCloseable, Database {
    * @throws SQLException
    */
   public boolean execSQL(String sql, Object... bindArgs) throws SQLException {
-    PreparedStatement statement  = null;
+    final long start = metrics.start();
+    PreparedStatement statement = statements.acquire(sql);
     try {
-      statement = compileStatement(sql);
       DBUtils.prepareBind(statement, bindArgs);
-      return statement.execute();
-    } finally {
-      DBUtils.closeQuietly(statement);
+      boolean result = statement.execute();
+      metrics.record(sql, bindArgs, start, result ? 0 : statement.getUpdateCount());
+      statements.release(statement);
+      invalidate(sql);
+      return result;
+    } catch (SQLException e) {
+      metrics.failed(sql, start);
+      statements.discard(statement);
+      throw e;
     }
   }
   public boolean execSQL(String sql) throws SQLException {
+    final long start = metrics.start();
     Statement statement = null;
     try {
       statement = createStatement();
-      return statement.execute(sql);
+      boolean result = statement.execute(sql);
+      metrics.record(sql, null, start, result ? 0 : statement.getUpdateCount());
+      invalidate(sql);
+      return result;
+    } catch (SQLException e) {
+      metrics.failed(sql, start);
+      throw e;
     } finally {
       DBUtils.closeQuietly(statement);
     }
@@ -139,15 +362,20 @@ public class SQLiteDatabase implements AutoCloseable, Database {
    * @throws SQLException 
    */
   public int executeUpdate(String sql, Object... bindArgs) throws SQLException {
-    PreparedStatement ps = null;
+    final long start = metrics.start();
+    PreparedStatement ps = statements.acquire(sql);
     try {
-      ps = compileStatement(sql);
       DBUtils.prepareBind(ps, bindArgs);
       int rows = ps.executeUpdate();
-      /**/Debug.i(TAG, sql, "; ", Arrays.toString(bindArgs));
+      metrics.record(sql, bindArgs, start, rows);
+      /**/Debug.sql(TAG, sql, bindArgs);
+      statements.release(ps);
+      invalidate(sql);
       return rows;
-    } finally {
-      DBUtils.closeQuietly(ps);
+    } catch (SQLException e) {
+      metrics.failed(sql, start);
+      statements.discard(ps);
+      throw e;
     }
   }
 
@@ -163,26 +391,32 @@ public class SQLiteDatabase implements AutoCloseable, Database {
    */
   public long insertAndGetId(String sql, Object... bindArgs)
           throws SQLException {
-    PreparedStatement ps = null;
+    final long start = metrics.start();
+    PreparedStatement ps = statements.acquire(sql, Statement.RETURN_GENERATED_KEYS);
     try {
-      ps = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS);
       DBUtils.prepareBind(ps, bindArgs);
-      if (ps.executeUpdate() > 0) {
-        /**/Debug.i(TAG, sql, "; ", Arrays.toString(bindArgs));
+      long id = -1;
+      int rows = ps.executeUpdate();
+      metrics.record(sql, bindArgs, start, rows);
+      if (rows > 0) {
+        /**/Debug.sql(TAG, sql, bindArgs);
         ResultSet rs = null;
         try {
           // obtengo las ultimas llaves generadas
           rs = ps.getGeneratedKeys();
           // retorna la llave.
-          return rs.next() ? rs.getLong(1) : 0;
+          id = rs.next() ? rs.getLong(1) : 0;
         } finally {
           DBUtils.closeQuietly(rs);
         }
-      } else {
-        return -1;
       }
-    } finally {
-      DBUtils.closeQuietly(ps);
+      statements.release(ps);
+      invalidate(sql);
+      return id;
+    } catch (SQLException e) {
+      metrics.failed(sql, start);
+      statements.discard(ps);
+      throw e;
     }
   }
   
@@ -201,29 +435,34 @@ public class SQLiteDatabase implements AutoCloseable, Database {
    */
   public long insertWithOnConflict(String table, Map<String, Object> initialValues, 
           String conflictAlgorithm) throws SQLException {
-    StringBuilder sql = new StringBuilder();
-    sql.append("INSERT ");
-    sql.append(conflictAlgorithm);
-    sql.append(" INTO ");
-    sql.append(table);
-    sql.append('(');
-
     int size = initialValues.size();
+    String[] columns = new String[size];
     Object[] bindArgs = new Object[size];
     int i = 0;
-    for (String colName : initialValues.keySet()) {
-      sql.append((i > 0) ? "," : "");
-      sql.append(colName);
-      bindArgs[i++] = initialValues.get(colName);
-    }
-    sql.append(')');
-    sql.append(" VALUES (");
-    for (i = 0; i < size; i++) {
-      sql.append((i > 0) ? ",?" : "?");
+    for (Map.Entry<String, Object> entry : initialValues.entrySet()) {
+      columns[i] = entry.getKey();
+      bindArgs[i++] = entry.getValue();
     }
-    sql.append(')');
+    return insert(InsertTemplate.withOnConflict(conflictAlgorithm, table,
+            columns), bindArgs);
+  }
 
-    return insertAndGetId(sql.toString(), bindArgs);
+  /**
+   * Inserta un registro con una sentencia ya generada.
+   *
+   * @param template sentencia de {@link InsertTemplate#of}
+   * @param values valores en el orden de las columnas de la plantilla
+   *
+   * @return el ID de la fila recién insertada, o -1 si se produjo un error
+   *
+   * @throws SQLException
+   */
+  public long insert(InsertTemplate template, Object... values) throws SQLException {
+    if (values.length != template.getColumnCount()) {
+      throw new SQLException("Expected " + template.getColumnCount()
+              + " values but got " + values.length + ": " + template.getSql());
+    }
+    return insertAndGetId(template.getSql(), values);
   }
   
   public long insert(String table, Map<String, Object> values) {
@@ -235,6 +474,141 @@ public class SQLiteDatabase implements AutoCloseable, Database {
     }
   }
 
+  /**
+   * Inserta varias filas agrupandolas por columnas en sentencias
+   * <code>INSERT INTO t(c1,c2) VALUES (?,?),(?,?)</code> de hasta
+   * {@link #getBatchSize()} filas, dentro de una sola transaccion.
+   *
+   * @param table nombre de la tabla donde se van a insertar las filas
+   * @param rows filas a insertar, las claves deben ser los nombres de las 
+   *      columnas
+   * @param conflictAlgorithm  OR ROLLBACK, OR ABORT, OR FAIL, OR IGNORE, OR REPLACE
+   *
+   * @return el número de filas insertadas
+   *
+   * @throws SQLException
+   */
+  public int insertAllWithOnConflict(String table, 
+          Iterable<Map<String, Object>> rows, String conflictAlgorithm) 
+          throws SQLException {
+    return insertAll(table, rows, conflictAlgorithm, null);
+  }
+  
+  public int insertAll(String table, Iterable<Map<String, Object>> rows) 
+          throws SQLException {
+    return insertAll(table, rows, "", null);
+  }
+  
+  /**
+   * Inserta varias filas dentro de una sola transaccion y obtiene las llaves
+   * generadas. SQLite solo informa el ultimo rowid de cada sentencia, por lo
+   * que cada fila se ejecuta con la misma sentencia preparada.
+   *
+   * @return los ID de las filas insertadas en el mismo orden que 
+   *      <code>rows</code>
+   *
+   * @throws SQLException
+   */
+  public long[] insertAllAndGetIds(String table, 
+          Collection<Map<String, Object>> rows) throws SQLException {
+    long[] ids = new long[rows.size()];
+    insertAll(table, rows, "", ids);
+    return ids;
+  }
+  
+  private int insertAll(String table, Iterable<Map<String, Object>> rows, 
+          String conflictAlgorithm, long[] ids) throws SQLException {
+    // Con llaves se usa una fila por sentencia.
+    final int rowsPerStatement = (ids == null) ? batchSize : 1;
+    final boolean autoCommit = conn.getAutoCommit();
+    if (autoCommit) conn.setAutoCommit(Boolean.FALSE);
+    try {
+      InsertBatch batch = new InsertBatch(rowsPerStatement, MAX_BIND_ARGS);
+      int count = 0;
+      int index = 0;
+      for (Map<String, Object> row : rows) {
+        InsertBatch.Group group = batch.add(index++, row);
+        if (group != null) count += insertGroup(table, group, conflictAlgorithm, ids);
+      }
+      for (InsertBatch.Group group : batch.drain()) {
+        count += insertGroup(table, group, conflictAlgorithm, ids);
+      }
+      if (autoCommit) commit();
+      return count;
+    } catch (SQLException e) {
+      if (autoCommit) rollbackQuietly();
+      throw e;
+    } finally {
+      if (autoCommit) conn.setAutoCommit(Boolean.TRUE);
+    }
+  }
+  
+  private int insertGroup(String table, InsertBatch.Group group, 
+          String conflictAlgorithm, long[] ids) throws SQLException {
+    String sql = DBUtils.insertSql(conflictAlgorithm, table, group.columns, 
+            group.size());
+    if (ids != null) {
+      long id = insertAndGetId(sql, group.bindArgs());
+      ids[group.indexes.get(0)] = id;
+      return (id > -1) ? 1 : 0;
+    }
+    final long start = metrics.start();
+    PreparedStatement ps = statements.acquire(sql);
+    try {
+      DBUtils.prepareBind(ps, group.bindArgs());
+      int rows = ps.executeUpdate();
+      metrics.record(sql, null, start, rows);
+      if (Debug.isLoggable(Debug.Level.INFO))
+        Debug.i(TAG, "INSERT ", table, "; rows=", group.size());
+      statements.release(ps);
+      invalidate(sql);
+      return rows;
+    } catch (SQLException e) {
+      metrics.failed(sql, start);
+      statements.discard(ps);
+      throw e;
+    }
+  }
+  
+  private void commit() throws SQLException {
+    conn.commit();
+    endWrites();
+  }
+  
+  private void rollbackQuietly() {
+    try {
+      conn.rollback();
+    } catch (SQLException ignore) {
+      // Empty
+    }
+    endWrites();
+  }
+  
+  /**
+   * Invalida en el cache de resultados la tabla que modifica la sentencia;
+   * dentro de una transaccion la vuelve a invalidar al terminarla, para 
+   * descartar lo que otras conecciones leyeron antes del commit.
+   */
+  void invalidate(String sql) throws SQLException {
+    final ResultCache cache = resultCache;
+    if (cache == null) return;
+    String table = ResultCache.writtenTable(sql);
+    cache.invalidate(table);
+    if (!conn.getAutoCommit()) {
+      if (written == null) written = new HashSet<String>();
+      written.add(table);
+    }
+  }
+  
+  private void endWrites() {
+    final Set<String> tables = written;
+    if (tables == null) return;
+    written = null;
+    final ResultCache cache = resultCache;
+    if (cache == null) return;
+    for (String table : tables) cache.invalidate(table);
+  }
+  
   /**
    * Cuando se produce una violación de restricción UNIQUE o PRIMARY KEY, 
    * la REPLACE declaración:
@@ -276,36 +650,43 @@ public class SQLiteDatabase implements AutoCloseable, Database {
   public int updateWithOnConflict(String table, Map<String, Object> values,
           String conflictAlgorithm, String whereClause, 
           Object... whereArgs) throws SQLException {
-    StringBuilder sql = new StringBuilder();
-    sql.append("UPDATE ");
-    sql.append(conflictAlgorithm);
-    sql.append(" ");
-    sql.append(table);
-    sql.append(" SET ");
-
     int setValuesSize = values.size();
     int bindArgsSize = (whereArgs == null) ? setValuesSize
             : (setValuesSize + whereArgs.length);
+    String[] columns = new String[setValuesSize];
     Object[] bindArgs = new Object[bindArgsSize];
     int i = 0;
-    for (String colName : values.keySet()) {
-      sql.append((i > 0) ? "," : "");
-      sql.append(colName);
-      bindArgs[i++] = values.get(colName);
-      sql.append("=?");
+    for (Map.Entry<String, Object> entry : values.entrySet()) {
+      columns[i] = entry.getKey();
+      bindArgs[i++] = entry.getValue();
     }
-
     if (whereArgs != null) {
-      for (i = setValuesSize; i < bindArgsSize; i++) {
-        bindArgs[i] = whereArgs[i - setValuesSize];
-      }
-    }
-    if (whereClause != null && !whereClause.isEmpty()) {
-      sql.append(" WHERE ");
-      sql.append(whereClause);
+      System.arraycopy(whereArgs, 0, bindArgs, setValuesSize, whereArgs.length);
     }
+    return update(UpdateTemplate.withOnConflict(conflictAlgorithm, table,
+            whereClause, columns), bindArgs);
+  }
 
-    return executeUpdate(sql.toString(), bindArgs);
+  /**
+   * Actualiza registros con una sentencia ya generada.
+   *
+   * @param template sentencia de {@link UpdateTemplate#of}
+   * @param bindArgs valores en el orden de las columnas de la plantilla,
+   *      seguidos de los argumentos de la clausula where
+   *
+   * @return el número de filas afectadas.
+   *
+   * @throws SQLException
+   */
+  public int update(UpdateTemplate template, Object... bindArgs) throws SQLException {
+    final int expected = template.getParameterCount();
+    if ((expected < 0) ? bindArgs.length < template.getColumnCount()
+            : bindArgs.length != expected) {
+      throw new SQLException("Expected " + ((expected < 0) ? "at least "
+              + template.getColumnCount() : String.valueOf(expected))
+              + " values but got " + bindArgs.length + ": " + template.getSql());
+    }
+    return executeUpdate(template.getSql(), bindArgs);
   }
   
   public int update(String table,  Map<String, Object> values, 
@@ -335,7 +716,194 @@ public class SQLiteDatabase implements AutoCloseable, Database {
       return new CreateOrUpdateStatus(Boolean.FALSE, Boolean.FALSE, -1, -1);
     }
   }
-  
+
+  /**
+   * Inserta o actualiza una fila con una sola sentencia
+   * <code>INSERT ... ON CONFLICT(keyColumns) DO UPDATE SET ...</code>.
+   * Las columnas llave deben tener un indice UNIQUE o ser la PRIMARY KEY.
+   *
+   * La fila se reporta como creada cuando cambia el
+   * <code>last_insert_rowid()</code> de la coneccion, por lo que en tablas
+   * WITHOUT ROWID una insercion se reporta como actualizacion.
+   *
+   * @param table nombre de la tabla
+   * @param values valores de la fila
+   * @param keyColumns columnas del conflicto, no se actualizan
+   *
+   * @return el estado de la fila
+   *
+   * @throws SQLFeatureNotSupportedException si la version de SQLite es
+   *      anterior a 3.24.0
+   * @throws SQLException
+   */
+  public CreateOrUpdateStatus upsertOnConflict(String table,
+          Map<String, Object> values, String... keyColumns) throws SQLException {
+    return upsertAll(table, Collections.singletonList(values), keyColumns)
+            .get(0);
+  }
+
+  /**
+   * Igual que {@link #upsertOnConflict} para varias filas dentro de una sola
+   * transaccion; cada fila reutiliza la sentencia preparada de su conjunto
+   * de columnas. Desde SQLite 3.35 el estado se obtiene con
+   * <code>RETURNING last_insert_rowid()</code> en la misma sentencia; antes
+   * se consulta despues de cada fila.
+   *
+   * @return el estado de cada fila en el mismo orden que <code>rows</code>
+   *
+   * @throws SQLException
+   */
+  public List<CreateOrUpdateStatus> upsertAll(String table,
+          Iterable<Map<String, Object>> rows, String... keyColumns)
+          throws SQLException {
+    final List<CreateOrUpdateStatus> result =
+            new ArrayList<CreateOrUpdateStatus>();
+    upsertAll(table, rows, keyColumns, result);
+    return result;
+  }
+
+  /**
+   * Igual que {@link #upsertAll(String, Iterable, String...)} pero sin
+   * obtener el <code>last_insert_rowid()</code> de cada fila, para cargas
+   * donde no se necesita saber que filas se crearon.
+   *
+   * @return el número de filas insertadas o actualizadas
+   *
+   * @throws SQLException
+   */
+  public int upsertAllWithoutIds(String table,
+          Iterable<Map<String, Object>> rows, String... keyColumns)
+          throws SQLException {
+    return upsertAll(table, rows, keyColumns, null);
+  }
+
+  /** @param result [opcional] recibe el estado de cada fila */
+  private int upsertAll(String table, Iterable<Map<String, Object>> rows,
+          String[] keyColumns, List<CreateOrUpdateStatus> result)
+          throws SQLException {
+    if (keyColumns == null || keyColumns.length == 0)
+      throw new IllegalArgumentException("keyColumns is empty");
+    checkVersion(UPSERT_VERSION, "INSERT ... ON CONFLICT DO UPDATE");
+    final List<String> keys = Arrays.asList(keyColumns);
+    final boolean returning = result != null && sqliteVersion >= RETURNING_VERSION;
+    // El SQL se construye una vez por conjunto de columnas.
+    final Map<List<String>, String> sqls = new HashMap<List<String>, String>();
+    final boolean autoCommit = conn.getAutoCommit();
+    if (autoCommit) conn.setAutoCommit(Boolean.FALSE);
+    try {
+      int count = 0;
+      long lastRowid = (result != null) ? lastInsertRowid() : 0;
+      for (Map<String, Object> row : rows) {
+        List<String> columns = new ArrayList<String>(row.keySet());
+        String sql = sqls.get(columns);
+        if (sql == null) {
+          sql = DBUtils.upsertSql(table, columns, keys);
+          if (returning) sql += " RETURNING last_insert_rowid()";
+          sqls.put(columns, sql);
+        }
+        Object[] bindArgs = new Object[columns.size()];
+        for (int i = 0; i < bindArgs.length; i++) {
+          bindArgs[i] = row.get(columns.get(i));
+        }
+        int changed;
+        long rowid;
+        if (returning) {
+          // DO NOTHING no regresa fila; al insertar, last_insert_rowid() ya es
+          // el de la fila nueva.
+          Long returned = queryReturning(sql, bindArgs);
+          changed = (returned != null) ? 1 : 0;
+          rowid = (returned != null) ? returned : lastRowid;
+        } else {
+          changed = executeUpdate(sql, bindArgs);
+          if (result == null) {
+            count += changed;
+            continue;
+          }
+          rowid = lastInsertRowid();
+        }
+        count += changed;
+        if (changed > 0 && rowid != lastRowid) {
+          result.add(new CreateOrUpdateStatus(Boolean.TRUE, Boolean.FALSE, -1, rowid));
+        } else if (changed > 0) {
+          result.add(new CreateOrUpdateStatus(Boolean.FALSE, Boolean.TRUE, changed, -1));
+        } else {
+          result.add(new CreateOrUpdateStatus(Boolean.FALSE, Boolean.FALSE, -1, -1));
+        }
+        lastRowid = rowid;
+      }
+      if (autoCommit) commit();
+      return count;
+    } catch (SQLException e) {
+      if (autoCommit) rollbackQuietly();
+      throw e;
+    } finally {
+      if (autoCommit) conn.setAutoCommit(Boolean.TRUE);
+    }
+  }
+
+  /**
+   * @throws SQLFeatureNotSupportedException si la version de SQLite es
+   *      anterior a <code>required</code>
+   */
+  private void checkVersion(int required, String feature) throws SQLException {
+    if (sqliteVersion == 0) {
+      ResultSet rs = null;
+      try {
+        rs = executeQuery("SELECT sqlite_version()", null);
+        sqliteVersion = rs.next() ? versionNumber(rs.getString(1)) : -1;
+      } finally {
+        DBUtils.closeQuietly(rs);
+      }
+    }
+    if (sqliteVersion < required) {
+      throw new SQLFeatureNotSupportedException(feature + " requires SQLite "
+              + (required / 1000000) + "." + (required / 1000 % 1000) + "."
+              + (required % 1000) + " or later");
+    }
+  }
+
+  /** @return "3.24.0" como 3024000, o -1 si no se reconoce. */
+  static int versionNumber(String version) {
+    if (version == null) return -1;
+    String[] parts = version.trim().split("\\.");
+    int number = 0;
+    for (int i = 0; i < 3; i++) {
+      int part = 0;
+      if (i < parts.length) {
+        try {
+          part = Integer.parseInt(parts[i]);
+        } catch (NumberFormatException e) {
+          return -1;
+        }
+      }
+      number = number * 1000 + part;
+    }
+    return number;
+  }
+
+  /** @return el valor de RETURNING o null si la sentencia no regreso fila */
+  private Long queryReturning(String sql, Object[] bindArgs) throws SQLException {
+    ResultSet rs = null;
+    try {
+      rs = executeQuery(sql, bindArgs);
+      Long value = rs.next() ? rs.getLong(1) : null;
+      invalidate(sql);
+      return value;
+    } finally {
+      DBUtils.closeQuietly(rs);
+    }
+  }
+
+  private long lastInsertRowid() throws SQLException {
+    ResultSet rs = null;
+    try {
+      rs = executeQuery("SELECT last_insert_rowid()", null);
+      return rs.next() ? rs.getLong(1) : 0;
+    } finally {
+      DBUtils.closeQuietly(rs);
+    }
+  }
+
   /**
    * Elimina un registro de la base de datos.
    *
@@ -407,6 +975,27 @@ public class SQLiteDatabase implements AutoCloseable, Database {
     }
   }
   
+  /**
+   * Abre una sesion de carga masiva sobre la tabla, ver 
+   * {@link SQLiteBulkLoader}; se debe cerrar para confirmar las ultimas 
+   * filas.
+   *
+   * @param table nombre de la tabla
+   * @param columns columnas de cada fila
+   */
+  public SQLiteBulkLoader bulkLoad(String table, String... columns) {
+    return new SQLiteBulkLoader(this, "", table, columns);
+  }
+  
+  /**
+   * Igual que {@link #bulkLoad(String, String...)} con un algoritmo de 
+   * conflicto: OR REPLACE, OR IGNORE...
+   */
+  public SQLiteBulkLoader bulkLoadWithOnConflict(String table, 
+          String conflictAlgorithm, String... columns) {
+    return new SQLiteBulkLoader(this, conflictAlgorithm, table, columns);
+  }
+  
   /** Obtiene un constructor de quierys. */
   public QueryBuilder table(String table) {
     return new QueryBuilder(this).from(table);
@@ -425,14 +1014,118 @@ public class SQLiteDatabase implements AutoCloseable, Database {
   }
 
   public void setTransactionSuccessful() throws SQLException {
-    conn.commit();
+    commit();
   }
 
   public void endTransaction() throws SQLException {
     conn.setAutoCommit(Boolean.TRUE);
+    endWrites();
   }
 
   public void rollback() throws SQLException {
     conn.rollback();
+    endWrites();
+  }
+  
+  public interface Task<T> {
+    T call(SQLiteDatabase db) throws SQLException;
+  }
+  
+  public RetryPolicy getRetryPolicy() {
+    return retryPolicy;
+  }
+  
+  /** Establece los reintentos de {@link #runInTransaction}. */
+  public void setRetryPolicy(RetryPolicy retryPolicy) {
+    if (retryPolicy == null) throw new NullPointerException("retryPolicy == null");
+    this.retryPolicy = retryPolicy;
+  }
+  
+  public <T> T runInTransaction(Task<T> task) throws SQLException {
+    return runInTransaction(Boolean.FALSE, task);
+  }
+  
+  /**
+   * Ejecuta la operacion dentro de una transaccion: confirma si termina bien
+   * y deshace si lanza una excepcion. Si falla por SQLITE_BUSY o 
+   * SQLITE_LOCKED se deshace y se vuelve a ejecutar completa segun el 
+   * {@link RetryPolicy}, por lo que no debe tener efectos fuera de la base 
+   * de datos.
+   *
+   * Dentro de otra transaccion (de este metodo o de 
+   * {@link #beginTransaction()}) usa un SAVEPOINT: al fallar solo deshace lo
+   * suyo y no reintenta, el reintento le toca a la transaccion externa.
+   *
+   * @param readOnly @true para rechazar las escrituras con 
+   *      <code>PRAGMA query_only</code>
+   * @param task operacion a ejecutar
+   *
+   * @return el resultado de la operacion
+   */
+  public <T> T runInTransaction(boolean readOnly, Task<T> task) 
+  throws SQLException {
+    if (transactionDepth > 0 || !conn.getAutoCommit()) {
+      return runInSavepoint(task);
+    }
+    final RetryPolicy policy = retryPolicy;
+    for (int attempt = 1; ; attempt++) {
+      try {
+        return runOnce(readOnly, task);
+      } catch (SQLException e) {
+        if (attempt >= policy.getMaxAttempts() || !policy.isRetryable(e)) throw e;
+        Debug.w(TAG, "Retrying transaction (", attempt, "): ", e.getMessage());
+        policy.sleep(attempt);
+      }
+    }
+  }
+  
+  private <T> T runOnce(boolean readOnly, Task<T> task) throws SQLException {
+    if (readOnly) queryOnly(Boolean.TRUE);
+    boolean success = false;
+    transactionDepth++;
+    try {
+      conn.setAutoCommit(Boolean.FALSE);
+      T result = task.call(this);
+      commit();
+      success = true;
+      return result;
+    } finally {
+      transactionDepth--;
+      if (!success) rollbackQuietly();
+      conn.setAutoCommit(Boolean.TRUE);
+      if (readOnly) queryOnly(Boolean.FALSE);
+    }
+  }
+  
+  private <T> T runInSavepoint(Task<T> task) throws SQLException {
+    Savepoint savepoint = conn.setSavepoint();
+    boolean success = false;
+    transactionDepth++;
+    try {
+      T result = task.call(this);
+      success = true;
+      return result;
+    } finally {
+      transactionDepth--;
+      if (success) {
+        conn.releaseSavepoint(savepoint);
+      } else {
+        try {
+          conn.rollback(savepoint);
+        } catch (SQLException ignore) {
+          // Empty
+        }
+      }
+    }
+  }
+  
+  private void queryOnly(boolean enabled) throws SQLException {
+    Statement stmt = null;
+    try {
+      stmt = conn.createStatement();
+      stmt.execute("PRAGMA query_only = " + (enabled ? 1 : 0));
+    } finally {
+      DBUtils.closeQuietly(stmt);
+    }
   }
-}
\ No newline at end of file
+}
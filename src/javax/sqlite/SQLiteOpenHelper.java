@@ -4,6 +4,8 @@ import java.io.File;
 import java.sql.Connection;
 import java.sql.SQLException;
 import javax.util.Debug;
+import javax.util.QueryMetrics;
+import javax.util.ResultCache;
 import org.sqlite.SQLiteConfig;
 
 public abstract class SQLiteOpenHelper {
@@ -16,6 +18,14 @@ public abstract class SQLiteOpenHelper {
   private SQLiteDatabase mDatabase;
   private boolean mIsInitializing;
   
+  private boolean mWriteAheadLoggingEnabled;
+  private int mMaxReaderConnections = 4;
+  private long mReaderTimeout = 30000;
+  private SQLiteConnectionPool mReaders;
+  
+  private final QueryMetrics mMetrics = new QueryMetrics();
+  private volatile ResultCache mResultCache;
+  
   public SQLiteOpenHelper(String name, int version) {
     this(new File("databases"), name, version);
   }
@@ -38,10 +48,90 @@ public abstract class SQLiteOpenHelper {
     }
   }
 
+  /**
+   * Obtiene una base de datos para lectura. En modo WAL presta una coneccion
+   * de solo lectura del pool de lectores, que regresa al pool al llamar 
+   * {@link SQLiteDatabase#close()}; de lo contrario regresa la coneccion 
+   * compartida.
+   */
   public SQLiteDatabase getReadableDatabase() throws SQLException {
+    SQLiteConnectionPool readers;
     synchronized (this) {
-      return getDatabaseLocked(Boolean.FALSE);
+      if (!mWriteAheadLoggingEnabled) {
+        return getDatabaseLocked(Boolean.FALSE);
+      }
+      // El escritor crea o actualiza la base de datos antes de leer.
+      getDatabaseLocked(Boolean.TRUE);
+      if (mReaders == null) {
+        mReaders = new SQLiteConnectionPool(this, mMaxReaderConnections, 
+                mReaderTimeout);
+      }
+      readers = mReaders;
+    }
+    return readers.borrow();
+  }
+  
+  /**
+   * Habilita el modo WAL (journal_mode=WAL). En este modo el helper mantiene
+   * una sola coneccion de escritura y un pool de conecciones de solo lectura,
+   * de modo que las lecturas no se bloquean entre si ni bloquean al escritor.
+   * Se aplica al abrir la base de datos.
+   */
+  public synchronized void setWriteAheadLoggingEnabled(boolean enabled) {
+    if (mWriteAheadLoggingEnabled == enabled) return;
+    if (mDatabase != null || mIsInitializing) {
+      throw new IllegalStateException(
+              "Write-ahead logging must be configured before opening the database");
+    }
+    mWriteAheadLoggingEnabled = enabled;
+  }
+  
+  public synchronized boolean isWriteAheadLoggingEnabled() {
+    return mWriteAheadLoggingEnabled;
+  }
+  
+  /**
+   * Establece el numero maximo de conecciones de lectura en modo WAL.
+   */
+  public synchronized void setMaxReaderConnections(int max) {
+    if (max < 1) throw new IllegalArgumentException("max < 1");
+    if (mReaders != null) {
+      throw new IllegalStateException("Reader pool already open");
     }
+    mMaxReaderConnections = max;
+  }
+  
+  /**
+   * Establece los milisegundos que se espera por una coneccion de lectura 
+   * libre.
+   */
+  public synchronized void setReaderTimeout(long timeout) {
+    mReaderTimeout = timeout;
+  }
+
+  /**
+   * Metricas de sentencias compartidas por la coneccion de escritura y las
+   * de lectura; estan apagadas hasta llamar {@link QueryMetrics#setEnabled}.
+   */
+  public QueryMetrics getMetrics() {
+    return mMetrics;
+  }
+
+  /**
+   * Establece un cache de resultados compartido por la coneccion de 
+   * escritura y las de lectura, de modo que las escrituras invaliden lo 
+   * leido por los lectores. Se aplica al abrir la base de datos.
+   */
+  public synchronized void setResultCache(ResultCache resultCache) {
+    if (mDatabase != null || mIsInitializing) {
+      throw new IllegalStateException(
+              "Result cache must be configured before opening the database");
+    }
+    mResultCache = resultCache;
+  }
+
+  public ResultCache getResultCache() {
+    return mResultCache;
   }
 
   /**
@@ -148,16 +238,46 @@ public abstract class SQLiteOpenHelper {
       Debug.i(TAG, "Directory '", path, "' created");
     }
     
-    SQLiteConfig config = new SQLiteConfig();
-    config.setReadOnly(!writable);
+    SQLiteConfig config = createConfig(writable);
     
     String url = "jdbc:sqlite:" + path.getPath();
     Connection conn = config.createConnection(url);
     SQLiteDatabase db = new SQLiteDatabase(url, conn);
+    db.setMetrics(mMetrics);
+    db.setResultCache(mResultCache);
     
     return db;
   }
   
+  /**
+   * Crea la configuracion de las conecciones; en modo WAL activa 
+   * journal_mode=WAL en la coneccion de escritura.
+   */
+  protected SQLiteConfig createConfig(boolean writable) {
+    SQLiteConfig config = new SQLiteConfig();
+    config.setReadOnly(!writable);
+    if (mWriteAheadLoggingEnabled && writable) {
+      config.setJournalMode(SQLiteConfig.JournalMode.WAL);
+    }
+    return config;
+  }
+  
+  /** Abre una coneccion de solo lectura para el pool de lectores. */
+  SQLiteDatabase openReader(SQLiteConnectionPool pool) throws SQLException {
+    String url = "jdbc:sqlite:" + getDatabasePath(mName).getPath();
+    Connection conn = createConfig(Boolean.FALSE).createConnection(url);
+    SQLiteDatabase db = new SQLiteDatabase(url, conn, pool);
+    db.setMetrics(mMetrics);
+    db.setResultCache(getResultCache());
+    try {
+      onConfigure(db);
+    } catch (SQLException e) {
+      db.closeConnection();
+      throw e;
+    }
+    return db;
+  }
+  
   /**
    * Close any open database object.
    */
@@ -165,6 +285,10 @@ public abstract class SQLiteOpenHelper {
     try {
       if (mIsInitializing) throw new IllegalStateException("Closed during initialization");
 
+      if (mReaders != null) {
+        mReaders.close();
+        mReaders = null;
+      }
       if (mDatabase != null && !mDatabase.isClosed()) {
         mDatabase.close();
         mDatabase = null;
@@ -174,6 +298,10 @@ public abstract class SQLiteOpenHelper {
     }
   }
   
+  /**
+   * Configura cada coneccion al abrirla; en modo WAL tambien se llama para 
+   * cada coneccion de lectura.
+   */
   public void onConfigure(SQLiteDatabase db) throws SQLException {}
 
   public abstract void onCreate(SQLiteDatabase db) throws SQLException;
@@ -185,4 +313,4 @@ public abstract class SQLiteOpenHelper {
 
   public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) 
   throws SQLException {}
-}
\ No newline at end of file
+}
@@ -1,23 +1,49 @@
-
 package javax.sqlite;
 
+import java.sql.DriverManager;
 import java.sql.ResultSet;
-import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 import javax.schema.Closure;
 import javax.schema.Column;
 import javax.schema.Index;
+import javax.schema.IndexBuildListener;
 import javax.schema.Table;
 import javax.sqlite.SQLiteDatabase;
 import javax.util.Debug;
 import javax.util.DBUtils;
 
+/**
+ * Crea y actualiza tablas.
+ *
+ * Las tablas y columnas existentes se leen de una sola vez de
+ * <code>sqlite_master</code> y <code>PRAGMA table_info</code> a un catalogo en
+ * memoria; el catalogo se actualiza con el DDL que ejecuta este esquema y se
+ * vuelve a leer despues de {@link #execSQL(String)} o {@link #refresh()}.
+ */
 public class SQLiteSchema {
   static final int FIRST_INDEX = 1;
   
   final SQLiteDatabase db;
 
+  /** Tabla -> columnas, en minusculas; null si no se ha leido. */
+  private volatile Map<String, Set<String>> catalog;
+  /** Nombres de los indices, en minusculas. */
+  private volatile Set<String> indexes;
+
+  private volatile boolean deferIndexes;
+  /** Indices pendientes de {@link #buildDeferredIndexes}. */
+  private final List<Index> deferred = new ArrayList<Index>();
+
   public SQLiteSchema(SQLiteDatabase db) {
     this.db = db;
   }
@@ -30,72 +56,262 @@ public class SQLiteSchema {
   }
    
   /**
-   * Ejecuta una sentecia sql.
+   * Ejecuta una sentecia sql; el catalogo se vuelve a leer en la siguiente
+   * consulta, por si la sentencia cambio el esquema.
    */
   public void execSQL(String sql) throws SQLException {
+    run(sql);
+    refresh();
+  }
+
+  private void run(String sql) throws SQLException {
+    run(db, sql);
+  }
+
+  private void run(SQLiteDatabase target, String sql) throws SQLException {
     if (isDebugger())
-      Debug.i(SQLiteSchema.class, sql);
+      Debug.sql(SQLiteSchema.class, sql, null);
 
-    db.execSQL(sql);
+    target.execSQL(sql);
   }
-  
+
+  public boolean isDeferIndexes() {
+    return deferIndexes;
+  }
+
   /**
-   * Obtiene un lista de columnas que ha un no exiten fisicamente en la tabla.
+   * Con @true las migraciones no crean los indices, los dejan pendientes
+   * para {@link #buildDeferredIndexes} despues del arranque.
    */
-  public LinkedHashSet<Column> getColumnsNotExist(Table table) throws SQLException {
-    String sql = "SELECT * FROM " + table.name + " LIMIT 1";
-    ResultSet r = db.query(sql);
-    ResultSetMetaData rsmd = r.getMetaData();
- 
-    try {  
-      LinkedHashSet<Column> set = new LinkedHashSet<Column>();
-      for (Column col : table) {
-        // Valida si no existe la columna
-        boolean existe = false;
-        for (int x = 1; x <= rsmd.getColumnCount(); x++) {
-          if (rsmd.getColumnLabel(x).equalsIgnoreCase(col.name)) {
-            existe = true;
+  public void setDeferIndexes(boolean deferIndexes) {
+    this.deferIndexes = deferIndexes;
+  }
+
+  /** @return los indices pendientes de crear. */
+  public List<Index> getDeferredIndexes() {
+    synchronized (deferred) {
+      return new ArrayList<Index>(deferred);
+    }
+  }
+
+  private void defer(List<Index> list) {
+    synchronized (deferred) {
+      for (Index index : list) {
+        boolean found = false;
+        for (Index it : deferred) {
+          if (it.name.equalsIgnoreCase(index.name)) {
+            found = true;
             break;
           }
-        }  
-        if (!existe) set.add(col);
+        }
+        if (!found) deferred.add(index);
+      }
+    }
+  }
+
+  /**
+   * Crea los indices pendientes, uno por uno y cada uno en su propia
+   * transaccion, para que los escritores avancen entre un indice y otro.
+   * Un indice sale de la lista solo cuando se confirma su transaccion; si
+   * falla se queda pendiente y se lanza la excepcion.
+   *
+   * Usa la coneccion de la base de datos: llamarlo desde el hilo que la usa
+   * y fuera de una transaccion.
+   *
+   * @param listener [opcional] recibe el avance
+   *
+   * @return los indices creados
+   */
+  public int buildDeferredIndexes(IndexBuildListener listener) 
+  throws SQLException {
+    if (!db.connection().getAutoCommit()) {
+      throw new SQLException("Deferred indexes can't be built inside a transaction");
+    }
+    return buildDeferredIndexes(db, listener);
+  }
+
+  private int buildDeferredIndexes(SQLiteDatabase target,
+          IndexBuildListener listener) throws SQLException {
+    List<Index> list = getDeferredIndexes();
+    int built = 0;
+    try {
+      for (final Index index : list) {
+        final long start = System.nanoTime();
+        target.runInTransaction(new SQLiteDatabase.Task<Void>() {
+          @Override public Void call(SQLiteDatabase db) throws SQLException {
+            run(db, index.toString());
+            return null;
+          }
+        });
+        synchronized (deferred) {
+          deferred.remove(index);
+        }
+        built++;
+        if (listener != null) {
+          listener.onIndexBuilt(index, built, list.size(),
+                  (System.nanoTime() - start) / 1000000L);
+        }
       }
-      return set;
     } finally {
-      DBUtils.closeQuietly(r);
+      if (built > 0) refresh();
     }
+    return built;
   }
 
-  
   /**
-   * Valida si existe una tabla en la base de datos.
+   * Igual que {@link #buildDeferredIndexes(IndexBuildListener)} pero en el
+   * executor, p. ej. un hilo de fondo despues del arranque.
+   *
+   * Los indices se crean en una coneccion propia a la misma base de datos,
+   * con el mismo <code>busy_timeout</code>; SQLite serializa sus
+   * transacciones con las de la aplicacion. Requiere una base de datos en
+   * archivo, no <code>:memory:</code>.
    */
-  public boolean hasTable(String tablename) throws SQLException {
-    String sql = "SELECT COUNT(*) FROM sqlite_master WHERE type = ? AND name = ?";
-    ResultSet r = db.query(sql, "table", tablename);
+  public CompletableFuture<Integer> buildDeferredIndexesAsync(Executor executor,
+          final IndexBuildListener listener) {
+    final CompletableFuture<Integer> future = new CompletableFuture<Integer>();
+    final String url = db.url();
+    if (url == null || url.contains(":memory:") || url.contains("mode=memory")) {
+      future.completeExceptionally(new SQLException(
+              "Deferred indexes can't be built in background on " + url));
+      return future;
+    }
+    final long busyTimeout;
+    try {
+      busyTimeout = busyTimeout();
+    } catch (SQLException e) {
+      future.completeExceptionally(e);
+      return future;
+    }
+    executor.execute(new Runnable() {
+      @Override public void run() {
+        SQLiteDatabase builder = null;
+        try {
+          builder = new SQLiteDatabase(url, DriverManager.getConnection(url));
+          builder.execSQL("PRAGMA busy_timeout = " + busyTimeout);
+          future.complete(buildDeferredIndexes(builder, listener));
+        } catch (Throwable e) {
+          future.completeExceptionally(e);
+        } finally {
+          if (builder != null) builder.closeConnection();
+        }
+      }
+    });
+    return future;
+  }
 
+  private long busyTimeout() throws SQLException {
+    ResultSet rs = db.queryForwardOnly("PRAGMA busy_timeout");
     try {
-      return (r.next()) ? (r.getInt(FIRST_INDEX) > 0) : (false);
+      return rs.next() ? rs.getLong(1) : 0;
+    } finally {
+      DBUtils.closeQuietly(rs);
+    }
+  }
+
+  /**
+   * Descarta el catalogo; usar despues de cambiar el esquema sin este objeto.
+   */
+  public void refresh() {
+    catalog = null;
+    indexes = null;
+  }
+
+  private Map<String, Set<String>> catalog() throws SQLException {
+    if (catalog == null) loadCatalog();
+    return catalog;
+  }
+
+  private Set<String> indexes() throws SQLException {
+    if (catalog == null) loadCatalog();
+    return indexes;
+  }
+
+  private static String key(String name) {
+    return name.toLowerCase(Locale.ROOT);
+  }
+
+  /** Lee todas las tablas con sus columnas y los nombres de los indices. */
+  private void loadCatalog() throws SQLException {
+    Map<String, Set<String>> map = new HashMap<String, Set<String>>();
+    Set<String> indexNames = new HashSet<String>();
+    List<String> tables = new ArrayList<String>();
+    ResultSet r = db.query("SELECT type, name FROM sqlite_master"
+            + " WHERE type IN (?, ?)", "table", "index");
+    try {
+      while (r.next()) {
+        String name = r.getString(2);
+        if ("index".equals(r.getString(FIRST_INDEX))) {
+          indexNames.add(key(name));
+        } else {
+          tables.add(name);
+          map.put(key(name), new HashSet<String>());
+        }
+      }
     } finally {
       DBUtils.closeQuietly(r);
     }
+    catalog = map;
+    indexes = indexNames;
+    if (tables.isEmpty()) return;
+
+    try {
+      // SQLite 3.16+: una sola consulta para todas las tablas.
+      r = db.query("SELECT m.name, p.name FROM sqlite_master m"
+              + " JOIN pragma_table_info(m.name) p WHERE m.type = ?", "table");
+      try {
+        while (r.next()) {
+          Set<String> columns = map.get(key(r.getString(1)));
+          if (columns != null) columns.add(key(r.getString(2)));
+        }
+      } finally {
+        DBUtils.closeQuietly(r);
+      }
+    } catch (SQLException e) {
+      for (String name : tables) {
+        Set<String> columns = map.get(key(name));
+        columns.clear();
+        r = db.query("PRAGMA table_info(" + DBUtils.sqlEscapeString(name) + ")");
+        try {
+          while (r.next()) {
+            columns.add(key(r.getString("name")));
+          }
+        } finally {
+          DBUtils.closeQuietly(r);
+        }
+      }
+    }
   }
   
-   /**
-   * Crea o actualiza una tabla en la base de datos.
+  /**
+   * Obtiene un lista de columnas que ha un no exiten fisicamente en la tabla.
    */
-  public Table table(String tablename, Closure closure) throws SQLException {
-    final Table table = new Table(tablename);
-    closure.call(table);
-
-    if (hasTable(tablename))
-      addColumnsIfNotExists(table);
-    else
-      execSQL(table.toString());
+  public LinkedHashSet<Column> getColumnsNotExist(Table table) throws SQLException {
+    Set<String> columns = catalog().get(key(table.name));
+    if (columns == null) throw new SQLException("no such table: " + table.name);
 
-    for (Index index : table.indexs)
-      execSQL(index.toString());
+    LinkedHashSet<Column> set = new LinkedHashSet<Column>();
+    for (Column col : table) {
+      if (!columns.contains(key(col.name))) set.add(col);
+    }
+    return set;
+  }
 
+  
+  /**
+   * Valida si existe una tabla en la base de datos.
+   */
+  public boolean hasTable(String tablename) throws SQLException {
+    return catalog().containsKey(key(tablename));
+  }
+  
+  /**
+   * Crea o actualiza una tabla en la base de datos, en una transaccion.
+   */
+  public Table table(String tablename, Closure closure) throws SQLException {
+    Migration migration = migration();
+    Table table = migration.table(tablename, closure);
+    migration.apply();
     return table;
   }
   
@@ -104,7 +320,160 @@ public class SQLiteSchema {
    */
   public void addColumnsIfNotExists(Table table) throws SQLException {
     LinkedHashSet<Column> set = getColumnsNotExist(table);
-    for (Column col : set)
-      execSQL("ALTER TABLE " + table.name + " ADD COLUMN " + col);
+    Set<String> columns = catalog().get(key(table.name));
+    for (Column col : set) {
+      run("ALTER TABLE " + table.name + " ADD COLUMN " + col);
+      columns.add(key(col.name));
+    }
+  }
+
+  /**
+   * Reconstruye una tabla existente con una nueva definicion; ver
+   * {@link SQLiteTableRebuild}.
+   */
+  public SQLiteTableRebuild rebuild(String tablename, Closure closure) {
+    final Table table = new Table(tablename);
+    closure.call(table);
+    return rebuild(table);
+  }
+
+  public SQLiteTableRebuild rebuild(Table table) {
+    return new SQLiteTableRebuild(this, table);
+  }
+
+  /** @return una migracion vacia sobre este esquema. */
+  public Migration migration() {
+    return new Migration();
+  }
+
+  /**
+   * Conjunto de tablas a crear o actualizar. {@link #plan()} compara las
+   * tablas con el esquema actual y regresa el DDL sin ejecutarlo;
+   * {@link #apply()} ejecuta ese DDL en una sola transaccion: primero los
+   * CREATE TABLE y ALTER TABLE ADD COLUMN y al final los indices, o los
+   * deja pendientes con {@link #setDeferIndexes(boolean)}.
+   *
+   * <pre>
+   * SQLiteSchema.Migration migration = schema.migration();
+   * migration.table("ventas", closure);
+   * migration.table("clientes", closure);
+   * migration.apply();
+   * </pre>
+   */
+  public final class Migration {
+    private final List<Table> tables = new ArrayList<Table>();
+
+    Migration() {
+    }
+
+    /** Agrega una tabla definida por el closure. */
+    public Table table(String tablename, Closure closure) {
+      final Table table = new Table(tablename);
+      closure.call(table);
+      tables.add(table);
+      return table;
+    }
+
+    /** Agrega una tabla ya definida. */
+    public Migration add(Table table) {
+      tables.add(table);
+      return this;
+    }
+
+    /**
+     * Ejecucion en seco.
+     *
+     * @return las sentencias que ejecutaria {@link #apply()}, en orden
+     */
+    public List<String> plan() throws SQLException {
+      return plan(!deferIndexes);
+    }
+
+    private List<String> plan(boolean withIndexes) throws SQLException {
+      Map<String, Set<String>> catalog = catalog();
+      List<String> ddl = new ArrayList<String>();
+      Set<String> created = new HashSet<String>();
+      Map<String, Set<String>> added = new HashMap<String, Set<String>>();
+      for (Table table : tables) {
+        String name = key(table.name);
+        Set<String> columns = catalog.get(name);
+        if (columns == null && created.add(name)) {
+          ddl.add(table.toString());
+        } else if (columns != null) {
+          Set<String> pending = added.get(name);
+          if (pending == null) {
+            pending = new HashSet<String>();
+            added.put(name, pending);
+          }
+          for (Column col : table) {
+            String column = key(col.name);
+            if (!columns.contains(column) && pending.add(column))
+              ddl.add("ALTER TABLE " + table.name + " ADD COLUMN " + col);
+          }
+        }
+      }
+      if (withIndexes) {
+        for (Index index : missingIndexes()) ddl.add(index.toString());
+      }
+      return ddl;
+    }
+
+    /** Indices de las tablas que aun no existen. */
+    private List<Index> missingIndexes() throws SQLException {
+      Set<String> indexes = indexes();
+      Set<String> indexed = new HashSet<String>();
+      List<Index> list = new ArrayList<Index>();
+      for (Table table : tables) {
+        for (Index index : table.indexs) {
+          String indexName = key(index.name);
+          if (!indexes.contains(indexName) && indexed.add(indexName))
+            list.add(index);
+        }
+      }
+      return list;
+    }
+
+    /**
+     * Ejecuta el plan en una transaccion (o en un SAVEPOINT si ya hay una
+     * abierta); si una sentencia falla no se aplica ninguna.
+     *
+     * @return las sentencias ejecutadas
+     */
+    public List<String> apply() throws SQLException {
+      final boolean defer = deferIndexes;
+      final List<String> ddl = plan(!defer);
+      if (defer) defer(missingIndexes());
+      if (ddl.isEmpty()) return ddl;
+      try {
+        db.runInTransaction(new SQLiteDatabase.Task<Void>() {
+          @Override public Void call(SQLiteDatabase db) throws SQLException {
+            for (String sql : ddl) run(sql);
+            return null;
+          }
+        });
+      } catch (SQLException e) {
+        refresh();
+        throw e;
+      }
+      applied(!defer);
+      return ddl;
+    }
+
+    /** Registra en el catalogo las tablas, columnas e indices ya creados. */
+    private void applied(boolean withIndexes) throws SQLException {
+      Map<String, Set<String>> catalog = catalog();
+      Set<String> indexes = indexes();
+      for (Table table : tables) {
+        String name = key(table.name);
+        Set<String> columns = catalog.get(name);
+        if (columns == null) {
+          columns = new HashSet<String>();
+          catalog.put(name, columns);
+        }
+        for (Column col : table) columns.add(key(col.name));
+        if (!withIndexes) continue;
+        for (Index index : table.indexs) indexes.add(key(index.name));
+      }
+    }
   }
 }
@@ -0,0 +1,346 @@
+package javax.sqlite;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import javax.schema.Column;
+import javax.schema.Index;
+import javax.schema.Table;
+import javax.util.DBUtils;
+import javax.util.Debug;
+
+/**
+ * Reconstruccion en linea de {@link SQLiteSchema#rebuild}: cambia tipos,
+ * restricciones o <code>NULL/NOT NULL</code> de una tabla, lo que SQLite no
+ * permite con <code>ALTER TABLE</code>.
+ *
+ * <ol>
+ * <li>Crea la tabla sombra <code>tabla__rebuild</code> con la nueva
+ * definicion y sus indices, todavia vacia. Los indices cuyo nombre ya usa la
+ * tabla original se crean con un nombre temporal.</li>
+ * <li>Crea triggers en la tabla original que replican en la sombra los
+ * INSERT, UPDATE y DELETE que ocurran durante la copia.</li>
+ * <li>Copia las filas por rangos de rowid, cada rango en su propia
+ * transaccion corta.</li>
+ * <li>En una sola transaccion elimina los triggers y la tabla original (con
+ * sus indices), renombra la sombra, da su nombre a los indices temporales y
+ * vuelve a crear los triggers que tenia la tabla.</li>
+ * </ol>
+ *
+ * Los escritores solo se bloquean durante cada rango de la copia y el cambio
+ * final, que no construye indices. La copia y los triggers usan un INSERT
+ * simple: una fila que viola la nueva definicion (NOT NULL, UNIQUE, CHECK)
+ * aborta la reconstruccion, y una escritura que la viola durante la copia
+ * falla. Las columnas que no existian toman su valor DEFAULT. Los triggers de
+ * la tabla se copian tal cual; si usan una columna que ya no existe el cambio
+ * falla y la tabla original queda intacta. La tabla original debe tener rowid
+ * (no <code>WITHOUT ROWID</code>).
+ *
+ * Los indices temporales se renombran en <code>sqlite_master</code> con
+ * <code>PRAGMA writable_schema</code>; con SQLITE_DBCONFIG_DEFENSIVE activo
+ * el cambio final falla y la tabla original queda intacta.
+ *
+ * <pre>
+ * long rows = schema.rebuild("ventas", closure).setChunkSize(5000).run();
+ * </pre>
+ */
+public class SQLiteTableRebuild {
+  private static final String TAG = "SQLiteTableRebuild";
+
+  private final SQLiteSchema schema;
+  private final SQLiteDatabase db;
+  private final Table table;
+  private final String shadow;
+  private int chunkSize = 1000;
+  private long pauseMillis;
+  private long rows;
+  private boolean started;
+
+  SQLiteTableRebuild(SQLiteSchema schema, Table table) {
+    this.schema = schema;
+    this.db = schema.db;
+    this.table = table;
+    this.shadow = table.name + "__rebuild";
+  }
+
+  /** Establece las filas copiadas por transaccion. */
+  public SQLiteTableRebuild setChunkSize(int chunkSize) {
+    if (chunkSize < 1) throw new IllegalArgumentException("chunkSize < 1");
+    this.chunkSize = chunkSize;
+    return this;
+  }
+
+  /**
+   * Milisegundos de espera entre transacciones de copia, para dejar pasar a
+   * los demas escritores.
+   */
+  public SQLiteTableRebuild setPauseMillis(long pauseMillis) {
+    this.pauseMillis = pauseMillis;
+    return this;
+  }
+
+  /** @return filas copiadas hasta el momento. */
+  public long getRowCount() {
+    return rows;
+  }
+
+  /**
+   * Ejecuta la reconstruccion. Si falla la tabla original queda intacta y se
+   * eliminan la sombra y los triggers.
+   *
+   * @return filas copiadas
+   */
+  public long run() throws SQLException {
+    if (started) throw new IllegalStateException("Rebuild already started");
+    if (!db.connection().getAutoCommit()) {
+      throw new SQLException("Rebuild can't run inside a transaction");
+    }
+    started = true;
+
+    final List<String> columns = commonColumns();
+    boolean swapped = false;
+    try {
+      cleanup();
+      Table shadowTable = new Table(shadow);
+      shadowTable.columns.addAll(table.columns);
+      shadowTable.constraints.addAll(table.constraints);
+      schema.execSQL(shadowTable.toString());
+      final List<Index> renamed = createIndexes();
+      createTriggers(columns);
+      copy(columns);
+      swap(renamed);
+      swapped = true;
+    } finally {
+      if (!swapped) {
+        try {
+          cleanup();
+        } catch (SQLException e) {
+          Debug.e(TAG, "Error cleaning up " + shadow, e);
+        }
+      }
+      schema.refresh();
+    }
+    if (Debug.isLoggable(Debug.Level.INFO))
+      Debug.i(TAG, "REBUILD ", table.name, "; rows=", rows);
+    return rows;
+  }
+
+  /** Columnas de la nueva definicion que ya existen en la tabla. */
+  private List<String> commonColumns() throws SQLException {
+    LinkedHashSet<Column> missing = schema.getColumnsNotExist(table);
+    List<String> list = new ArrayList<String>();
+    for (Column col : table) {
+      if (!missing.contains(col)) list.add(col.name);
+    }
+    if (list.isEmpty()) {
+      throw new SQLException("No columns in common with " + table.name);
+    }
+    return list;
+  }
+
+  private String trigger(String op) {
+    return table.name + "__rebuild_" + op;
+  }
+
+  private void cleanup() throws SQLException {
+    schema.execSQL("DROP TRIGGER IF EXISTS " + trigger("ins"));
+    schema.execSQL("DROP TRIGGER IF EXISTS " + trigger("upd"));
+    schema.execSQL("DROP TRIGGER IF EXISTS " + trigger("del"));
+    schema.execSQL("DROP TABLE IF EXISTS " + shadow);
+  }
+
+  private void createTriggers(List<String> columns) throws SQLException {
+    String cols = DBUtils.joinToStr(columns);
+    StringBuilder values = new StringBuilder("NEW.rowid");
+    for (String col : columns) values.append(", NEW.").append(col);
+    // Sin OR REPLACE: una fila que viola la nueva definicion hace fallar la
+    // escritura en lugar de borrar otra fila o cambiar un NULL por DEFAULT.
+    // El DELETE previo cubre el rowid que un REPLACE en la tabla original
+    // reutilizo sin disparar el trigger de DELETE.
+    String insert = "DELETE FROM " + shadow + " WHERE rowid = NEW.rowid;"
+            + " INSERT INTO " + shadow + "(rowid, " + cols + ") VALUES (" + values + ");";
+    String delete = "DELETE FROM " + shadow + " WHERE rowid = OLD.rowid;";
+
+    schema.execSQL("CREATE TRIGGER " + trigger("ins") + " AFTER INSERT ON "
+            + table.name + " BEGIN " + insert + " END");
+    schema.execSQL("CREATE TRIGGER " + trigger("upd") + " AFTER UPDATE ON "
+            + table.name + " BEGIN " + delete + " " + insert + " END");
+    schema.execSQL("CREATE TRIGGER " + trigger("del") + " AFTER DELETE ON "
+            + table.name + " BEGIN " + delete + " END");
+  }
+
+  /**
+   * Copia las filas que existian al crear los triggers; las posteriores ya
+   * las replican los triggers.
+   */
+  private void copy(List<String> columns) throws SQLException {
+    final Long max = queryLong("SELECT MAX(rowid) FROM " + table.name);
+    if (max == null) return;
+
+    String cols = DBUtils.joinToStr(columns);
+    final String bounds = "SELECT MAX(rowid), COUNT(*) FROM (SELECT rowid FROM "
+            + table.name + " WHERE rowid > ? AND rowid <= ? ORDER BY rowid LIMIT ?)";
+    // Los triggers pudieron copiar ya filas del rango: se borran y se vuelven
+    // a copiar con un INSERT simple, asi una violacion aborta la copia.
+    final String delete = "DELETE FROM " + shadow + " WHERE rowid > ? AND rowid <= ?";
+    final String insert = "INSERT INTO " + shadow + "(rowid, " + cols
+            + ") SELECT rowid, " + cols + " FROM " + table.name
+            + " WHERE rowid > ? AND rowid <= ?";
+
+    // Filas del rango; se suman solo si la transaccion se confirma.
+    final long[] copied = new long[1];
+    long last = Long.MIN_VALUE;
+    while (true) {
+      final long from = last;
+      Long end = db.runInTransaction(new SQLiteDatabase.Task<Long>() {
+        @Override public Long call(SQLiteDatabase db) throws SQLException {
+          ResultSet rs = db.queryForwardOnly(bounds, from, max, chunkSize);
+          long end;
+          try {
+            if (!rs.next() || rs.getLong(2) == 0) return null;
+            end = rs.getLong(1);
+          } finally {
+            DBUtils.closeQuietly(rs);
+          }
+          db.executeUpdate(delete, from, end);
+          copied[0] = db.executeUpdate(insert, from, end);
+          return end;
+        }
+      });
+      if (end != null) rows += copied[0];
+      if (end == null || end >= max) break;
+      last = end;
+      if (pauseMillis > 0) pause();
+    }
+  }
+
+  private void pause() throws SQLException {
+    try {
+      Thread.sleep(pauseMillis);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new SQLException("Interrupted rebuilding " + table.name, e);
+    }
+  }
+
+  /**
+   * Crea los indices de la nueva definicion en la sombra vacia, antes de la
+   * copia, para no construirlos despues con la tabla llena.
+   *
+   * @return los indices que se crearon con nombre temporal porque la tabla
+   *      original ya usa su nombre
+   */
+  private List<Index> createIndexes() throws SQLException {
+    List<Index> renamed = new ArrayList<Index>();
+    for (Index index : table.indexs) {
+      Long used = queryLong("SELECT COUNT(*) FROM sqlite_master"
+              + " WHERE type = 'index' AND name = ?", index.name);
+      boolean exists = used != null && used > 0;
+      schema.execSQL(copyOf(index, exists ? temporary(index) : index.name, shadow)
+              .toString());
+      if (exists) renamed.add(index);
+    }
+    return renamed;
+  }
+
+  /**
+   * Da su nombre a los indices temporales sin reconstruirlos: se cambian el
+   * nombre y el SQL en <code>sqlite_master</code> y se incrementa
+   * schema_version para que las conexiones vuelvan a leer el esquema. Se
+   * llama dentro de la transaccion del cambio final, despues de eliminar la
+   * tabla original y con ella los indices que tenian ese nombre.
+   */
+  private void renameIndexes(List<Index> renamed) throws SQLException {
+    if (renamed.isEmpty()) return;
+    Long version = queryLong("PRAGMA schema_version");
+    db.execSQL("PRAGMA writable_schema = ON");
+    try {
+      for (Index index : renamed) {
+        String sql = copyOf(index, index.name, table.name).toString()
+                .replace(" IF NOT EXISTS ", " ");
+        db.executeUpdate("UPDATE sqlite_master SET name = ?, sql = ?"
+                + " WHERE type = 'index' AND name = ?", index.name, sql, temporary(index));
+      }
+      db.execSQL("PRAGMA schema_version = " + (version + 1));
+    } finally {
+      db.execSQL("PRAGMA writable_schema = OFF");
+    }
+  }
+
+  private static String temporary(Index index) {
+    return index.name + "__rebuild";
+  }
+
+  private static Index copyOf(Index index, String name, String tablename) {
+    Index copy = new Index(name, tablename);
+    String[] cols = index.getColumns().toArray(new String[0]);
+    if (index.isUnique()) {
+      copy.unique(cols);
+    } else {
+      copy.columns(cols);
+    }
+    return copy;
+  }
+
+  /** Reemplaza la tabla original por la sombra. */
+  private void swap(final List<Index> renamed) throws SQLException {
+    // Con foreign_keys el DROP TABLE borraria (o en cascada) las filas hijas;
+    // el pragma no tiene efecto dentro de una transaccion.
+    final Long foreignKeys = queryLong("PRAGMA foreign_keys");
+    final boolean fk = foreignKeys != null && foreignKeys != 0;
+    // Sin legacy_alter_table el RENAME falla si una vista usa la tabla.
+    final Long legacyAlter = queryLong("PRAGMA legacy_alter_table");
+    final boolean legacy = legacyAlter != null && legacyAlter == 0;
+    if (fk) db.execSQL("PRAGMA foreign_keys = OFF");
+    if (legacy) db.execSQL("PRAGMA legacy_alter_table = ON");
+    try {
+      db.runInTransaction(new SQLiteDatabase.Task<Void>() {
+        @Override public Void call(SQLiteDatabase db) throws SQLException {
+          schema.execSQL("DROP TRIGGER " + trigger("ins"));
+          schema.execSQL("DROP TRIGGER " + trigger("upd"));
+          schema.execSQL("DROP TRIGGER " + trigger("del"));
+          // DROP TABLE tambien elimina los triggers de la tabla.
+          List<String> triggers = userTriggers();
+          schema.execSQL("DROP TABLE " + table.name);
+          schema.execSQL("ALTER TABLE " + shadow + " RENAME TO " + table.name);
+          renameIndexes(renamed);
+          for (String sql : triggers)
+            schema.execSQL(sql);
+          return null;
+        }
+      });
+    } finally {
+      if (legacy) db.execSQL("PRAGMA legacy_alter_table = OFF");
+      if (fk) db.execSQL("PRAGMA foreign_keys = ON");
+    }
+  }
+
+  /** @return el SQL de los triggers de la tabla original. */
+  private List<String> userTriggers() throws SQLException {
+    ResultSet rs = db.queryForwardOnly("SELECT sql FROM sqlite_master"
+            + " WHERE type = 'trigger' AND tbl_name = ? COLLATE NOCASE", table.name);
+    List<String> list = new ArrayList<String>();
+    try {
+      while (rs.next()) {
+        String sql = rs.getString(1);
+        if (sql != null) list.add(sql);
+      }
+    } finally {
+      DBUtils.closeQuietly(rs);
+    }
+    return list;
+  }
+
+  private Long queryLong(String sql, Object... bindArgs) throws SQLException {
+    ResultSet rs = db.queryForwardOnly(sql, bindArgs);
+    try {
+      if (!rs.next()) return null;
+      long value = rs.getLong(1);
+      return rs.wasNull() ? null : value;
+    } finally {
+      DBUtils.closeQuietly(rs);
+    }
+  }
+}
@@ -0,0 +1,469 @@
+package javax.util;
+
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * Convierte filas en objetos y objetos en los valores de
+ * <code>insert</code>/<code>update</code>, sin Map por fila ni reflexion por
+ * valor.
+ *
+ * Los accesores se generan una vez por clase (con LambdaMetafactory para
+ * getters y setters publicos, o MethodHandles para campos) y se guardan en
+ * {@link #of(Class)}. Las columnas se resuelven una vez por consulta.
+ *
+ * Cada propiedad es un campo no estatico ni transient; su columna es el
+ * nombre del campo o su forma snake_case (<code>userId</code> o
+ * <code>user_id</code>), sin importar mayusculas; {@link #toValues} escribe
+ * la columna con la que se leyo la propiedad. Las clases necesitan un
+ * constructor sin parametros, salvo los records, que se crean con su
+ * constructor canonico.
+ *
+ * <pre>
+ * List&lt;Usuario&gt; list = BeanMapper.of(Usuario.class).list(db.query(sql));
+ * db.insert("usuarios", BeanMapper.of(Usuario.class).toValues(usuario));
+ * </pre>
+ */
+public final class BeanMapper<T> {
+
+  private static final ClassValue<BeanMapper<?>> CACHE = new ClassValue<BeanMapper<?>>() {
+    @Override protected BeanMapper<?> computeValue(Class<?> type) {
+      return new BeanMapper<Object>(type);
+    }
+  };
+
+  private final Class<?> type;
+  private final Property[] properties;
+  private final Map<String, Property> byColumn = new HashMap<String, Property>();
+  /** Constructor sin parametros, o el canonico de un record. */
+  private final MethodHandle constructor;
+  private final boolean record;
+
+  @SuppressWarnings("unchecked")
+  public static <T> BeanMapper<T> of(Class<T> type) {
+    return (BeanMapper<T>) CACHE.get(type);
+  }
+
+  private BeanMapper(Class<?> type) {
+    this.type = type;
+    final MethodHandles.Lookup lookup = MethodHandles.lookup();
+    try {
+      Object[] components = recordComponents(type);
+      this.record = components != null;
+      List<Property> list = new ArrayList<Property>();
+      if (record) {
+        Class<?>[] types = new Class<?>[components.length];
+        for (int i = 0; i < components.length; i++) {
+          Method accessor = (Method) components[i].getClass()
+                  .getMethod("getAccessor").invoke(components[i]);
+          accessor.setAccessible(true);
+          types[i] = accessor.getReturnType();
+          list.add(new Property(accessor.getName(), types[i],
+                  getter(lookup, type, accessor), null));
+        }
+        Constructor<?> c = type.getDeclaredConstructor(types);
+        c.setAccessible(true);
+        this.constructor = lookup.unreflectConstructor(c)
+                .asType(MethodType.methodType(Object.class, types))
+                .asSpreader(Object[].class, types.length)
+                .asType(MethodType.methodType(Object.class, Object[].class));
+      } else {
+        for (Class<?> c = type; c != null && c != Object.class; c = c.getSuperclass()) {
+          for (Field field : c.getDeclaredFields()) {
+            int mod = field.getModifiers();
+            if (Modifier.isStatic(mod) || Modifier.isTransient(mod)) continue;
+            list.add(property(lookup, type, field));
+          }
+        }
+        Constructor<?> c = type.getDeclaredConstructor();
+        c.setAccessible(true);
+        this.constructor = lookup.unreflectConstructor(c)
+                .asType(MethodType.methodType(Object.class));
+      }
+      this.properties = list.toArray(new Property[list.size()]);
+      for (int i = 0; i < properties.length; i++) properties[i].index = i;
+    } catch (ReflectiveOperationException e) {
+      throw new IllegalArgumentException("Can't map " + type.getName(), e);
+    }
+    for (Property p : properties) {
+      byColumn.put(p.name.toLowerCase(Locale.ROOT), p);
+      byColumn.put(snakeCase(p.name), p);
+    }
+  }
+
+  /** @return los componentes si la clase es un record (Java 16+). */
+  private static Object[] recordComponents(Class<?> type) {
+    try {
+      Method isRecord = Class.class.getMethod("isRecord");
+      if (!(Boolean) isRecord.invoke(type)) return null;
+      return (Object[]) Class.class.getMethod("getRecordComponents").invoke(type);
+    } catch (ReflectiveOperationException unsupported) {
+      return null;
+    }
+  }
+
+  private static Property property(MethodHandles.Lookup lookup, Class<?> type,
+          Field field) throws ReflectiveOperationException {
+    String name = field.getName();
+    String suffix = Character.toUpperCase(name.charAt(0)) + name.substring(1);
+    Class<?> fieldType = field.getType();
+    Method get = publicMethod(type, "get" + suffix);
+    if (get == null && (fieldType == boolean.class || fieldType == Boolean.class)) {
+      get = publicMethod(type, "is" + suffix);
+    }
+    Method set = publicMethod(type, "set" + suffix, fieldType);
+    Function<Object, Object> getter;
+    BiConsumer<Object, Object> setter;
+    if (get != null && get.getReturnType() == fieldType) {
+      getter = getter(lookup, type, get);
+    } else {
+      field.setAccessible(true);
+      getter = invoker(lookup.unreflectGetter(field));
+    }
+    if (set != null) {
+      setter = setter(lookup, type, set);
+    } else if (Modifier.isFinal(field.getModifiers())) {
+      setter = null;
+    } else {
+      field.setAccessible(true);
+      setter = invoker2(lookup.unreflectSetter(field));
+    }
+    return new Property(name, fieldType, getter, setter);
+  }
+
+  private static Method publicMethod(Class<?> type, String name, Class<?>... params) {
+    try {
+      Method m = type.getMethod(name, params);
+      return Modifier.isStatic(m.getModifiers()) ? null : m;
+    } catch (NoSuchMethodException e) {
+      return null;
+    }
+  }
+
+  /**
+   * Genera un Function que llama al getter; si la clase no es visible para
+   * LambdaMetafactory usa su MethodHandle.
+   */
+  @SuppressWarnings("unchecked")
+  private static Function<Object, Object> getter(MethodHandles.Lookup lookup,
+          Class<?> type, Method method) throws IllegalAccessException {
+    MethodHandle mh = lookup.unreflect(method);
+    if (isVisible(type) && isVisible(method.getReturnType())) {
+      try {
+        CallSite site = LambdaMetafactory.metafactory(lookup, "apply",
+                MethodType.methodType(Function.class),
+                MethodType.methodType(Object.class, Object.class), mh,
+                MethodType.methodType(box(method.getReturnType()), type));
+        return (Function<Object, Object>) site.getTarget().invokeExact();
+      } catch (Throwable unsupported) {
+        // Otro class loader o modulo: se usa el MethodHandle.
+      }
+    }
+    return invoker(mh);
+  }
+
+  @SuppressWarnings("unchecked")
+  private static BiConsumer<Object, Object> setter(MethodHandles.Lookup lookup,
+          Class<?> type, Method method) throws IllegalAccessException {
+    MethodHandle mh = lookup.unreflect(method);
+    if (isVisible(type) && isVisible(method.getParameterTypes()[0])
+            && method.getReturnType() == void.class) {
+      try {
+        CallSite site = LambdaMetafactory.metafactory(lookup, "accept",
+                MethodType.methodType(BiConsumer.class),
+                MethodType.methodType(void.class, Object.class, Object.class), mh,
+                MethodType.methodType(void.class, type, box(method.getParameterTypes()[0])));
+        return (BiConsumer<Object, Object>) site.getTarget().invokeExact();
+      } catch (Throwable unsupported) {
+        // Otro class loader o modulo: se usa el MethodHandle.
+      }
+    }
+    return invoker2(mh);
+  }
+
+  /**
+   * @return @true si la clase generada por LambdaMetafactory, que vive en el
+   *      class loader de esta clase, puede usar el tipo
+   */
+  private static boolean isVisible(Class<?> c) {
+    while (c.isArray()) c = c.getComponentType();
+    if (c.isPrimitive()) return true;
+    if (!Modifier.isPublic(c.getModifiers())) return false;
+    try {
+      return Class.forName(c.getName(), false, BeanMapper.class.getClassLoader()) == c;
+    } catch (ClassNotFoundException e) {
+      return false;
+    }
+  }
+
+  private static Function<Object, Object> invoker(MethodHandle mh) {
+    final MethodHandle target = mh.asType(MethodType.methodType(Object.class, Object.class));
+    return new Function<Object, Object>() {
+      @Override public Object apply(Object bean) {
+        try {
+          return target.invokeExact(bean);
+        } catch (Throwable e) {
+          throw rethrow(e);
+        }
+      }
+    };
+  }
+
+  private static BiConsumer<Object, Object> invoker2(MethodHandle mh) {
+    final MethodHandle target = mh.asType(
+            MethodType.methodType(void.class, Object.class, Object.class));
+    return new BiConsumer<Object, Object>() {
+      @Override public void accept(Object bean, Object value) {
+        try {
+          target.invokeExact(bean, value);
+        } catch (Throwable e) {
+          throw rethrow(e);
+        }
+      }
+    };
+  }
+
+  private static RuntimeException rethrow(Throwable e) {
+    if (e instanceof RuntimeException) return (RuntimeException) e;
+    if (e instanceof Error) throw (Error) e;
+    return new IllegalStateException(e.getMessage(), e);
+  }
+
+  private static Class<?> box(Class<?> c) {
+    if (!c.isPrimitive()) return c;
+    if (c == int.class) return Integer.class;
+    if (c == long.class) return Long.class;
+    if (c == double.class) return Double.class;
+    if (c == boolean.class) return Boolean.class;
+    if (c == float.class) return Float.class;
+    if (c == short.class) return Short.class;
+    if (c == byte.class) return Byte.class;
+    if (c == char.class) return Character.class;
+    return Void.class;
+  }
+
+  static String snakeCase(String name) {
+    StringBuilder sb = new StringBuilder(name.length() + 4);
+    for (int i = 0; i < name.length(); i++) {
+      char c = name.charAt(i);
+      if (Character.isUpperCase(c)) {
+        if (i > 0) sb.append('_');
+        sb.append(Character.toLowerCase(c));
+      } else {
+        sb.append(c);
+      }
+    }
+    return sb.toString();
+  }
+
+  public Class<?> getType() {
+    return type;
+  }
+
+  /** @return los nombres de las propiedades, en orden de declaracion. */
+  public String[] getProperties() {
+    String[] names = new String[properties.length];
+    for (int i = 0; i < names.length; i++) names[i] = properties[i].name;
+    return names;
+  }
+
+  /**
+   * Resuelve una vez las columnas del resultado; la propiedad de cada
+   * columna, o null si no tiene.
+   */
+  private Property[] bind(ResultSet rs) throws SQLException {
+    ResultSetMetaData md = rs.getMetaData();
+    Property[] bound = new Property[md.getColumnCount()];
+    for (int i = 0; i < bound.length; i++) {
+      String label = md.getColumnLabel(i + 1);
+      Property p = byColumn.get(label.toLowerCase(Locale.ROOT));
+      if (p == null) continue;
+      if (!label.equals(p.column)) p.column = label;
+      if (record || p.setter != null) bound[i] = p;
+    }
+    return bound;
+  }
+
+  /**
+   * Lee todas las filas y cierra el ResultSet.
+   */
+  public List<T> list(ResultSet rs) throws SQLException {
+    try {
+      Property[] bound = bind(rs);
+      List<T> list = new ArrayList<T>();
+      while (rs.next()) {
+        list.add(read(rs, bound));
+      }
+      return list;
+    } finally {
+      DBUtils.closeQuietly(rs);
+    }
+  }
+
+  /** @return la primera fila, o null si no hay; cierra el ResultSet. */
+  public T first(ResultSet rs) throws SQLException {
+    try {
+      return rs.next() ? read(rs, bind(rs)) : null;
+    } finally {
+      DBUtils.closeQuietly(rs);
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  private T read(ResultSet rs, Property[] bound) throws SQLException {
+    try {
+      if (record) {
+        Object[] args = new Object[properties.length];
+        for (int i = 0; i < properties.length; i++) {
+          args[i] = Property.defaultValue(properties[i].type);
+        }
+        for (int i = 0; i < bound.length; i++) {
+          Property p = bound[i];
+          if (p == null) continue;
+          Object value = p.read(rs, i + 1);
+          if (value != null) args[p.index] = value;
+        }
+        Object bean = constructor.invokeExact(args);
+        return (T) bean;
+      }
+      Object bean = constructor.invokeExact();
+      for (int i = 0; i < bound.length; i++) {
+        Property p = bound[i];
+        if (p == null) continue;
+        Object value = p.read(rs, i + 1);
+        if (value != null || !p.type.isPrimitive()) p.setter.accept(bean, value);
+      }
+      return (T) bean;
+    } catch (SQLException e) {
+      throw e;
+    } catch (Throwable e) {
+      throw new SQLException("Can't map row to " + type.getName(), e);
+    }
+  }
+
+  /**
+   * Obtiene los valores del objeto para <code>insert</code> o
+   * <code>update</code>: columna - valor. La columna es la que resolvio la
+   * ultima lectura (<code>userId</code> o <code>user_id</code>); si la
+   * propiedad no se ha leido, el nombre de la propiedad.
+   *
+   * @param includeNulls @false para omitir las propiedades null, p. ej. un
+   *      id autoincrementable
+   */
+  public Map<String, Object> toValues(T bean, boolean includeNulls) {
+    Map<String, Object> values = new LinkedHashMap<String, Object>(properties.length * 2);
+    for (Property p : properties) {
+      Object value = p.getter.apply(bean);
+      if (value != null || includeNulls) values.put(p.column, value);
+    }
+    return values;
+  }
+  public Map<String, Object> toValues(T bean) {
+    return toValues(bean, Boolean.FALSE);
+  }
+
+  /** Obtiene los valores de las propiedades en el orden indicado. */
+  public Object[] toBindArgs(T bean, String... names) {
+    Object[] args = new Object[names.length];
+    for (int i = 0; i < names.length; i++) {
+      Property p = byColumn.get(names[i].toLowerCase(Locale.ROOT));
+      if (p == null) throw new IllegalArgumentException("No such property: " + names[i]);
+      args[i] = p.getter.apply(bean);
+    }
+    return args;
+  }
+
+  private static final class Property {
+    final String name;
+    final Class<?> type;
+    final Function<Object, Object> getter;
+    final BiConsumer<Object, Object> setter;
+    /** Posicion en el constructor de un record. */
+    int index;
+    /** Columna con la que se leyo por ultima vez. */
+    volatile String column;
+
+    Property(String name, Class<?> type, Function<Object, Object> getter,
+            BiConsumer<Object, Object> setter) {
+      this.name = name;
+      this.type = type;
+      this.getter = getter;
+      this.setter = setter;
+      this.column = name;
+    }
+
+    /** Lee la columna con el getter del tipo, sin convertir despues. */
+    Object read(ResultSet rs, int column) throws SQLException {
+      Object value;
+      if (type == int.class || type == Integer.class) {
+        value = rs.getInt(column);
+      } else if (type == long.class || type == Long.class) {
+        value = rs.getLong(column);
+      } else if (type == double.class || type == Double.class) {
+        value = rs.getDouble(column);
+      } else if (type == String.class) {
+        return rs.getString(column);
+      } else if (type == boolean.class || type == Boolean.class) {
+        value = rs.getBoolean(column);
+      } else if (type == float.class || type == Float.class) {
+        value = rs.getFloat(column);
+      } else if (type == short.class || type == Short.class) {
+        value = rs.getShort(column);
+      } else if (type == byte.class || type == Byte.class) {
+        value = rs.getByte(column);
+      } else if (type == byte[].class) {
+        return rs.getBytes(column);
+      } else if (type == BigDecimal.class) {
+        return rs.getBigDecimal(column);
+      } else if (type == java.sql.Timestamp.class || type == java.util.Date.class) {
+        return rs.getTimestamp(column);
+      } else if (type == java.sql.Date.class) {
+        return rs.getDate(column);
+      } else if (type == java.sql.Time.class) {
+        return rs.getTime(column);
+      } else if (type.isEnum()) {
+        String name = rs.getString(column);
+        return (name == null) ? null : enumValue(type, name);
+      } else {
+        return rs.getObject(column);
+      }
+      return rs.wasNull() ? null : value;
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static Object enumValue(Class<?> type, String name) {
+      return Enum.valueOf((Class) type, name);
+    }
+
+    static Object defaultValue(Class<?> type) {
+      if (!type.isPrimitive()) return null;
+      if (type == boolean.class) return Boolean.FALSE;
+      if (type == char.class) return '\0';
+      if (type == long.class) return 0L;
+      if (type == double.class) return 0d;
+      if (type == float.class) return 0f;
+      if (type == short.class) return (short) 0;
+      if (type == byte.class) return (byte) 0;
+      return 0;
+    }
+  }
+}
@@ -12,6 +12,7 @@ import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.function.Function;
+import java.util.stream.Stream;
 
 public final class DBUtils {
 
@@ -91,6 +92,85 @@ public final class DBUtils {
     s.append(' ');
   }
   
+  /**
+   * Construye una sentencia insert de varias filas:
+   * <code>INSERT [conflictAlgorithm] INTO table(c1,c2) VALUES (?,?),(?,?)</code>
+   */
+  public static String insertSql(String conflictAlgorithm, String table, 
+          List<String> columns, int rows) {
+    final int size = columns.size();
+    StringBuilder sql = new StringBuilder(32 + table.length() 
+            + size * (rows * 2 + 12));
+    sql.append("INSERT ");
+    if (!isEmpty(conflictAlgorithm)) sql.append(conflictAlgorithm).append(' ');
+    sql.append("INTO ");
+    sql.append(table);
+    sql.append('(');
+    for (int i = 0; i < size; i++) {
+      if (i > 0) sql.append(',');
+      sql.append(columns.get(i));
+    }
+    sql.append(") VALUES ");
+    for (int r = 0; r < rows; r++) {
+      if (r > 0) sql.append(',');
+      sql.append('(');
+      for (int i = 0; i < size; i++) {
+        sql.append((i > 0) ? ",?" : "?");
+      }
+      sql.append(')');
+    }
+    return sql.toString();
+  }
+
+  /**
+   * Construye un upsert de SQLite (3.24+) de una fila:
+   * <code>INSERT INTO table(k,c) VALUES (?,?) ON CONFLICT(k) DO UPDATE SET
+   * c=excluded.c</code>. Si todas las columnas son llave usa
+   * <code>DO NOTHING</code>.
+   */
+  public static String upsertSql(String table, List<String> columns,
+          List<String> keyColumns) {
+    StringBuilder sql = new StringBuilder(insertSql(null, table, columns, 1));
+    sql.append(" ON CONFLICT(");
+    for (int i = 0; i < keyColumns.size(); i++) {
+      if (i > 0) sql.append(',');
+      sql.append(keyColumns.get(i));
+    }
+    sql.append(") DO ");
+    int updated = 0;
+    for (String column : columns) {
+      if (keyColumns.contains(column)) continue;
+      sql.append((updated++ > 0) ? "," : "UPDATE SET ");
+      sql.append(column).append("=excluded.").append(column);
+    }
+    if (updated == 0) sql.append("NOTHING");
+    return sql.toString();
+  }
+
+  /**
+   * Construye un upsert de MySQL de una fila:
+   * <code>INSERT INTO table(k,c) VALUES (?,?) ON DUPLICATE KEY UPDATE
+   * c=VALUES(c)</code>. Las columnas de <code>keyColumns</code> no se
+   * actualizan.
+   */
+  public static String upsertDuplicateKeySql(String table, List<String> columns,
+          List<String> keyColumns) {
+    StringBuilder sql = new StringBuilder(insertSql(null, table, columns, 1));
+    sql.append(" ON DUPLICATE KEY UPDATE ");
+    int updated = 0;
+    for (String column : columns) {
+      if (keyColumns.contains(column)) continue;
+      if (updated++ > 0) sql.append(',');
+      sql.append(column).append("=VALUES(").append(column).append(')');
+    }
+    if (updated == 0) {
+      // Sin columnas que actualizar: asignacion sin efecto.
+      String column = columns.get(0);
+      sql.append(column).append('=').append(column);
+    }
+    return sql.toString();
+  }
+
   public static void appendEscapedSQLString(StringBuilder sb, String sqlString) {
     sb.append('\'');
     if (sqlString.indexOf('\'') != -1) {
@@ -160,6 +240,52 @@ public final class DBUtils {
     return fromList(rs, Boolean.FALSE);
   } 
  
+  /**
+   * Convierte cada fila en un objeto de la clase, ver {@link BeanMapper}; 
+   * cierra el ResultSet.
+   */
+  public static <T> List<T> fromList(ResultSet rs, Class<T> type) 
+  throws SQLException {
+    return BeanMapper.of(type).list(rs);
+  }
+ 
+  /**
+   * Lee el resultado por columnas en un {@link Rows}, compartiendo los 
+   * nombres de columna entre todas las filas.
+   */
+  public static Rows fromRows(ResultSet rs, boolean closed) throws SQLException {
+    return Rows.from(rs, closed);
+  }
+  public static Rows fromRows(ResultSet rs) throws SQLException {
+    return fromRows(rs, Boolean.FALSE);
+  }
+
+  /**
+   * Lee el resultado fuera del heap en un {@link OffHeapRows}, para 
+   * resultados grandes que se conservan mucho tiempo; se debe cerrar.
+   */
+  public static OffHeapRows fromOffHeap(ResultSet rs, boolean closed) 
+  throws SQLException {
+    return OffHeapRows.from(rs, closed);
+  }
+  
+  /**
+   * Recorre el ResultSet fila por fila; se cierra al consumir la ultima fila
+   * o al cerrar el iterador.
+   */
+  public static RowIterator iterate(ResultSet rs) throws SQLException {
+    return new RowIterator(rs);
+  }
+  
+  /**
+   * Obtiene un Stream perezoso de las filas; cerrar el Stream cierra el 
+   * ResultSet.
+   */
+  public static Stream<Map<String, Object>> stream(ResultSet rs) 
+  throws SQLException {
+    return iterate(rs).stream();
+  }
+ 
   public static boolean isEmpty(CharSequence str) {
     return str == null || str.length() == 0;
   }
@@ -170,13 +296,12 @@ public final class DBUtils {
   public static void resultSetToList(List<Map<String, Object>> list, 
           ResultSet rs, boolean closed) throws SQLException {
     try {
-      ResultSetMetaData md = rs.getMetaData();
-      int columns = md.getColumnCount();
+      String[] columns = columnNames(rs.getMetaData());
 
       while (rs.next()) {
-        Map<String, Object> row = new LinkedHashMap<String, Object>(columns);
-        for (int i = 1; i <= columns; ++i) {
-          row.put(md.getColumnName(i), rs.getObject(i));
+        Map<String, Object> row = new LinkedHashMap<String, Object>(columns.length * 2);
+        for (int i = 0; i < columns.length; ++i) {
+          row.put(columns[i], rs.getObject(i + 1));
         }
         list.add(row);
       }
@@ -185,6 +310,15 @@ public final class DBUtils {
     }
   }
   
+  /** Nombres de las columnas del resultado, leidos una sola vez. */
+  public static String[] columnNames(ResultSetMetaData md) throws SQLException {
+    String[] columns = new String[md.getColumnCount()];
+    for (int i = 0; i < columns.length; i++) {
+      columns[i] = md.getColumnName(i + 1);
+    }
+    return columns;
+  }
+  
   public static void resultSetToList(List<Map<String, Object>> list, 
           ResultSet rs) throws SQLException {
     resultSetToList(list, rs, Boolean.FALSE);
@@ -1,9 +1,61 @@
 package javax.util;
 
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Supplier;
+import java.util.logging.Logger;
+
+/**
+ * Bitacora de la libreria. Con la depuracion apagada, o con un nivel menor
+ * al minimo, los metodos regresan sin formatear el mensaje; para mensajes
+ * costosos se usan las variantes con {@link Supplier} o {@link #sql}.
+ *
+ * Los mensajes se envian a un {@link Sink}, por defecto la consola. Para
+ * SLF4J basta con un adaptador:
+ * <pre>
+ * final org.slf4j.Logger log = LoggerFactory.getLogger("sql-helper");
+ * Debug.setSink(new Debug.Sink() {
+ *   public void log(Debug.Level level, String tag, String msg, Throwable tr) {
+ *     log.info("[{}]: {}", tag, msg, tr);
+ *   }
+ * });
+ * </pre>
+ */
 public final class Debug {
 
-  private static boolean debuggable;
-  
+  public enum Level {
+    INFO, WARN, ERROR
+  }
+
+  /** Destino de los mensajes. */
+  public interface Sink {
+    void log(Level level, String tag, String msg, Throwable tr);
+  }
+
+  /** Escribe en System.out, y los errores en System.err. */
+  public static final Sink CONSOLE = new Sink() {
+    @Override public void log(Level level, String tag, String msg, Throwable tr) {
+      java.io.PrintStream out = (level == Level.ERROR) ? System.err : System.out;
+      if (tr == null) {
+        out.printf("[%s]: %s\n", tag, msg);
+      } else {
+        out.printf("[%s]: %s => %s\n", tag, tr.getClass().getCanonicalName(), msg);
+      }
+    }
+  };
+
+  /** Numero de contadores para el muestreo de sentencias. */
+  private static final int SAMPLE_SLOTS = 1024;
+
+  private static volatile boolean debuggable;
+  private static volatile Level level = Level.INFO;
+  private static volatile Sink sink = CONSOLE;
+  private static volatile int sampleRate = 1;
+  private static final AtomicLongArray samples = new AtomicLongArray(SAMPLE_SLOTS);
+
+  private Debug() {
+  }
+
   public static boolean isDebuggable() {
     return debuggable;
   }
@@ -11,62 +63,152 @@ public final class Debug {
   public static void setDebuggable(boolean debuggable) {
     Debug.debuggable = debuggable;
   }
-  
+
+  public static Level getLevel() {
+    return level;
+  }
+
+  /** Establece el nivel minimo de los mensajes que se envian al sink. */
+  public static void setLevel(Level level) {
+    if (level == null) throw new NullPointerException("level == null");
+    Debug.level = level;
+  }
+
+  public static Sink getSink() {
+    return sink;
+  }
+
+  public static void setSink(Sink sink) {
+    if (sink == null) throw new NullPointerException("sink == null");
+    Debug.sink = sink;
+  }
+
+  /** Sink de java.util.logging con el logger indicado. */
+  public static Sink julSink(final Logger logger) {
+    return new Sink() {
+      @Override public void log(Level level, String tag, String msg, Throwable tr) {
+        java.util.logging.Level julLevel = (level == Level.ERROR)
+                ? java.util.logging.Level.SEVERE : (level == Level.WARN)
+                ? java.util.logging.Level.WARNING : java.util.logging.Level.INFO;
+        if (logger.isLoggable(julLevel)) {
+          logger.log(julLevel, "[" + tag + "]: " + msg, tr);
+        }
+      }
+    };
+  }
+
+  public static int getSampleRate() {
+    return sampleRate;
+  }
+
+  /**
+   * Registra solo una de cada <code>sampleRate</code> ejecuciones de cada
+   * sentencia en {@link #sql}; 1 las registra todas.
+   */
+  public static void setSampleRate(int sampleRate) {
+    if (sampleRate < 1) throw new IllegalArgumentException("sampleRate < 1");
+    Debug.sampleRate = sampleRate;
+  }
+
+  /** @return @true si un mensaje del nivel dado se envia al sink. */
+  public static boolean isLoggable(Level l) {
+    return debuggable && l.compareTo(level) >= 0;
+  }
+
+  private static void log(Level l, String tag, String msg, Throwable tr) {
+    sink.log(l, tag, msg, tr);
+  }
+
+  /**
+   * Registra una sentencia y sus parametros con nivel INFO. El mensaje solo
+   * se construye si se registra.
+   */
+  public static void sql(String tag, String sql, Object[] bindArgs) {
+    if (!isLoggable(Level.INFO) || !sampled(sql)) return;
+    log(Level.INFO, tag, (bindArgs == null) ? sql
+            : DBUtils.concat(sql, "; ", Arrays.toString(bindArgs)), null);
+  }
+  public static void sql(Class<?> tag, String sql, Object[] bindArgs) {
+    if (isLoggable(Level.INFO)) sql(tag.getSimpleName(), sql, bindArgs);
+  }
+
+  private static boolean sampled(String sql) {
+    int rate = sampleRate;
+    if (rate == 1) return true;
+    int slot = (sql.hashCode() & 0x7fffffff) % SAMPLE_SLOTS;
+    return samples.getAndIncrement(slot) % rate == 0;
+  }
+
   public static void i(String tag, Object... msg) {
-    if (isDebuggable()) {
-      System.out.printf("[%s]: %s\n", tag, DBUtils.concat(msg));
+    if (isLoggable(Level.INFO)) {
+      log(Level.INFO, tag, DBUtils.concat(msg), null);
     }
   }
   public static void i(Class<?> tag, Object... msg) {
-    i(tag.getSimpleName(), msg);
+    if (isLoggable(Level.INFO)) i(tag.getSimpleName(), msg);
+  }
+
+  public static void i(String tag, Supplier<String> msg) {
+    if (isLoggable(Level.INFO)) {
+      log(Level.INFO, tag, msg.get(), null);
+    }
   }
-  
+
   public static void i(String tag, String msg, Throwable tr) {
-    if (isDebuggable()) {
-      System.out.printf("[%s]: %s => %s\n", tag, 
-              tr.getClass().getCanonicalName(), msg);
+    if (isLoggable(Level.INFO)) {
+      log(Level.INFO, tag, msg, tr);
     }
   }
   public static void i(Class<?> tag, String msg, Throwable tr) {
-    i(tag.getSimpleName(), msg, tr);
+    if (isLoggable(Level.INFO)) i(tag.getSimpleName(), msg, tr);
   }
 
   public static void w(String tag, Object... msg) {
-    if (isDebuggable()) {
-      System.out.printf("[%s]: %s\n", tag, DBUtils.concat(msg));
+    if (isLoggable(Level.WARN)) {
+      log(Level.WARN, tag, DBUtils.concat(msg), null);
     }
   }
   public static void w(Class<?> tag, Object... msg) {
-    i(tag.getSimpleName(), msg);
+    if (isLoggable(Level.WARN)) w(tag.getSimpleName(), msg);
+  }
+
+  public static void w(String tag, Supplier<String> msg) {
+    if (isLoggable(Level.WARN)) {
+      log(Level.WARN, tag, msg.get(), null);
+    }
   }
-  
+
   public static void w(String tag, String msg, Throwable tr) {
-    if (isDebuggable()) {
-      System.out.printf("[%s]: %s => %s\n", tag, 
-              tr.getClass().getCanonicalName(), msg);
+    if (isLoggable(Level.WARN)) {
+      log(Level.WARN, tag, msg, tr);
     }
   }
   public static void w(Class<?> tag, String msg, Throwable tr) {
-    i(tag.getSimpleName(), msg, tr);
+    if (isLoggable(Level.WARN)) w(tag.getSimpleName(), msg, tr);
   }
-  
+
   public static void e(String tag, String msg) {
-    if (isDebuggable()) {
-      System.err.printf("[%s]: %s\n", tag, msg);
+    if (isLoggable(Level.ERROR)) {
+      log(Level.ERROR, tag, msg, null);
     }
   }
   public static void e(Class<?> tag, String msg) {
-    e(tag.getSimpleName(), msg);
+    if (isLoggable(Level.ERROR)) e(tag.getSimpleName(), msg);
+  }
+
+  public static void e(String tag, Supplier<String> msg, Throwable tr) {
+    if (isLoggable(Level.ERROR)) {
+      log(Level.ERROR, tag, msg.get(), tr);
+    }
   }
-  
+
   public static void e(String tag, String msg, Throwable tr) {
-    if (isDebuggable()) {
-      System.err.printf("[%s]: %s => %s\n", tag, 
-              tr.getClass().getCanonicalName(), msg);
+    if (isLoggable(Level.ERROR)) {
+      log(Level.ERROR, tag, msg, tr);
     }
   }
   public static void e(Class<?> tag, String msg, Throwable tr) {
-    e(tag.getSimpleName(), msg, tr);
+    if (isLoggable(Level.ERROR)) e(tag.getSimpleName(), msg, tr);
   }
 
 }
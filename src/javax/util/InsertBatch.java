@@ -0,0 +1,100 @@
+package javax.util;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Agrupa filas por su conjunto de columnas para insertarlas en sentencias
+ * <code>INSERT ... VALUES (?,?),(?,?)</code> de varias filas.
+ *
+ * Cada grupo se entrega lleno en cuanto alcanza el numero de filas que cabe
+ * en una sentencia, limitado por el tamaño del lote y por el numero maximo
+ * de parametros que acepta el driver.
+ */
+public class InsertBatch {
+
+  private final int batchSize;
+  private final int maxBindArgs;
+  private final LinkedHashMap<List<String>, Group> groups =
+          new LinkedHashMap<List<String>, Group>();
+
+  /**
+   * @param batchSize numero maximo de filas por sentencia
+   * @param maxBindArgs numero maximo de parametros por sentencia
+   */
+  public InsertBatch(int batchSize, int maxBindArgs) {
+    this.batchSize = Math.max(batchSize, 1);
+    this.maxBindArgs = Math.max(maxBindArgs, 1);
+  }
+
+  /**
+   * Agrega una fila a su grupo.
+   *
+   * @param index posicion de la fila en la entrada
+   * @param row valores de la fila
+   *
+   * @return el grupo si quedo lleno y debe insertarse, o null
+   */
+  public Group add(int index, Map<String, Object> row) {
+    if (row.isEmpty()) {
+      throw new IllegalArgumentException("Empty row at index " + index);
+    }
+    List<String> columns = new ArrayList<String>(row.keySet());
+    Group group = groups.get(columns);
+    if (group == null) {
+      int limit = Math.max(1, Math.min(batchSize, maxBindArgs / columns.size()));
+      group = new Group(columns, limit);
+      groups.put(columns, group);
+    }
+    Object[] bindArgs = new Object[columns.size()];
+    for (int i = 0; i < bindArgs.length; i++) {
+      bindArgs[i] = row.get(columns.get(i));
+    }
+    group.rows.add(bindArgs);
+    group.indexes.add(index);
+    if (group.rows.size() >= group.limit) {
+      groups.remove(columns);
+      return group;
+    }
+    return null;
+  }
+
+  /** Obtiene y retira los grupos que quedaron incompletos. */
+  public Collection<Group> drain() {
+    List<Group> list = new ArrayList<Group>(groups.values());
+    groups.clear();
+    return list;
+  }
+
+  public static class Group {
+    public final List<String> columns;
+    public final List<Object[]> rows;
+    public final List<Integer> indexes;
+    final int limit;
+
+    Group(List<String> columns, int limit) {
+      this.columns = columns;
+      this.limit = limit;
+      this.rows = new ArrayList<Object[]>(limit);
+      this.indexes = new ArrayList<Integer>(limit);
+    }
+
+    public int size() {
+      return rows.size();
+    }
+
+    /** Parametros de todas las filas en el orden de la sentencia. */
+    public Object[] bindArgs() {
+      Object[] args = new Object[rows.size() * columns.size()];
+      int i = 0;
+      for (Object[] row : rows) {
+        System.arraycopy(row, 0, args, i, row.length);
+        i += row.length;
+      }
+      return args;
+    }
+  }
+}
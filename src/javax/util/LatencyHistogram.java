@@ -0,0 +1,72 @@
+package javax.util;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Histograma de latencias con cubetas log-lineales, al estilo de
+ * HdrHistogram: cada potencia de dos se divide en 16 cubetas, por lo que el
+ * error de un percentil es menor al 6.25%. Registrar un valor no reserva
+ * memoria y es seguro entre hilos.
+ */
+public class LatencyHistogram {
+
+  private static final int SUB_BITS = 4;
+  private static final int SUB_COUNT = 1 << SUB_BITS;
+  private static final int BUCKETS = (64 - SUB_BITS) * SUB_COUNT;
+
+  private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+
+  static int indexOf(long value) {
+    if (value < SUB_COUNT) return (int) Math.max(value, 0);
+    int exp = 63 - Long.numberOfLeadingZeros(value);
+    int sub = (int) (value >>> (exp - SUB_BITS)) - SUB_COUNT;
+    return (exp - SUB_BITS + 1) * SUB_COUNT + sub;
+  }
+
+  /** Valor mas alto que cae en la cubeta. */
+  static long highestValueAt(int index) {
+    if (index < SUB_COUNT) return index;
+    int exp = index / SUB_COUNT + SUB_BITS - 1;
+    long sub = index % SUB_COUNT;
+    int shift = exp - SUB_BITS;
+    return ((SUB_COUNT + sub) << shift) + (1L << shift) - 1;
+  }
+
+  public void record(long value) {
+    counts.incrementAndGet(indexOf(value));
+  }
+
+  public long getCount() {
+    long total = 0;
+    for (int i = 0; i < BUCKETS; i++) total += counts.get(i);
+    return total;
+  }
+
+  /**
+   * @param percentile entre 0 y 100
+   *
+   * @return el valor bajo el cual queda el porcentaje dado de las muestras,
+   *      o 0 si no hay muestras
+   */
+  public long getValueAtPercentile(double percentile) {
+    long[] snapshot = new long[BUCKETS];
+    long total = 0;
+    for (int i = 0; i < BUCKETS; i++) {
+      snapshot[i] = counts.get(i);
+      total += snapshot[i];
+    }
+    if (total == 0) return 0;
+    double p = Math.min(Math.max(percentile, 0), 100);
+    long rank = Math.max(1, (long) Math.ceil(p / 100 * total));
+    long seen = 0;
+    for (int i = 0; i < BUCKETS; i++) {
+      seen += snapshot[i];
+      if (seen >= rank) return highestValueAt(i);
+    }
+    return highestValueAt(BUCKETS - 1);
+  }
+
+  public void reset() {
+    for (int i = 0; i < BUCKETS; i++) counts.set(i, 0);
+  }
+}
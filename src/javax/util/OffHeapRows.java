@@ -0,0 +1,698 @@
+package javax.util;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Resultado de una consulta guardado fuera del heap, para resultados muy
+ * grandes que se conservan mucho tiempo (p. ej. en un cache): en lugar de
+ * millones de objetos que alargan las pausas del GC, las filas se escriben en
+ * paginas <code>ByteBuffer.allocateDirect</code>.
+ *
+ * Cada fila ocupa un espacio fijo: dos mapas de bits (nulos y celdas
+ * etiquetadas) y 8 bytes por columna. Las columnas enteras guardan un long,
+ * las de punto flotante un double, las logicas 0 o 1 y el resto la posicion
+ * de su texto (o bytes, si son binarias) en paginas de datos variables; los
+ * textos repetidos se guardan una sola vez (diccionario). Las demas columnas,
+ * como fechas, se guardan como texto.
+ *
+ * El tipo de la columna solo es una sugerencia: SQLite puede regresar 3.75 en
+ * una columna INTEGER. Una celda cuyo valor no corresponde a su columna se
+ * guarda etiquetada, <code>[tipo][valor]</code> en las paginas variables, y se
+ * lee sin perder nada.
+ *
+ * Las filas se leen por posicion o con un {@link Cursor} reutilizable, sin
+ * crear objetos por fila. {@link #close()} espera a los lectores, libera la
+ * memoria de inmediato y despues cualquier lectura lanza
+ * IllegalStateException.
+ *
+ * <pre>
+ * try (OffHeapRows rows = OffHeapRows.from(rs, true)) {
+ *   OffHeapRows.Cursor it = rows.cursor();
+ *   while (it.next()) total += it.getDouble(2);
+ * }
+ * </pre>
+ */
+public class OffHeapRows implements AutoCloseable {
+
+  /** Tamaño de pagina por defecto. */
+  public static final int PAGE_SIZE = 1 << 20;
+
+  /** Textos distintos que se recuerdan para no repetirlos al cargar. */
+  private static final int MAX_DICTIONARY = 1 << 16;
+
+  static final byte LONG = 0;
+  static final byte DOUBLE = 1;
+  static final byte STRING = 2;
+  static final byte BYTES = 3;
+  static final byte BOOLEAN = 4;
+
+  // sun.misc.Unsafe.invokeCleaner (Java 9+) o DirectBuffer.cleaner() (Java 8).
+  private static final Object UNSAFE;
+  private static final Method INVOKE_CLEANER;
+  static {
+    Object unsafe = null;
+    Method invokeCleaner = null;
+    try {
+      Class<?> type = Class.forName("sun.misc.Unsafe");
+      Field field = type.getDeclaredField("theUnsafe");
+      field.setAccessible(true);
+      unsafe = field.get(null);
+      invokeCleaner = type.getMethod("invokeCleaner", ByteBuffer.class);
+    } catch (Throwable ignore) {
+      // Empty
+    }
+    UNSAFE = unsafe;
+    INVOKE_CLEANER = invokeCleaner;
+  }
+
+  private final String[] columns;
+  private final Map<String, Integer> indexes;
+  private final byte[] kinds;
+  private final int nullBytes;
+  private final int rowWidth;
+  private final int rowsPerPage;
+  private final int pageSize;
+
+  // Cada lectura toma el candado de lectura; close() toma el de escritura,
+  // asi ninguna pagina se libera mientras alguien la lee.
+  private final StampedLock lock = new StampedLock();
+  private final List<ByteBuffer> pages = new ArrayList<ByteBuffer>();
+  private final List<ByteBuffer> varPages = new ArrayList<ByteBuffer>();
+  private ByteBuffer varPage;
+  private int size;
+  private long memory;
+  private boolean closed;
+
+  OffHeapRows(String[] columns, byte[] kinds, int pageSize) {
+    this.columns = columns;
+    this.kinds = kinds;
+    this.indexes = new HashMap<String, Integer>(columns.length * 2);
+    for (int i = columns.length - 1; i >= 0; i--) {
+      indexes.put(columns[i], i);
+    }
+    this.nullBytes = (columns.length + 7) >> 3;
+    this.rowWidth = 2 * nullBytes + columns.length * 8;
+    this.rowsPerPage = Math.max(1, pageSize / rowWidth);
+    this.pageSize = pageSize;
+  }
+
+  /**
+   * Lee todas las filas del ResultSet.
+   *
+   * @param rs resultado de la consulta
+   * @param closed @true para cerrar el ResultSet al terminar
+   * @param pageSize bytes por pagina
+   */
+  public static OffHeapRows from(ResultSet rs, boolean closed, int pageSize)
+  throws SQLException {
+    if (pageSize < 1024) throw new IllegalArgumentException("pageSize < 1024");
+    OffHeapRows rows = null;
+    try {
+      ResultSetMetaData md = rs.getMetaData();
+      int count = md.getColumnCount();
+      String[] columns = new String[count];
+      byte[] kinds = new byte[count];
+      for (int i = 0; i < count; i++) {
+        columns[i] = md.getColumnName(i + 1).intern();
+        kinds[i] = kind(md, i + 1);
+      }
+      rows = new OffHeapRows(columns, kinds, pageSize);
+      Map<String, Long> dictionary = new HashMap<String, Long>();
+      while (rs.next()) {
+        rows.append(rs, dictionary);
+      }
+      return rows;
+    } catch (SQLException e) {
+      if (rows != null) rows.close();
+      throw e;
+    } catch (RuntimeException e) {
+      if (rows != null) rows.close();
+      throw e;
+    } finally {
+      if (closed) DBUtils.closeQuietly(rs);
+    }
+  }
+  public static OffHeapRows from(ResultSet rs, boolean closed) throws SQLException {
+    return from(rs, closed, PAGE_SIZE);
+  }
+  public static OffHeapRows from(ResultSet rs) throws SQLException {
+    return from(rs, Boolean.FALSE);
+  }
+
+  /** Elige como se guarda la columna segun su tipo. */
+  private static byte kind(ResultSetMetaData md, int column) throws SQLException {
+    switch (md.getColumnType(column)) {
+      case Types.TINYINT:
+      case Types.SMALLINT:
+      case Types.INTEGER:
+      case Types.BIGINT:
+        return LONG;
+      case Types.BOOLEAN:
+      case Types.BIT:
+        return BOOLEAN;
+      case Types.REAL:
+      case Types.FLOAT:
+      case Types.DOUBLE:
+        return DOUBLE;
+      case Types.BINARY:
+      case Types.VARBINARY:
+      case Types.LONGVARBINARY:
+      case Types.BLOB:
+        return BYTES;
+      default:
+        return STRING;
+    }
+  }
+
+  /** Escribe la fila actual del ResultSet. */
+  private void append(ResultSet rs, Map<String, Long> dictionary)
+  throws SQLException {
+    int inPage = size % rowsPerPage;
+    if (inPage == 0) pages.add(allocate(Math.max(pageSize, rowWidth)));
+    ByteBuffer page = pages.get(pages.size() - 1);
+    int base = inPage * rowWidth;
+    for (int i = 0; i < 2 * nullBytes; i++) page.put(base + i, (byte) 0);
+    for (int i = 0; i < kinds.length; i++) {
+      int offset = base + 2 * nullBytes + i * 8;
+      long slot = 0;
+      boolean tagged = false;
+      Object value = (kinds[i] == BYTES) ? rs.getBytes(i + 1) : rs.getObject(i + 1);
+      if (value == null) {
+        setBit(page, base, i);
+      } else {
+        switch (kinds[i]) {
+          case LONG:
+            if (value instanceof Long || value instanceof Integer
+                    || value instanceof Short || value instanceof Byte) {
+              slot = ((Number) value).longValue();
+            } else {
+              tagged = true;
+            }
+            break;
+          case DOUBLE:
+            if (value instanceof Double || value instanceof Float) {
+              slot = Double.doubleToRawLongBits(((Number) value).doubleValue());
+            } else {
+              tagged = true;
+            }
+            break;
+          case BOOLEAN:
+            if (value instanceof Boolean) {
+              slot = ((Boolean) value) ? 1 : 0;
+            } else {
+              tagged = true;
+            }
+            break;
+          case BYTES:
+            slot = writeVar((byte[]) value);
+            break;
+          default:
+            if (value instanceof Long || value instanceof Integer
+                    || value instanceof Short || value instanceof Byte
+                    || value instanceof Double || value instanceof Float
+                    || value instanceof Boolean || value instanceof byte[]) {
+              tagged = true;
+            } else {
+              // Fechas, decimales, CLOB, etc. se guardan con su texto.
+              String text = (value instanceof String) ? (String) value : rs.getString(i + 1);
+              slot = writeString(text, dictionary);
+            }
+            break;
+        }
+        if (tagged) {
+          setBit(page, base + nullBytes, i);
+          slot = writeTagged(value, rs, i + 1);
+        }
+      }
+      page.putLong(offset, slot);
+    }
+    size++;
+  }
+
+  private static void setBit(ByteBuffer page, int position, int column) {
+    int index = position + (column >> 3);
+    page.put(index, (byte) (page.get(index) | (1 << (column & 7))));
+  }
+
+  /** Escribe una celda etiquetada: <code>[tipo][valor]</code>. */
+  private long writeTagged(Object value, ResultSet rs, int column)
+  throws SQLException {
+    byte tag;
+    byte[] payload;
+    if (value instanceof Long || value instanceof Integer
+            || value instanceof Short || value instanceof Byte) {
+      tag = LONG;
+      payload = ByteBuffer.allocate(8).putLong(((Number) value).longValue()).array();
+    } else if (value instanceof Double || value instanceof Float) {
+      tag = DOUBLE;
+      payload = ByteBuffer.allocate(8).putDouble(((Number) value).doubleValue()).array();
+    } else if (value instanceof Boolean) {
+      tag = BOOLEAN;
+      payload = new byte[] {(byte) (((Boolean) value) ? 1 : 0)};
+    } else if (value instanceof byte[]) {
+      tag = BYTES;
+      payload = (byte[]) value;
+    } else {
+      // BigDecimal, BigInteger, fechas: su texto.
+      tag = STRING;
+      String text = (value instanceof String) ? (String) value : rs.getString(column);
+      if (text == null) text = value.toString();
+      payload = text.getBytes(StandardCharsets.UTF_8);
+    }
+    byte[] bytes = new byte[payload.length + 1];
+    bytes[0] = tag;
+    System.arraycopy(payload, 0, bytes, 1, payload.length);
+    return writeVar(bytes);
+  }
+
+  private long writeString(String text, Map<String, Long> dictionary) {
+    Long position = dictionary.get(text);
+    if (position != null) return position;
+    long slot = writeVar(text.getBytes(StandardCharsets.UTF_8));
+    if (dictionary.size() < MAX_DICTIONARY) dictionary.put(text, slot);
+    return slot;
+  }
+
+  /**
+   * Escribe <code>[int largo][bytes]</code> en las paginas variables.
+   *
+   * @return (pagina &lt;&lt; 32) | posicion
+   */
+  private long writeVar(byte[] bytes) {
+    int needed = 4 + bytes.length;
+    if (varPage == null || varPage.remaining() < needed) {
+      varPage = allocate(Math.max(pageSize, needed));
+      varPages.add(varPage);
+    }
+    int position = varPage.position();
+    varPage.putInt(bytes.length);
+    varPage.put(bytes);
+    return ((long) (varPages.size() - 1) << 32) | position;
+  }
+
+  private ByteBuffer allocate(int capacity) {
+    memory += capacity;
+    return ByteBuffer.allocateDirect(capacity);
+  }
+
+  /** @return numero de filas. */
+  public int size() {
+    return size;
+  }
+
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  public int getColumnCount() {
+    return columns.length;
+  }
+
+  public String getColumnName(int column) {
+    return columns[column];
+  }
+
+  public String[] getColumnNames() {
+    return columns.clone();
+  }
+
+  /** @return el indice de la columna o -1 si no existe. */
+  public int findColumn(String name) {
+    Integer index = indexes.get(name);
+    if (index != null) return index;
+    for (int i = 0; i < columns.length; i++) {
+      if (columns[i].equalsIgnoreCase(name)) return i;
+    }
+    return -1;
+  }
+
+  /** @return bytes reservados fuera del heap. */
+  public long getMemoryBytes() {
+    return memory;
+  }
+
+  private void checkOpen() {
+    if (closed) throw new IllegalStateException("OffHeapRows closed");
+  }
+
+  /** Se llama con el candado de lectura. */
+  private ByteBuffer page(int row) {
+    checkOpen();
+    if (row < 0 || row >= size) {
+      throw new IndexOutOfBoundsException("row " + row + ", size " + size);
+    }
+    return pages.get(row / rowsPerPage);
+  }
+
+  private int base(int row) {
+    return (row % rowsPerPage) * rowWidth;
+  }
+
+  public boolean isNull(int row, int column) {
+    long stamp = lock.readLock();
+    try {
+      return isNull(page(row), base(row), column);
+    } finally {
+      lock.unlockRead(stamp);
+    }
+  }
+
+  private boolean isNull(ByteBuffer page, int base, int column) {
+    return (page.get(base + (column >> 3)) & (1 << (column & 7))) != 0;
+  }
+
+  private boolean isTagged(ByteBuffer page, int base, int column) {
+    return (page.get(base + nullBytes + (column >> 3)) & (1 << (column & 7))) != 0;
+  }
+
+  private long slot(ByteBuffer page, int base, int column) {
+    return page.getLong(base + 2 * nullBytes + column * 8);
+  }
+
+  public long getLong(int row, int column) {
+    long stamp = lock.readLock();
+    try {
+      return getLong(page(row), base(row), column);
+    } finally {
+      lock.unlockRead(stamp);
+    }
+  }
+
+  private long getLong(ByteBuffer page, int base, int column) {
+    if (isNull(page, base, column)) return 0;
+    long slot = slot(page, base, column);
+    if (isTagged(page, base, column)) {
+      Object value = readTagged(slot);
+      if (value instanceof Number) return ((Number) value).longValue();
+      if (value instanceof Boolean) return ((Boolean) value) ? 1 : 0;
+      if (value instanceof String) return Long.parseLong((String) value);
+      throw new ClassCastException("BLOB value in column " + columns[column]);
+    }
+    switch (kinds[column]) {
+      case LONG:
+      case BOOLEAN: return slot;
+      case DOUBLE: return (long) Double.longBitsToDouble(slot);
+      case STRING: return Long.parseLong(readString(slot));
+      default: throw new ClassCastException("BLOB column " + columns[column]);
+    }
+  }
+
+  public double getDouble(int row, int column) {
+    long stamp = lock.readLock();
+    try {
+      return getDouble(page(row), base(row), column);
+    } finally {
+      lock.unlockRead(stamp);
+    }
+  }
+
+  private double getDouble(ByteBuffer page, int base, int column) {
+    if (isNull(page, base, column)) return 0;
+    long slot = slot(page, base, column);
+    if (isTagged(page, base, column)) {
+      Object value = readTagged(slot);
+      if (value instanceof Number) return ((Number) value).doubleValue();
+      if (value instanceof Boolean) return ((Boolean) value) ? 1 : 0;
+      if (value instanceof String) return Double.parseDouble((String) value);
+      throw new ClassCastException("BLOB value in column " + columns[column]);
+    }
+    switch (kinds[column]) {
+      case LONG:
+      case BOOLEAN: return slot;
+      case DOUBLE: return Double.longBitsToDouble(slot);
+      case STRING: return Double.parseDouble(readString(slot));
+      default: throw new ClassCastException("BLOB column " + columns[column]);
+    }
+  }
+
+  public String getString(int row, int column) {
+    long stamp = lock.readLock();
+    try {
+      return getString(page(row), base(row), column);
+    } finally {
+      lock.unlockRead(stamp);
+    }
+  }
+
+  private String getString(ByteBuffer page, int base, int column) {
+    if (isNull(page, base, column)) return null;
+    long slot = slot(page, base, column);
+    if (isTagged(page, base, column)) {
+      Object value = readTagged(slot);
+      if (value instanceof byte[]) return new String((byte[]) value, StandardCharsets.UTF_8);
+      return String.valueOf(value);
+    }
+    switch (kinds[column]) {
+      case LONG: return String.valueOf(slot);
+      case DOUBLE: return String.valueOf(Double.longBitsToDouble(slot));
+      case BOOLEAN: return String.valueOf(slot != 0);
+      case STRING: return readString(slot);
+      default: return new String(readBytes(slot), StandardCharsets.UTF_8);
+    }
+  }
+
+  public byte[] getBytes(int row, int column) {
+    long stamp = lock.readLock();
+    try {
+      return getBytes(page(row), base(row), column);
+    } finally {
+      lock.unlockRead(stamp);
+    }
+  }
+
+  private byte[] getBytes(ByteBuffer page, int base, int column) {
+    if (isNull(page, base, column)) return null;
+    long slot = slot(page, base, column);
+    if (isTagged(page, base, column)) {
+      Object value = readTagged(slot);
+      if (value instanceof byte[]) return (byte[]) value;
+      return String.valueOf(value).getBytes(StandardCharsets.UTF_8);
+    }
+    switch (kinds[column]) {
+      case STRING:
+      case BYTES: return readBytes(slot);
+      default: return getString(page, base, column).getBytes(StandardCharsets.UTF_8);
+    }
+  }
+
+  /** @return el valor de la celda; crea un objeto, usar los get tipados. */
+  public Object get(int row, int column) {
+    long stamp = lock.readLock();
+    try {
+      return get(page(row), base(row), column);
+    } finally {
+      lock.unlockRead(stamp);
+    }
+  }
+
+  private Object get(ByteBuffer page, int base, int column) {
+    if (isNull(page, base, column)) return null;
+    if (isTagged(page, base, column)) return readTagged(slot(page, base, column));
+    switch (kinds[column]) {
+      case LONG: return getLong(page, base, column);
+      case DOUBLE: return getDouble(page, base, column);
+      case BOOLEAN: return slot(page, base, column) != 0;
+      case BYTES: return getBytes(page, base, column);
+      default: return getString(page, base, column);
+    }
+  }
+
+  /** Copia la fila a un Map. */
+  public Map<String, Object> toMap(int row) {
+    long stamp = lock.readLock();
+    try {
+      ByteBuffer page = page(row);
+      int base = base(row);
+      Map<String, Object> map = new LinkedHashMap<String, Object>(columns.length * 2);
+      for (int i = 0; i < columns.length; i++) {
+        map.put(columns[i], get(page, base, i));
+      }
+      return map;
+    } finally {
+      lock.unlockRead(stamp);
+    }
+  }
+
+  private String readString(long slot) {
+    return new String(readBytes(slot), StandardCharsets.UTF_8);
+  }
+
+  private byte[] readBytes(long slot) {
+    ByteBuffer page = varPages.get((int) (slot >>> 32)).duplicate();
+    int position = (int) slot;
+    byte[] bytes = new byte[page.getInt(position)];
+    page.position(position + 4);
+    page.get(bytes);
+    return bytes;
+  }
+
+  /** Lee una celda escrita por {@link #writeTagged}. */
+  private Object readTagged(long slot) {
+    byte[] bytes = readBytes(slot);
+    switch (bytes[0]) {
+      case LONG: return ByteBuffer.wrap(bytes, 1, 8).getLong();
+      case DOUBLE: return ByteBuffer.wrap(bytes, 1, 8).getDouble();
+      case BOOLEAN: return bytes[1] != 0;
+      case BYTES: return Arrays.copyOfRange(bytes, 1, bytes.length);
+      default: return new String(bytes, 1, bytes.length - 1, StandardCharsets.UTF_8);
+    }
+  }
+
+  /** @return un cursor antes de la primera fila. */
+  public Cursor cursor() {
+    return new Cursor();
+  }
+
+  /**
+   * Recorre las filas en orden; el mismo objeto sirve para todas las filas.
+   * No es seguro entre hilos, pero varios cursores pueden leer a la vez.
+   */
+  public final class Cursor {
+    private int row = -1;
+    private ByteBuffer page;
+    private int base;
+
+    Cursor() {
+    }
+
+    /** Avanza a la siguiente fila; @return @false si ya no hay filas. */
+    public boolean next() {
+      if (row + 1 >= size) {
+        row = size;
+        return false;
+      }
+      moveTo(row + 1);
+      return true;
+    }
+
+    /** Se coloca en la fila. */
+    public void moveTo(int row) {
+      long stamp = lock.readLock();
+      try {
+        this.page = page(row);
+      } finally {
+        lock.unlockRead(stamp);
+      }
+      this.base = base(row);
+      this.row = row;
+    }
+
+    public int getRow() {
+      return row;
+    }
+
+    public boolean isNull(int column) {
+      long stamp = lock.readLock();
+      try {
+        checkOpen();
+        return OffHeapRows.this.isNull(page, base, column);
+      } finally {
+        lock.unlockRead(stamp);
+      }
+    }
+
+    public long getLong(int column) {
+      long stamp = lock.readLock();
+      try {
+        checkOpen();
+        return OffHeapRows.this.getLong(page, base, column);
+      } finally {
+        lock.unlockRead(stamp);
+      }
+    }
+
+    public double getDouble(int column) {
+      long stamp = lock.readLock();
+      try {
+        checkOpen();
+        return OffHeapRows.this.getDouble(page, base, column);
+      } finally {
+        lock.unlockRead(stamp);
+      }
+    }
+
+    public String getString(int column) {
+      long stamp = lock.readLock();
+      try {
+        checkOpen();
+        return OffHeapRows.this.getString(page, base, column);
+      } finally {
+        lock.unlockRead(stamp);
+      }
+    }
+
+    public byte[] getBytes(int column) {
+      long stamp = lock.readLock();
+      try {
+        checkOpen();
+        return OffHeapRows.this.getBytes(page, base, column);
+      } finally {
+        lock.unlockRead(stamp);
+      }
+    }
+
+    public Object get(int column) {
+      long stamp = lock.readLock();
+      try {
+        checkOpen();
+        return OffHeapRows.this.get(page, base, column);
+      } finally {
+        lock.unlockRead(stamp);
+      }
+    }
+  }
+
+  /**
+   * Libera las paginas con el cleaner del ByteBuffer. Espera a que terminen
+   * las lecturas en curso; las siguientes lanzan IllegalStateException.
+   */
+  @Override public void close() {
+    long stamp = lock.writeLock();
+    try {
+      if (closed) return;
+      closed = true;
+      for (ByteBuffer page : pages) free(page);
+      for (ByteBuffer page : varPages) free(page);
+      pages.clear();
+      varPages.clear();
+      varPage = null;
+      memory = 0;
+    } finally {
+      lock.unlockWrite(stamp);
+    }
+  }
+
+  private static void free(ByteBuffer buffer) {
+    try {
+      if (INVOKE_CLEANER != null) {
+        INVOKE_CLEANER.invoke(UNSAFE, buffer);
+        return;
+      }
+      Method cleaner = buffer.getClass().getMethod("cleaner");
+      cleaner.setAccessible(true);
+      Object clean = cleaner.invoke(buffer);
+      if (clean != null) clean.getClass().getMethod("clean").invoke(clean);
+    } catch (Throwable ignore) {
+      // Lo libera el GC.
+    }
+  }
+
+  @Override public String toString() {
+    return "OffHeapRows{columns=" + Arrays.toString(columns) + ", size=" + size
+        + ", bytes=" + memory + '}';
+  }
+}
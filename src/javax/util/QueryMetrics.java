@@ -0,0 +1,228 @@
+package javax.util;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Tiempos de ejecucion de las sentencias agrupados por su forma normalizada.
+ * Esta apagado por defecto; al apagarlo cada sentencia solo paga la lectura
+ * de un campo.
+ *
+ * Uso desde las bases de datos:
+ * <pre>
+ * long start = metrics.start();
+ * ...
+ * metrics.record(sql, bindArgs, start, rows);   // o metrics.failed(sql, start)
+ * </pre>
+ *
+ * Las sentencias que tardan al menos {@link #getSlowQueryThresholdMillis()}
+ * se escriben en el slow query log, el {@link Debug.Sink} de
+ * {@link #setSlowQuerySink} o el de {@link Debug} si no se establece uno.
+ */
+public class QueryMetrics implements QueryMetricsMBean {
+
+  private static final String SLOW_TAG = "SlowQuery";
+
+  /** Formas normalizadas que se recuerdan por sql. */
+  private static final int MAX_SHAPES = 4096;
+
+  private static final Pattern STRING_LITERAL = Pattern.compile("'(?:[^']|'')*'");
+  private static final Pattern NUMBER_LITERAL =
+          Pattern.compile("(?<![\\w$.])\\d+(?:\\.\\d+)?(?:[eE][+-]?\\d+)?");
+  private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+  private static final Pattern ARG_LIST =
+          Pattern.compile("\\(\\s*\\?(?:\\s*,\\s*\\?)*\\s*\\)");
+  private static final Pattern ROW_LIST =
+          Pattern.compile("\\(\\?\\)(?:\\s*,\\s*\\(\\?\\))+");
+
+  private volatile boolean enabled;
+  private volatile long slowQueryThresholdNanos = -1;
+  private volatile Debug.Sink slowQuerySink;
+  private final LongAdder slowQueries = new LongAdder();
+
+  private final ConcurrentHashMap<String, String> shapes =
+          new ConcurrentHashMap<String, String>();
+  private final ConcurrentHashMap<String, QueryStats> stats =
+          new ConcurrentHashMap<String, QueryStats>();
+
+  private ObjectName objectName;
+
+  @Override public boolean isEnabled() {
+    return enabled;
+  }
+
+  @Override public void setEnabled(boolean enabled) {
+    this.enabled = enabled;
+  }
+
+  @Override public long getSlowQueryThresholdMillis() {
+    long nanos = slowQueryThresholdNanos;
+    return (nanos < 0) ? -1 : TimeUnit.NANOSECONDS.toMillis(nanos);
+  }
+
+  /**
+   * Establece la duracion a partir de la cual una sentencia se escribe en el
+   * slow query log; un valor negativo lo apaga.
+   */
+  @Override public void setSlowQueryThresholdMillis(long millis) {
+    slowQueryThresholdNanos = (millis < 0) ? -1 : TimeUnit.MILLISECONDS.toNanos(millis);
+  }
+
+  public Debug.Sink getSlowQuerySink() {
+    return slowQuerySink;
+  }
+
+  public void setSlowQuerySink(Debug.Sink sink) {
+    this.slowQuerySink = sink;
+  }
+
+  /** @return el instante de inicio de una sentencia, o 0 si esta apagado. */
+  public long start() {
+    return enabled ? System.nanoTime() : 0;
+  }
+
+  /**
+   * Registra una sentencia terminada.
+   *
+   * @param sql sentencia ejecutada
+   * @param bindArgs [opcional] parametros, solo se usan en el slow query log
+   * @param start valor de {@link #start()}
+   * @param rows filas afectadas o devueltas, si se conocen
+   *
+   * @return las estadisticas de la forma de la sentencia, o null si no se
+   *      registro
+   */
+  public QueryStats record(String sql, Object[] bindArgs, long start, long rows) {
+    if (start == 0 || !enabled) return null;
+    long nanos = System.nanoTime() - start;
+    QueryStats s = statsOf(sql);
+    s.record(nanos, rows);
+    long threshold = slowQueryThresholdNanos;
+    if (threshold >= 0 && nanos >= threshold) {
+      slowQuery(sql, bindArgs, nanos, rows);
+    }
+    return s;
+  }
+
+  /** Registra una sentencia que termino con error. */
+  public void failed(String sql, long start) {
+    if (start == 0 || !enabled) return;
+    statsOf(sql).error();
+  }
+
+  private void slowQuery(String sql, Object[] bindArgs, long nanos, long rows) {
+    slowQueries.increment();
+    Debug.Sink sink = slowQuerySink;
+    if (sink == null) sink = Debug.getSink();
+    String args = (bindArgs == null) ? "" : "; " + Arrays.toString(bindArgs);
+    sink.log(Debug.Level.WARN, SLOW_TAG, DBUtils.concat(
+            QueryStats.millis(nanos), "ms rows=", rows, "; ", sql, args), null);
+  }
+
+  private QueryStats statsOf(String sql) {
+    String shape = shapes.get(sql);
+    if (shape == null) {
+      shape = normalize(sql);
+      if (shapes.size() < MAX_SHAPES) shapes.put(sql, shape);
+    }
+    QueryStats s = stats.get(shape);
+    if (s == null) {
+      QueryStats created = new QueryStats(shape);
+      s = stats.putIfAbsent(shape, created);
+      if (s == null) s = created;
+    }
+    return s;
+  }
+
+  /**
+   * Obtiene la forma de una sentencia: cambia las literales por <code>?</code>,
+   * junta los espacios y reduce las listas <code>(?,?,?)</code> y
+   * <code>(?),(?)</code> a <code>(?)</code>.
+   */
+  public static String normalize(String sql) {
+    String s = STRING_LITERAL.matcher(sql).replaceAll("?");
+    s = NUMBER_LITERAL.matcher(s).replaceAll("?");
+    s = WHITESPACE.matcher(s).replaceAll(" ");
+    s = ARG_LIST.matcher(s).replaceAll("(?)");
+    s = ROW_LIST.matcher(s).replaceAll("(?)");
+    return s.trim();
+  }
+
+  /** @return las estadisticas por forma, de mayor a menor tiempo total. */
+  public List<QueryStats> getStatistics() {
+    List<QueryStats> list = new ArrayList<QueryStats>(stats.values());
+    Collections.sort(list, new Comparator<QueryStats>() {
+      @Override public int compare(QueryStats a, QueryStats b) {
+        return Long.compare(b.getTotalNanos(), a.getTotalNanos());
+      }
+    });
+    return list;
+  }
+
+  @Override public long getStatementCount() {
+    long total = 0;
+    for (QueryStats s : stats.values()) total += s.getCount();
+    return total;
+  }
+
+  @Override public long getErrorCount() {
+    long total = 0;
+    for (QueryStats s : stats.values()) total += s.getErrors();
+    return total;
+  }
+
+  @Override public long getSlowQueryCount() {
+    return slowQueries.sum();
+  }
+
+  @Override public String[] getReport() {
+    List<QueryStats> list = getStatistics();
+    String[] report = new String[list.size()];
+    for (int i = 0; i < report.length; i++) {
+      report[i] = list.get(i).toString();
+    }
+    return report;
+  }
+
+  @Override public void reset() {
+    for (QueryStats s : stats.values()) s.reset();
+    slowQueries.reset();
+  }
+
+  /**
+   * Registra las metricas en el MBeanServer de la plataforma como
+   * <code>javax.util:type=QueryMetrics,name=[name]</code>.
+   *
+   * @return el nombre del MBean
+   */
+  public synchronized ObjectName register(String name) throws JMException {
+    unregister();
+    ObjectName on = new ObjectName("javax.util:type=QueryMetrics,name="
+            + ObjectName.quote(name));
+    ManagementFactory.getPlatformMBeanServer().registerMBean(this, on);
+    objectName = on;
+    return on;
+  }
+
+  public synchronized void unregister() {
+    if (objectName == null) return;
+    MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+    try {
+      if (server.isRegistered(objectName)) server.unregisterMBean(objectName);
+    } catch (JMException ignore) {
+      // Empty
+    }
+    objectName = null;
+  }
+}
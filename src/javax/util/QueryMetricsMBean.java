@@ -0,0 +1,26 @@
+package javax.util;
+
+/**
+ * Vista JMX de {@link QueryMetrics}.
+ */
+public interface QueryMetricsMBean {
+
+  boolean isEnabled();
+
+  void setEnabled(boolean enabled);
+
+  long getSlowQueryThresholdMillis();
+
+  void setSlowQueryThresholdMillis(long millis);
+
+  long getStatementCount();
+
+  long getErrorCount();
+
+  long getSlowQueryCount();
+
+  /** Una linea por forma de sentencia, de mayor a menor tiempo total. */
+  String[] getReport();
+
+  void reset();
+}
@@ -0,0 +1,103 @@
+package javax.util;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Estadisticas de las sentencias con la misma forma normalizada, ver
+ * {@link QueryMetrics#normalize(String)}. Los tiempos estan en nanosegundos.
+ */
+public class QueryStats {
+
+  private final String sql;
+  private final LongAdder count = new LongAdder();
+  private final LongAdder errors = new LongAdder();
+  private final LongAdder rows = new LongAdder();
+  private final LongAdder totalNanos = new LongAdder();
+  private final AtomicLong maxNanos = new AtomicLong();
+  private final LatencyHistogram histogram = new LatencyHistogram();
+
+  QueryStats(String sql) {
+    this.sql = sql;
+  }
+
+  void record(long nanos, long affected) {
+    count.increment();
+    totalNanos.add(nanos);
+    if (affected > 0) rows.add(affected);
+    histogram.record(nanos);
+    long max;
+    while (nanos > (max = maxNanos.get())) {
+      if (maxNanos.compareAndSet(max, nanos)) break;
+    }
+  }
+
+  void error() {
+    errors.increment();
+  }
+
+  /** Suma las filas leidas de un ResultSet al cerrarlo. */
+  public void addRows(long n) {
+    if (n > 0) rows.add(n);
+  }
+
+  /** @return la forma normalizada de la sentencia. */
+  public String getSql() {
+    return sql;
+  }
+
+  /** @return ejecuciones terminadas sin error. */
+  public long getCount() {
+    return count.sum();
+  }
+
+  public long getErrors() {
+    return errors.sum();
+  }
+
+  /** @return filas devueltas o afectadas. */
+  public long getRows() {
+    return rows.sum();
+  }
+
+  public long getTotalNanos() {
+    return totalNanos.sum();
+  }
+
+  public long getMaxNanos() {
+    return maxNanos.get();
+  }
+
+  public long getMeanNanos() {
+    long n = getCount();
+    return (n == 0) ? 0 : getTotalNanos() / n;
+  }
+
+  /** @param percentile entre 0 y 100, p. ej. 99.9 */
+  public long getPercentileNanos(double percentile) {
+    return histogram.getValueAtPercentile(percentile);
+  }
+
+  void reset() {
+    count.reset();
+    errors.reset();
+    rows.reset();
+    totalNanos.reset();
+    maxNanos.set(0);
+    histogram.reset();
+  }
+
+  @Override public String toString() {
+    return DBUtils.concat(sql, "; count=", getCount(), ", errors=", getErrors(),
+            ", rows=", getRows(),
+            ", mean=", millis(getMeanNanos()),
+            "ms, p50=", millis(getPercentileNanos(50)),
+            "ms, p99=", millis(getPercentileNanos(99)),
+            "ms, max=", millis(getMaxNanos()), "ms");
+  }
+
+  static double millis(long nanos) {
+    return nanos / (double) TimeUnit.MILLISECONDS.toNanos(1);
+  }
+}
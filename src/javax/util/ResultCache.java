@@ -0,0 +1,305 @@
+package javax.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Cache LRU de resultados de consultas SELECT, por sql y parametros.
+ *
+ * Cada entrada guarda una copia desconectada de las filas en un
+ * {@link Rows} y las tablas que leyo la consulta. Las entradas expiran
+ * despues de <code>ttl</code> milisegundos, se descartan las menos usadas al
+ * superar <code>maxEntries</code> y se invalidan cuando la base de datos que
+ * usa el cache escribe en una de sus tablas.
+ */
+public class ResultCache {
+
+  public static final int DEFAULT_MAX_ENTRIES = 256;
+  public static final int DEFAULT_MAX_ROWS = 10000;
+
+  /** Token sql: identificador con o sin comillas, literal o simbolo. */
+  private static final Pattern TOKEN = Pattern.compile(
+          "\"[^\"]*\"|`[^`]*`|\\[[^\\]]*\\]|'(?:[^']|'')*'|[\\w.$]+|\\S");
+
+  private static final Set<String> CLAUSES = new HashSet<String>(Arrays.asList(
+          "where", "group", "order", "limit", "having", "join", "left", "right",
+          "inner", "outer", "cross", "natural", "full", "on", "using", "union",
+          "except", "intersect", "window", "offset", "for", "lock"));
+
+  private final int maxEntries;
+  private final long ttl;
+  private int maxRows = DEFAULT_MAX_ROWS;
+  private final LinkedHashMap<Key, Entry> entries;
+  private final HashMap<String, Set<Key>> byTable = new HashMap<String, Set<Key>>();
+  /** Aumenta con cada invalidacion. */
+  private long generation;
+  private long hitCount;
+  private long missCount;
+
+  /**
+   * @param maxEntries numero maximo de resultados
+   * @param ttl milisegundos que vive un resultado
+   */
+  public ResultCache(int maxEntries, long ttl) {
+    if (maxEntries < 1) throw new IllegalArgumentException("maxEntries < 1");
+    this.maxEntries = maxEntries;
+    this.ttl = ttl;
+    this.entries = new LinkedHashMap<Key, Entry>(16, 0.75f, true);
+  }
+
+  public int getMaxEntries() {
+    return maxEntries;
+  }
+
+  public long getTtl() {
+    return ttl;
+  }
+
+  public synchronized int getMaxRows() {
+    return maxRows;
+  }
+
+  /** Establece el numero maximo de filas de un resultado que se guarda. */
+  public synchronized void setMaxRows(int maxRows) {
+    this.maxRows = maxRows;
+  }
+
+  /** @return @true si el sql es una consulta que se puede guardar. */
+  public static boolean isCacheable(String sql) {
+    int i = 0;
+    while (i < sql.length() && Character.isWhitespace(sql.charAt(i))) i++;
+    return sql.regionMatches(true, i, "SELECT", 0, 6)
+        || sql.regionMatches(true, i, "WITH", 0, 4);
+  }
+
+  /**
+   * Valor a pasar a {@link #put}; se obtiene antes de ejecutar la consulta
+   * para descartar el resultado si hubo una escritura mientras se leia.
+   */
+  public synchronized long generation() {
+    return generation;
+  }
+
+  /** @return las filas guardadas o null si no estan o ya expiraron. */
+  public synchronized Rows get(String sql, Object[] bindArgs) {
+    Key key = new Key(sql, bindArgs);
+    Entry entry = entries.get(key);
+    if (entry != null && entry.expiresAt < System.currentTimeMillis()) {
+      remove(key, entry);
+      entry = null;
+    }
+    if (entry == null) {
+      missCount++;
+      return null;
+    }
+    hitCount++;
+    return entry.rows;
+  }
+
+  /**
+   * Guarda el resultado de una consulta; no guarda los resultados de mas de
+   * {@link #getMaxRows()} filas ni las consultas que no leen tablas.
+   *
+   * @param generation valor de {@link #generation()} antes de la consulta
+   */
+  public synchronized void put(String sql, Object[] bindArgs, Rows rows,
+          long generation) {
+    if (generation != this.generation || rows.size() > maxRows) return;
+    // Sin tablas suele ser una funcion: last_insert_rowid(), random()...
+    Set<String> tables = readTables(sql);
+    if (tables.isEmpty()) return;
+    Key key = new Key(sql, (bindArgs == null) ? null : bindArgs.clone());
+    Entry old = entries.get(key);
+    if (old != null) remove(key, old);
+    entries.put(key, new Entry(rows, tables, System.currentTimeMillis() + ttl));
+    for (String table : tables) {
+      Set<Key> keys = byTable.get(table);
+      if (keys == null) {
+        keys = new HashSet<Key>();
+        byTable.put(table, keys);
+      }
+      keys.add(key);
+    }
+    while (entries.size() > maxEntries) {
+      Map.Entry<Key, Entry> eldest = entries.entrySet().iterator().next();
+      remove(eldest.getKey(), eldest.getValue());
+    }
+  }
+
+  private void remove(Key key, Entry entry) {
+    entries.remove(key);
+    for (String table : entry.tables) {
+      Set<Key> keys = byTable.get(table);
+      if (keys != null) {
+        keys.remove(key);
+        if (keys.isEmpty()) byTable.remove(table);
+      }
+    }
+  }
+
+  /** Descarta los resultados que leyeron la tabla; null descarta todos. */
+  public synchronized void invalidate(String table) {
+    generation++;
+    if (table == null) {
+      entries.clear();
+      byTable.clear();
+      return;
+    }
+    Set<Key> keys = byTable.remove(tableName(table));
+    if (keys == null) return;
+    for (Key key : new ArrayList<Key>(keys)) {
+      Entry entry = entries.get(key);
+      if (entry != null) remove(key, entry);
+    }
+  }
+
+  public void invalidateAll() {
+    invalidate(null);
+  }
+
+  /**
+   * Descarta los resultados afectados por una sentencia; si no se reconoce
+   * la tabla que modifica, como en DDL, descarta todos.
+   */
+  public void invalidateFor(String sql) {
+    invalidate(writtenTable(sql));
+  }
+
+  public synchronized int size() {
+    return entries.size();
+  }
+
+  public synchronized long getHitCount() {
+    return hitCount;
+  }
+
+  public synchronized long getMissCount() {
+    return missCount;
+  }
+
+  private static List<String> tokens(String sql) {
+    List<String> tokens = new ArrayList<String>();
+    Matcher m = TOKEN.matcher(sql);
+    while (m.find()) tokens.add(m.group());
+    return tokens;
+  }
+
+  /** Nombre sin comillas, sin esquema y en minusculas. */
+  static String tableName(String token) {
+    String name = token;
+    int dot = name.lastIndexOf('.');
+    if (dot >= 0) name = name.substring(dot + 1);
+    if (name.length() > 1) {
+      char c = name.charAt(0);
+      if (c == '"' || c == '`' || c == '[') name = name.substring(1, name.length() - 1);
+    }
+    return name.toLowerCase(Locale.ROOT);
+  }
+
+  private static boolean isName(String token) {
+    char c = token.charAt(0);
+    return Character.isLetter(c) || c == '_' || c == '"' || c == '`' || c == '['
+        || c == '$';
+  }
+
+  /** Tablas que aparecen despues de FROM (incluyendo listas) y JOIN. */
+  static Set<String> readTables(String sql) {
+    List<String> tokens = tokens(sql);
+    Set<String> tables = new HashSet<String>();
+    for (int i = 0; i < tokens.size(); i++) {
+      String token = tokens.get(i);
+      boolean from = token.equalsIgnoreCase("FROM");
+      if (!from && !token.equalsIgnoreCase("JOIN")) continue;
+      int j = i + 1;
+      while (j < tokens.size() && isName(tokens.get(j))) {
+        tables.add(tableName(tokens.get(j++)));
+        if (!from) break;
+        // Alias opcional.
+        if (j < tokens.size() && tokens.get(j).equalsIgnoreCase("AS")) j++;
+        if (j < tokens.size() && isName(tokens.get(j))
+                && !CLAUSES.contains(tokens.get(j).toLowerCase(Locale.ROOT))) j++;
+        if (j < tokens.size() && tokens.get(j).equals(",")) {
+          j++;
+        } else {
+          break;
+        }
+      }
+    }
+    return tables.isEmpty() ? Collections.<String>emptySet() : tables;
+  }
+
+  /**
+   * @return la tabla de un INSERT, REPLACE, UPDATE o DELETE, o null si no se
+   *      reconoce la sentencia
+   */
+  public static String writtenTable(String sql) {
+    Iterator<String> it = tokens(sql).iterator();
+    if (!it.hasNext()) return null;
+    String verb = it.next().toUpperCase(Locale.ROOT);
+    String next = it.hasNext() ? it.next() : null;
+    if (verb.equals("INSERT") || verb.equals("REPLACE") || verb.equals("UPDATE")) {
+      if ("OR".equalsIgnoreCase(next) && it.hasNext()) {
+        it.next();
+        next = it.hasNext() ? it.next() : null;
+      }
+      if ("IGNORE".equalsIgnoreCase(next) || "LOW_PRIORITY".equalsIgnoreCase(next)) {
+        next = it.hasNext() ? it.next() : null;
+      }
+      if (!verb.equals("UPDATE") && "INTO".equalsIgnoreCase(next)) {
+        next = it.hasNext() ? it.next() : null;
+      }
+    } else if (verb.equals("DELETE")) {
+      if ("FROM".equalsIgnoreCase(next)) next = it.hasNext() ? it.next() : null;
+    } else {
+      return null;
+    }
+    return (next != null && isName(next)) ? tableName(next) : null;
+  }
+
+  private static final class Entry {
+    final Rows rows;
+    final Set<String> tables;
+    final long expiresAt;
+
+    Entry(Rows rows, Set<String> tables, long expiresAt) {
+      this.rows = rows;
+      this.tables = tables;
+      this.expiresAt = expiresAt;
+    }
+  }
+
+  private static final class Key {
+    final String sql;
+    final Object[] bindArgs;
+    final int hash;
+
+    Key(String sql, Object[] bindArgs) {
+      this.sql = sql;
+      this.bindArgs = bindArgs;
+      this.hash = 31 * sql.hashCode() + Arrays.deepHashCode(bindArgs);
+    }
+
+    @Override public int hashCode() {
+      return hash;
+    }
+
+    @Override public boolean equals(Object obj) {
+      if (this == obj) return true;
+      if (!(obj instanceof Key)) return false;
+      Key other = (Key) obj;
+      return hash == other.hash && sql.equals(other.sql)
+          && Arrays.deepEquals(bindArgs, other.bindArgs);
+    }
+  }
+}
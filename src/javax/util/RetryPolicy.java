@@ -0,0 +1,114 @@
+package javax.util;
+
+import java.sql.SQLException;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Reintentos de las transacciones que fallan por contencion: SQLITE_BUSY y
+ * SQLITE_LOCKED, deadlocks y lock wait timeout de MySQL, y los SQLState de
+ * serializacion (40001) y deadlock (40P01).
+ *
+ * La espera entre intentos crece al doble desde <code>baseDelay</code> hasta
+ * <code>maxDelay</code>, con jitter: se elige al azar entre la mitad y el
+ * total, para que los escritores en conflicto no reintenten al mismo tiempo.
+ */
+public class RetryPolicy {
+
+  /** 5 intentos, desde 10 ms hasta 1 s. */
+  public static final RetryPolicy DEFAULT = new RetryPolicy(5, 10, 1000);
+
+  /** Sin reintentos. */
+  public static final RetryPolicy NONE = new RetryPolicy(1, 0, 0);
+
+  private static final int SQLITE_BUSY = 5;
+  private static final int SQLITE_LOCKED = 6;
+  private static final int MYSQL_LOCK_WAIT_TIMEOUT = 1205;
+  private static final int MYSQL_DEADLOCK = 1213;
+
+  private final int maxAttempts;
+  private final long baseDelay;
+  private final long maxDelay;
+
+  /**
+   * @param maxAttempts intentos en total, incluyendo el primero
+   * @param baseDelay milisegundos de espera despues del primer intento
+   * @param maxDelay milisegundos maximos de espera
+   */
+  public RetryPolicy(int maxAttempts, long baseDelay, long maxDelay) {
+    if (maxAttempts < 1) throw new IllegalArgumentException("maxAttempts < 1");
+    this.maxAttempts = maxAttempts;
+    this.baseDelay = baseDelay;
+    this.maxDelay = maxDelay;
+  }
+
+  public int getMaxAttempts() {
+    return maxAttempts;
+  }
+
+  public long getBaseDelay() {
+    return baseDelay;
+  }
+
+  public long getMaxDelay() {
+    return maxDelay;
+  }
+
+  /** @return @true si el error es por contencion y se puede reintentar. */
+  public boolean isRetryable(SQLException e) {
+    for (Throwable t = e; t != null; t = t.getCause()) {
+      if (!(t instanceof SQLException)) continue;
+      SQLException sql = (SQLException) t;
+      for (SQLException it = sql; it != null; it = it.getNextException()) {
+        if (isContention(it)) return true;
+      }
+    }
+    return false;
+  }
+
+  private static boolean isContention(SQLException e) {
+    int code = e.getErrorCode();
+    String state = e.getSQLState();
+    if ("40001".equals(state) || "40P01".equals(state)) return true;
+    if (code == MYSQL_DEADLOCK || code == MYSQL_LOCK_WAIT_TIMEOUT) return true;
+    // sqlite-jdbc reporta el codigo primario o el extendido (primario | n << 8);
+    // los codigos de MySQL empiezan en 1000.
+    int primary = code & 0xff;
+    if (code < 1000 && (primary == SQLITE_BUSY || primary == SQLITE_LOCKED)) {
+      return true;
+    }
+    String message = e.getMessage();
+    return message != null && (message.contains("SQLITE_BUSY")
+        || message.contains("SQLITE_LOCKED")
+        || message.contains("database is locked"));
+  }
+
+  /**
+   * @param attempt intento que fallo, iniciando en 1
+   *
+   * @return milisegundos a esperar antes del siguiente intento
+   */
+  public long delay(int attempt) {
+    if (baseDelay <= 0) return 0;
+    long delay = baseDelay << Math.min(attempt - 1, 30);
+    if (delay <= 0 || delay > maxDelay) delay = maxDelay;
+    long half = delay / 2;
+    return half + ThreadLocalRandom.current().nextLong(delay - half + 1);
+  }
+
+  /** Espera {@link #delay(int)} milisegundos. */
+  public void sleep(int attempt) throws SQLException {
+    long delay = delay(attempt);
+    if (delay <= 0) return;
+    try {
+      Thread.sleep(delay);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new SQLException("Interrupted waiting to retry", e);
+    }
+  }
+
+  @Override public String toString() {
+    return "RetryPolicy{maxAttempts=" + maxAttempts + ", baseDelay=" + baseDelay
+        + ", maxDelay=" + maxDelay + "}";
+  }
+}
@@ -0,0 +1,81 @@
+package javax.util;
+
+import java.util.Map;
+
+/**
+ * Vista de una fila de {@link Rows}; no copia los valores.
+ *
+ * Los indices de columna inician en 0.
+ */
+public final class Row {
+
+  private final Rows rows;
+  private final int index;
+
+  Row(Rows rows, int index) {
+    this.rows = rows;
+    this.index = index;
+  }
+
+  /** @return posicion de la fila en el resultado. */
+  public int getIndex() {
+    return index;
+  }
+
+  public Object get(int column) {
+    return rows.get(index, column);
+  }
+
+  public Object get(String column) {
+    return rows.get(index, rows.requireColumn(column));
+  }
+
+  public boolean isNull(int column) {
+    return rows.isNull(index, column);
+  }
+
+  public boolean isNull(String column) {
+    return rows.isNull(index, rows.requireColumn(column));
+  }
+
+  public long getLong(int column) {
+    return rows.getLong(index, column);
+  }
+
+  public long getLong(String column) {
+    return rows.getLong(index, rows.requireColumn(column));
+  }
+
+  public int getInt(int column) {
+    return (int) rows.getLong(index, column);
+  }
+
+  public int getInt(String column) {
+    return (int) rows.getLong(index, rows.requireColumn(column));
+  }
+
+  public double getDouble(int column) {
+    return rows.getDouble(index, column);
+  }
+
+  public double getDouble(String column) {
+    return rows.getDouble(index, rows.requireColumn(column));
+  }
+
+  public String getString(int column) {
+    return rows.getString(index, column);
+  }
+
+  public String getString(String column) {
+    return rows.getString(index, rows.requireColumn(column));
+  }
+
+  /** Convierte la fila a un Map columna-valor. */
+  public Map<String, Object> toMap() {
+    return rows.toMap(index);
+  }
+
+  @Override public String toString() {
+    return toMap().toString();
+  }
+}
@@ -0,0 +1,97 @@
+package javax.util;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Recorre un ResultSet fila por fila sin cargarlo completo en memoria.
+ *
+ * El ResultSet (y su sentencia, si es un SQLResultSet) se cierra al llamar
+ * {@link #close()} o al consumir la ultima fila.
+ */
+public class RowIterator implements Iterator<Map<String, Object>>, AutoCloseable {
+
+  private final ResultSet rs;
+  private final String[] columns;
+  private boolean fetched;
+  private boolean hasNext;
+  private boolean closed;
+
+  public RowIterator(ResultSet rs) throws SQLException {
+    this.rs = rs;
+    try {
+      this.columns = DBUtils.columnNames(rs.getMetaData());
+    } catch (SQLException e) {
+      close();
+      throw e;
+    }
+  }
+
+  /** @return nombres de las columnas del resultado. */
+  public String[] getColumns() {
+    return columns.clone();
+  }
+
+  @Override public boolean hasNext() {
+    if (closed) return false;
+    if (!fetched) {
+      try {
+        hasNext = rs.next();
+      } catch (SQLException e) {
+        close();
+        throw new IllegalStateException(e.getMessage(), e);
+      }
+      fetched = true;
+      if (!hasNext) close();
+    }
+    return hasNext;
+  }
+
+  @Override public Map<String, Object> next() {
+    if (!hasNext()) throw new NoSuchElementException();
+    fetched = false;
+    try {
+      Map<String, Object> row = new LinkedHashMap<String, Object>(columns.length);
+      for (int i = 0; i < columns.length; i++) {
+        row.put(columns[i], rs.getObject(i + 1));
+      }
+      return row;
+    } catch (SQLException e) {
+      close();
+      throw new IllegalStateException(e.getMessage(), e);
+    }
+  }
+
+  @Override public void remove() {
+    throw new UnsupportedOperationException("remove");
+  }
+
+  @Override public void close() {
+    if (closed) return;
+    closed = true;
+    hasNext = false;
+    DBUtils.closeQuietly(rs);
+  }
+
+  /**
+   * Obtiene un Stream secuencial de las filas. Se debe cerrar el Stream
+   * (p. ej. con try-with-resources) si no se consume por completo.
+   */
+  public Stream<Map<String, Object>> stream() {
+    Spliterator<Map<String, Object>> split = Spliterators.spliteratorUnknownSize(
+            this, Spliterator.ORDERED | Spliterator.NONNULL);
+    return StreamSupport.stream(split, false).onClose(new Runnable() {
+      @Override public void run() {
+        close();
+      }
+    });
+  }
+}
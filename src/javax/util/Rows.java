@@ -0,0 +1,469 @@
+package javax.util;
+
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * Resultado de una consulta guardado por columnas.
+ *
+ * Todas las filas comparten un solo encabezado con los nombres de columna y
+ * cada columna guarda sus valores en un arreglo propio, en lugar de crear un
+ * LinkedHashMap por fila. Las filas se consultan con una vista {@link Row}
+ * y solo se convierten a Map cuando se pide.
+ *
+ * Los valores se regresan tal cual se guardaron; un Rows puede compartirse
+ * (p. ej. desde {@link ResultCache}), asi que no se deben modificar los
+ * arreglos <code>byte[]</code> que regresa.
+ */
+public class Rows implements Iterable<Row> {
+
+  private final String[] columns;
+  private final Map<String, Integer> indexes;
+  private final ColumnVector[] data;
+  private int size;
+  
+  // ResultSetMetaData de las columnas, para RowsResultSet.
+  String[] labels;
+  int[] types;
+  String[] typeNames;
+  String[] classNames;
+
+  Rows(String[] columns, ColumnVector[] data) {
+    this.columns = columns;
+    this.data = data;
+    this.indexes = new HashMap<String, Integer>(columns.length * 2);
+    for (int i = columns.length - 1; i >= 0; i--) {
+      indexes.put(columns[i], i);
+    }
+  }
+
+  /**
+   * Lee todas las filas del ResultSet.
+   *
+   * Todas las celdas se leen con getObject. Con <code>typed</code> las
+   * columnas enteras y de punto flotante, segun el tipo de
+   * ResultSetMetaData, se guardan en arreglos <code>long[]</code>/
+   * <code>double[]</code> con un mapa de bits para los nulos, sin guardar un
+   * objeto por celda. Como en SQLite el tipo es de cada valor y no de la
+   * columna, si una celda trae otra clase (texto en una columna INTEGER, un
+   * entero en una REAL...) la columna pasa a guardar objetos; los valores
+   * son siempre los de getObject.
+   *
+   * @param rs resultado de la consulta
+   * @param closed @true para cerrar el ResultSet al terminar
+   * @param typed @true para guardar las columnas numericas sin boxing
+   */
+  public static Rows from(ResultSet rs, boolean closed, boolean typed) 
+  throws SQLException {
+    try {
+      return read(rs, typed, Integer.MAX_VALUE);
+    } finally {
+      if (closed) DBUtils.closeQuietly(rs);
+    }
+  }
+  public static Rows from(ResultSet rs, boolean closed) throws SQLException {
+    return from(rs, closed, Boolean.TRUE);
+  }
+  public static Rows from(ResultSet rs) throws SQLException {
+    return from(rs, Boolean.FALSE);
+  }
+
+  /**
+   * Lee a lo mas <code>maxRows</code> filas, sin cerrar el ResultSet; el
+   * siguiente <code>rs.next()</code> lee la fila que sigue.
+   */
+  public static Rows from(ResultSet rs, int maxRows) throws SQLException {
+    return read(rs, Boolean.TRUE, maxRows);
+  }
+
+  private static Rows read(ResultSet rs, boolean typed, int maxRows) 
+  throws SQLException {
+    ResultSetMetaData md = rs.getMetaData();
+    int count = md.getColumnCount();
+    String[] columns = new String[count];
+    ColumnVector[] data = new ColumnVector[count];
+    String[] labels = new String[count];
+    int[] types = new int[count];
+    String[] typeNames = new String[count];
+    String[] classNames = new String[count];
+    for (int i = 0; i < count; i++) {
+      columns[i] = md.getColumnName(i + 1).intern();
+      data[i] = typed ? ColumnVector.create(md, i + 1) : new ObjectVector();
+      labels[i] = md.getColumnLabel(i + 1);
+      types[i] = md.getColumnType(i + 1);
+      typeNames[i] = md.getColumnTypeName(i + 1);
+      classNames[i] = md.getColumnClassName(i + 1);
+    }
+
+    Rows rows = new Rows(columns, data);
+    rows.labels = labels;
+    rows.types = types;
+    rows.typeNames = typeNames;
+    rows.classNames = classNames;
+    while (rows.size < maxRows && rs.next()) {
+      for (int i = 0; i < count; i++) {
+        Object value = rs.getObject(i + 1);
+        if (!data[i].add(value)) {
+          data[i] = data[i].toObjects(rows.size);
+          data[i].add(value);
+        }
+      }
+      rows.size++;
+    }
+    for (ColumnVector vector : data) {
+      vector.trim(rows.size);
+    }
+    return rows;
+  }
+
+  /** @return numero de filas. */
+  public int size() {
+    return size;
+  }
+
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  public int getColumnCount() {
+    return columns.length;
+  }
+
+  /** @param column indice de la columna, iniciando en 0 */
+  public String getColumnName(int column) {
+    return columns[column];
+  }
+
+  public String[] getColumnNames() {
+    return columns.clone();
+  }
+
+  /**
+   * @return el indice de la columna, iniciando en 0, o -1 si no existe.
+   */
+  public int findColumn(String name) {
+    Integer index = indexes.get(name);
+    if (index != null) return index;
+    for (int i = 0; i < columns.length; i++) {
+      if (columns[i].equalsIgnoreCase(name)) return i;
+    }
+    return -1;
+  }
+
+  int requireColumn(String name) {
+    int index = findColumn(name);
+    if (index < 0) throw new IllegalArgumentException("No such column: " + name);
+    return index;
+  }
+
+  /** @param row indice de la fila, iniciando en 0 */
+  public Row get(int row) {
+    checkRow(row);
+    return new Row(this, row);
+  }
+
+  public Object get(int row, int column) {
+    return data[column].get(row);
+  }
+
+  public boolean isNull(int row, int column) {
+    return data[column].isNull(row);
+  }
+
+  public long getLong(int row, int column) {
+    return data[column].getLong(row);
+  }
+
+  public double getDouble(int row, int column) {
+    return data[column].getDouble(row);
+  }
+
+  public String getString(int row, int column) {
+    Object value = data[column].get(row);
+    return (value == null) ? null : value.toString();
+  }
+
+  /** Convierte la fila a un Map columna-valor. */
+  public Map<String, Object> toMap(int row) {
+    checkRow(row);
+    Map<String, Object> map = new LinkedHashMap<String, Object>(columns.length * 2);
+    for (int i = 0; i < columns.length; i++) {
+      map.put(columns[i], data[i].get(row));
+    }
+    return map;
+  }
+
+  /** Vista de las filas como lista de Map; cada Map se crea al pedirlo. */
+  public List<Map<String, Object>> asMaps() {
+    return new AbstractList<Map<String, Object>>() {
+      @Override public Map<String, Object> get(int index) {
+        return toMap(index);
+      }
+      @Override public int size() {
+        return size;
+      }
+    };
+  }
+
+  /** Copia todas las filas a una lista de Map. */
+  public List<Map<String, Object>> toList() {
+    return new ArrayList<Map<String, Object>>(asMaps());
+  }
+
+  @Override public Iterator<Row> iterator() {
+    return new Iterator<Row>() {
+      int next = 0;
+
+      @Override public boolean hasNext() {
+        return next < size;
+      }
+
+      @Override public Row next() {
+        if (next >= size) throw new NoSuchElementException();
+        return new Row(Rows.this, next++);
+      }
+
+      @Override public void remove() {
+        throw new UnsupportedOperationException("remove");
+      }
+    };
+  }
+
+  private void checkRow(int row) {
+    if (row < 0 || row >= size) {
+      throw new IndexOutOfBoundsException("row=" + row + ", size=" + size);
+    }
+  }
+
+  @Override public String toString() {
+    return "Rows{columns=" + Arrays.toString(columns) + ", size=" + size + '}';
+  }
+
+  /**
+   * Valores de una columna.
+   */
+  abstract static class ColumnVector {
+
+    /** Elige el tipo de vector segun el tipo de la columna. */
+    static ColumnVector create(ResultSetMetaData md, int column) 
+    throws SQLException {
+      switch (md.getColumnType(column)) {
+        case Types.TINYINT:
+        case Types.SMALLINT:
+        case Types.INTEGER:
+        case Types.BIGINT:
+          return new LongVector();
+        case Types.REAL:
+        case Types.FLOAT:
+        case Types.DOUBLE:
+          return new DoubleVector();
+        default:
+          return new ObjectVector();
+      }
+    }
+
+    /**
+     * Agrega el valor de getObject.
+     *
+     * @return @false si el vector no puede guardar el valor sin cambiarlo
+     */
+    abstract boolean add(Object value);
+
+    abstract Object get(int row);
+
+    abstract void trim(int size);
+
+    /** Copia las primeras filas a un vector de objetos. */
+    ObjectVector toObjects(int size) {
+      ObjectVector vector = new ObjectVector();
+      vector.values = new Object[Math.max(16, size)];
+      for (int row = 0; row < size; row++) {
+        vector.values[row] = get(row);
+      }
+      vector.size = size;
+      return vector;
+    }
+
+    boolean isNull(int row) {
+      return get(row) == null;
+    }
+
+    long getLong(int row) {
+      Object value = get(row);
+      if (value == null) return 0;
+      if (value instanceof Number) return ((Number) value).longValue();
+      return Long.parseLong(value.toString());
+    }
+
+    double getDouble(int row) {
+      Object value = get(row);
+      if (value == null) return 0;
+      if (value instanceof Number) return ((Number) value).doubleValue();
+      return Double.parseDouble(value.toString());
+    }
+
+    static int grow(int length) {
+      return Math.max(16, length + (length >> 1));
+    }
+  }
+
+  static final class ObjectVector extends ColumnVector {
+    Object[] values = new Object[16];
+    int size;
+
+    @Override boolean add(Object value) {
+      if (size == values.length) {
+        values = Arrays.copyOf(values, grow(size));
+      }
+      values[size++] = value;
+      return true;
+    }
+
+    @Override Object get(int row) {
+      return values[row];
+    }
+
+    @Override void trim(int size) {
+      if (values.length != size) values = Arrays.copyOf(values, size);
+    }
+  }
+  /** Mapa de bits de los valores nulos de una columna. */
+  static final class NullBits {
+    long[] words = new long[1];
+
+    void set(int row) {
+      int word = row >>> 6;
+      if (word >= words.length) {
+        words = Arrays.copyOf(words, Math.max(word + 1, words.length * 2));
+      }
+      words[word] |= 1L << row;
+    }
+
+    boolean get(int row) {
+      int word = row >>> 6;
+      return word < words.length && (words[word] & (1L << row)) != 0;
+    }
+
+    void trim(int size) {
+      int length = (size + 63) >>> 6;
+      if (words.length > length) words = Arrays.copyOf(words, length);
+    }
+  }
+
+  /**
+   * Enteros de una sola clase (Long, Integer, Short o Byte), la del primer
+   * valor no nulo; otra clase no se acepta.
+   */
+  static final class LongVector extends ColumnVector {
+    final NullBits nulls = new NullBits();
+    Class<?> type;
+    long[] values = new long[16];
+    int size;
+
+    @Override boolean add(Object value) {
+      if (value != null) {
+        if (type == null) {
+          if (!(value instanceof Long || value instanceof Integer
+                  || value instanceof Short || value instanceof Byte)) return false;
+          type = value.getClass();
+        } else if (value.getClass() != type) {
+          return false;
+        }
+      }
+      if (size == values.length) {
+        values = Arrays.copyOf(values, grow(size));
+      }
+      if (value == null) nulls.set(size);
+      values[size++] = (value == null) ? 0 : ((Number) value).longValue();
+      return true;
+    }
+
+    /** Crea el mismo tipo de objeto que devolvio getObject. */
+    @Override Object get(int row) {
+      if (nulls.get(row)) return null;
+      long value = values[row];
+      if (type == Integer.class) return (int) value;
+      if (type == Short.class) return (short) value;
+      if (type == Byte.class) return (byte) value;
+      return value;
+    }
+
+    @Override boolean isNull(int row) {
+      return nulls.get(row);
+    }
+
+    @Override long getLong(int row) {
+      return values[row];
+    }
+
+    @Override double getDouble(int row) {
+      return values[row];
+    }
+
+    @Override void trim(int size) {
+      if (values.length != size) values = Arrays.copyOf(values, size);
+      nulls.trim(size);
+    }
+  }
+
+  /**
+   * Valores Double o Float, la clase del primer valor no nulo; otra clase no
+   * se acepta.
+   */
+  static final class DoubleVector extends ColumnVector {
+    final NullBits nulls = new NullBits();
+    Class<?> type;
+    double[] values = new double[16];
+    int size;
+
+    @Override boolean add(Object value) {
+      if (value != null) {
+        if (type == null) {
+          if (!(value instanceof Double || value instanceof Float)) return false;
+          type = value.getClass();
+        } else if (value.getClass() != type) {
+          return false;
+        }
+      }
+      if (size == values.length) {
+        values = Arrays.copyOf(values, grow(size));
+      }
+      if (value == null) nulls.set(size);
+      values[size++] = (value == null) ? 0 : ((Number) value).doubleValue();
+      return true;
+    }
+
+    @Override Object get(int row) {
+      if (nulls.get(row)) return null;
+      return (type == Float.class) ? (Object) (float) values[row] : (Object) values[row];
+    }
+
+    @Override boolean isNull(int row) {
+      return nulls.get(row);
+    }
+
+    @Override long getLong(int row) {
+      return (long) values[row];
+    }
+
+    @Override double getDouble(int row) {
+      return values[row];
+    }
+
+    @Override void trim(int size) {
+      if (values.length != size) values = Arrays.copyOf(values, size);
+      nulls.trim(size);
+    }
+  }
+}
@@ -0,0 +1,1146 @@
+package javax.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.StringReader;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.net.URL;
+import java.nio.charset.Charset;
+import java.sql.Array;
+import java.sql.Blob;
+import java.sql.Clob;
+import java.sql.Date;
+import java.sql.NClob;
+import java.sql.Ref;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.RowId;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.SQLWarning;
+import java.sql.SQLXML;
+import java.sql.Statement;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.Calendar;
+import java.util.Map;
+
+/**
+ * ResultSet de solo lectura sobre un {@link Rows} ya leido; no tiene
+ * sentencia ni coneccion. Se puede recorrer en ambos sentidos y varios
+ * RowsResultSet pueden compartir el mismo Rows; los <code>byte[]</code> se
+ * regresan copiados.
+ *
+ * Con un ResultSet de continuacion, al terminar las filas de Rows sigue
+ * leyendo las del ResultSet por bloques; entonces solo avanza hacia
+ * adelante y cierra el ResultSet al cerrarse.
+ */
+public class RowsResultSet implements ResultSet {
+
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+  /** Filas leidas por bloque del ResultSet de continuacion. */
+  private static final int FETCH_SIZE = 1000;
+
+  private Rows rows;
+  /** Fila actual, -1 antes de la primera y size despues de la ultima. */
+  private int cursor = -1;
+  private boolean wasNull;
+  private boolean closed;
+  /** ResultSet de continuacion, null cuando se termino de leer. */
+  private ResultSet rest;
+  private final boolean forwardOnly;
+  /** Filas de los bloques anteriores a rows. */
+  private int offset;
+
+  public RowsResultSet(Rows rows) {
+    this(rows, null);
+  }
+
+  /**
+   * @param rows primeras filas
+   * @param rest [opcional] ResultSet posicionado despues de la ultima fila
+   *      de <code>rows</code>
+   */
+  public RowsResultSet(Rows rows, ResultSet rest) {
+    this.rows = rows;
+    this.rest = rest;
+    this.forwardOnly = rest != null;
+  }
+
+  /**
+   * @return las filas del ResultSet; con ResultSet de continuacion, las del
+   *      bloque actual.
+   */
+  public Rows getRows() {
+    return rows;
+  }
+
+  private void checkOpen() throws SQLException {
+    if (closed) throw new SQLException("ResultSet closed");
+  }
+
+  private void checkScrollable() throws SQLException {
+    checkOpen();
+    if (forwardOnly) throw new SQLException("ResultSet is forward only");
+  }
+
+  /** Lee el siguiente bloque del ResultSet de continuacion. */
+  private void fetch() throws SQLException {
+    Rows next = Rows.from(rest, FETCH_SIZE);
+    if (next.size() < FETCH_SIZE) {
+      DBUtils.closeQuietly(rest);
+      rest = null;
+    }
+    if (next.isEmpty()) return;
+    offset += rows.size();
+    rows = next;
+    cursor = 0;
+  }
+
+  private static Object copy(Object value) {
+    return (value instanceof byte[]) ? ((byte[]) value).clone() : value;
+  }
+
+  private int column(int columnIndex) throws SQLException {
+    checkOpen();
+    if (cursor < 0 || cursor >= rows.size()) {
+      throw new SQLException("No current row");
+    }
+    if (columnIndex < 1 || columnIndex > rows.getColumnCount()) {
+      throw new SQLException("Column index out of range: " + columnIndex);
+    }
+    int column = columnIndex - 1;
+    wasNull = rows.isNull(cursor, column);
+    return column;
+  }
+
+  private Object value(int columnIndex) throws SQLException {
+    int column = column(columnIndex);
+    return wasNull ? null : rows.get(cursor, column);
+  }
+
+  private <T> T as(int columnIndex, Class<T> type) throws SQLException {
+    Object value = value(columnIndex);
+    if (value == null || type.isInstance(value)) return type.cast(value);
+    throw new SQLException("Column " + columnIndex + " is not a "
+            + type.getSimpleName() + ": " + value.getClass().getName());
+  }
+
+  private static SQLException readOnly() {
+    return new SQLFeatureNotSupportedException("ResultSet is read only");
+  }
+
+  @Override public boolean next() throws SQLException {
+    checkOpen();
+    if (cursor < rows.size()) cursor++;
+    if (cursor == rows.size() && rest != null) fetch();
+    return cursor < rows.size();
+  }
+
+  @Override public void close() {
+    closed = true;
+    if (rest != null) {
+      DBUtils.closeQuietly(rest);
+      rest = null;
+    }
+  }
+
+  @Override public boolean wasNull() throws SQLException {
+    return wasNull;
+  }
+
+  @Override public String getString(int columnIndex) throws SQLException {
+    Object value = value(columnIndex);
+    if (value instanceof byte[]) return new String((byte[]) value, UTF_8);
+    return (value == null) ? null : value.toString();
+  }
+
+  @Override public boolean getBoolean(int columnIndex) throws SQLException {
+    Object value = value(columnIndex);
+    if (value == null) return false;
+    if (value instanceof Boolean) return (Boolean) value;
+    if (value instanceof Number) return ((Number) value).doubleValue() != 0;
+    String s = value.toString().trim();
+    return s.equalsIgnoreCase("true") || s.equals("1");
+  }
+
+  @Override public byte getByte(int columnIndex) throws SQLException {
+    return (byte) getLong(columnIndex);
+  }
+
+  @Override public short getShort(int columnIndex) throws SQLException {
+    return (short) getLong(columnIndex);
+  }
+
+  @Override public int getInt(int columnIndex) throws SQLException {
+    return (int) getLong(columnIndex);
+  }
+
+  @Override public long getLong(int columnIndex) throws SQLException {
+    int column = column(columnIndex);
+    try {
+      return wasNull ? 0 : rows.getLong(cursor, column);
+    } catch (NumberFormatException e) {
+      throw new SQLException("Column " + columnIndex + " is not a number", e);
+    }
+  }
+
+  @Override public float getFloat(int columnIndex) throws SQLException {
+    return (float) getDouble(columnIndex);
+  }
+
+  @Override public double getDouble(int columnIndex) throws SQLException {
+    int column = column(columnIndex);
+    try {
+      return wasNull ? 0 : rows.getDouble(cursor, column);
+    } catch (NumberFormatException e) {
+      throw new SQLException("Column " + columnIndex + " is not a number", e);
+    }
+  }
+
+  @Deprecated
+  @Override public BigDecimal getBigDecimal(int columnIndex, int scale) throws SQLException {
+    BigDecimal value = getBigDecimal(columnIndex);
+    return (value == null) ? null : value.setScale(scale, RoundingMode.HALF_UP);
+  }
+
+  @Override public BigDecimal getBigDecimal(int columnIndex) throws SQLException {
+    Object value = value(columnIndex);
+    if (value == null || value instanceof BigDecimal) return (BigDecimal) value;
+    try {
+      return new BigDecimal(value.toString());
+    } catch (NumberFormatException e) {
+      throw new SQLException("Column " + columnIndex + " is not a number", e);
+    }
+  }
+
+  @Override public byte[] getBytes(int columnIndex) throws SQLException {
+    Object value = value(columnIndex);
+    if (value == null || value instanceof byte[]) return (byte[]) copy(value);
+    return value.toString().getBytes(UTF_8);
+  }
+
+  private long millis(int columnIndex) throws SQLException {
+    Object value = value(columnIndex);
+    if (value instanceof java.util.Date) return ((java.util.Date) value).getTime();
+    if (value instanceof Number) return ((Number) value).longValue();
+    String s = value.toString();
+    try {
+      return Timestamp.valueOf(s).getTime();
+    } catch (IllegalArgumentException e) {
+      try {
+        return Date.valueOf(s).getTime();
+      } catch (IllegalArgumentException e2) {
+        throw new SQLException("Column " + columnIndex + " is not a date: " + s, e2);
+      }
+    }
+  }
+
+  @Override public Date getDate(int columnIndex) throws SQLException {
+    Object value = value(columnIndex);
+    if (value == null || value instanceof Date) return (Date) value;
+    return new Date(millis(columnIndex));
+  }
+
+  @Override public Time getTime(int columnIndex) throws SQLException {
+    Object value = value(columnIndex);
+    if (value == null || value instanceof Time) return (Time) value;
+    if (value instanceof String) {
+      try {
+        return Time.valueOf((String) value);
+      } catch (IllegalArgumentException ignore) {
+        // Fecha y hora completas.
+      }
+    }
+    return new Time(millis(columnIndex));
+  }
+
+  @Override public Timestamp getTimestamp(int columnIndex) throws SQLException {
+    Object value = value(columnIndex);
+    if (value == null || value instanceof Timestamp) return (Timestamp) value;
+    return new Timestamp(millis(columnIndex));
+  }
+
+  /** El valor ya fue leido por el driver; se ignora el calendario. */
+  @Override public Date getDate(int columnIndex, Calendar cal) throws SQLException {
+    return getDate(columnIndex);
+  }
+
+  @Override public Time getTime(int columnIndex, Calendar cal) throws SQLException {
+    return getTime(columnIndex);
+  }
+
+  @Override public Timestamp getTimestamp(int columnIndex, Calendar cal) throws SQLException {
+    return getTimestamp(columnIndex);
+  }
+
+  @Override public InputStream getAsciiStream(int columnIndex) throws SQLException {
+    byte[] bytes = getBytes(columnIndex);
+    return (bytes == null) ? null : new ByteArrayInputStream(bytes);
+  }
+
+  @Deprecated
+  @Override public InputStream getUnicodeStream(int columnIndex) throws SQLException {
+    throw new SQLFeatureNotSupportedException("getUnicodeStream");
+  }
+
+  @Override public InputStream getBinaryStream(int columnIndex) throws SQLException {
+    byte[] bytes = getBytes(columnIndex);
+    return (bytes == null) ? null : new ByteArrayInputStream(bytes);
+  }
+
+  @Override public Reader getCharacterStream(int columnIndex) throws SQLException {
+    String s = getString(columnIndex);
+    return (s == null) ? null : new StringReader(s);
+  }
+
+  @Override public Reader getNCharacterStream(int columnIndex) throws SQLException {
+    return getCharacterStream(columnIndex);
+  }
+
+  @Override public String getNString(int columnIndex) throws SQLException {
+    return getString(columnIndex);
+  }
+
+  @Override public Object getObject(int columnIndex) throws SQLException {
+    return copy(value(columnIndex));
+  }
+
+  @Override public Object getObject(int columnIndex, Map<String, Class<?>> map) throws SQLException {
+    return getObject(columnIndex);
+  }
+
+  @Override public <T> T getObject(int columnIndex, Class<T> type) throws SQLException {
+    if (value(columnIndex) == null) return null;
+    Object value;
+    if (type == String.class) value = getString(columnIndex);
+    else if (type == Integer.class) value = getInt(columnIndex);
+    else if (type == Long.class) value = getLong(columnIndex);
+    else if (type == Double.class) value = getDouble(columnIndex);
+    else if (type == Float.class) value = getFloat(columnIndex);
+    else if (type == Short.class) value = getShort(columnIndex);
+    else if (type == Byte.class) value = getByte(columnIndex);
+    else if (type == Boolean.class) value = getBoolean(columnIndex);
+    else if (type == BigDecimal.class) value = getBigDecimal(columnIndex);
+    else if (type == byte[].class) value = getBytes(columnIndex);
+    else if (type == Date.class) value = getDate(columnIndex);
+    else if (type == Time.class) value = getTime(columnIndex);
+    else if (type == Timestamp.class) value = getTimestamp(columnIndex);
+    else return as(columnIndex, type);
+    return type.cast(value);
+  }
+
+  @Override public Ref getRef(int columnIndex) throws SQLException {
+    return as(columnIndex, Ref.class);
+  }
+
+  @Override public Blob getBlob(int columnIndex) throws SQLException {
+    return as(columnIndex, Blob.class);
+  }
+
+  @Override public Clob getClob(int columnIndex) throws SQLException {
+    return as(columnIndex, Clob.class);
+  }
+
+  @Override public Array getArray(int columnIndex) throws SQLException {
+    return as(columnIndex, Array.class);
+  }
+
+  @Override public URL getURL(int columnIndex) throws SQLException {
+    return as(columnIndex, URL.class);
+  }
+
+  @Override public RowId getRowId(int columnIndex) throws SQLException {
+    return as(columnIndex, RowId.class);
+  }
+
+  @Override public NClob getNClob(int columnIndex) throws SQLException {
+    return as(columnIndex, NClob.class);
+  }
+
+  @Override public SQLXML getSQLXML(int columnIndex) throws SQLException {
+    return as(columnIndex, SQLXML.class);
+  }
+
+  @Override public int findColumn(String columnLabel) throws SQLException {
+    checkOpen();
+    int index = rows.findColumn(columnLabel);
+    if (index < 0 && rows.labels != null) {
+      for (int i = 0; i < rows.labels.length; i++) {
+        if (columnLabel.equalsIgnoreCase(rows.labels[i])) {
+          index = i;
+          break;
+        }
+      }
+    }
+    if (index < 0) throw new SQLException("No such column: " + columnLabel);
+    return index + 1;
+  }
+
+  @Override public ResultSetMetaData getMetaData() throws SQLException {
+    checkOpen();
+    return new MetaData(rows);
+  }
+
+  @Override public SQLWarning getWarnings() throws SQLException {
+    return null;
+  }
+
+  @Override public void clearWarnings() throws SQLException {
+  }
+
+  @Override public String getCursorName() throws SQLException {
+    throw new SQLFeatureNotSupportedException("getCursorName");
+  }
+
+  @Override public boolean isBeforeFirst() throws SQLException {
+    checkOpen();
+    return cursor < 0 && rows.size() > 0;
+  }
+
+  @Override public boolean isAfterLast() throws SQLException {
+    checkOpen();
+    return cursor >= rows.size() && rows.size() > 0 && rest == null;
+  }
+
+  @Override public boolean isFirst() throws SQLException {
+    checkOpen();
+    return offset == 0 && cursor == 0 && rows.size() > 0;
+  }
+
+  /** Sin soporte con ResultSet de continuacion, como lo permite JDBC. */
+  @Override public boolean isLast() throws SQLException {
+    checkOpen();
+    if (forwardOnly) throw new SQLFeatureNotSupportedException("isLast");
+    return cursor == rows.size() - 1 && rows.size() > 0;
+  }
+
+  @Override public void beforeFirst() throws SQLException {
+    checkScrollable();
+    cursor = -1;
+  }
+
+  @Override public void afterLast() throws SQLException {
+    checkScrollable();
+    cursor = rows.size();
+  }
+
+  @Override public boolean first() throws SQLException {
+    return absolute(1);
+  }
+
+  @Override public boolean last() throws SQLException {
+    return absolute(-1);
+  }
+
+  @Override public int getRow() throws SQLException {
+    checkOpen();
+    return (cursor >= 0 && cursor < rows.size()) ? offset + cursor + 1 : 0;
+  }
+
+  @Override public boolean absolute(int row) throws SQLException {
+    checkScrollable();
+    int size = rows.size();
+    int target = (row >= 0) ? row - 1 : size + row;
+    cursor = Math.max(-1, Math.min(size, target));
+    return cursor >= 0 && cursor < size;
+  }
+
+  @Override public boolean relative(int rows) throws SQLException {
+    checkScrollable();
+    int size = this.rows.size();
+    cursor = Math.max(-1, Math.min(size, cursor + rows));
+    return cursor >= 0 && cursor < size;
+  }
+
+  @Override public boolean previous() throws SQLException {
+    checkScrollable();
+    if (cursor >= 0) cursor--;
+    return cursor >= 0;
+  }
+
+  @Override public void setFetchDirection(int direction) throws SQLException {
+  }
+
+  @Override public int getFetchDirection() throws SQLException {
+    return FETCH_FORWARD;
+  }
+
+  @Override public void setFetchSize(int rows) throws SQLException {
+  }
+
+  @Override public int getFetchSize() throws SQLException {
+    return 0;
+  }
+
+  @Override public int getType() throws SQLException {
+    return forwardOnly ? TYPE_FORWARD_ONLY : TYPE_SCROLL_INSENSITIVE;
+  }
+
+  @Override public int getConcurrency() throws SQLException {
+    return CONCUR_READ_ONLY;
+  }
+
+  @Override public int getHoldability() throws SQLException {
+    return HOLD_CURSORS_OVER_COMMIT;
+  }
+
+  @Override public boolean rowUpdated() throws SQLException {
+    return false;
+  }
+
+  @Override public boolean rowInserted() throws SQLException {
+    return false;
+  }
+
+  @Override public boolean rowDeleted() throws SQLException {
+    return false;
+  }
+
+  @Override public Statement getStatement() throws SQLException {
+    return null;
+  }
+
+  @Override public boolean isClosed() throws SQLException {
+    return closed;
+  }
+
+  @Override public <T> T unwrap(Class<T> iface) throws SQLException {
+    if (iface.isInstance(this)) return iface.cast(this);
+    throw new SQLException("Not a wrapper for " + iface.getName());
+  }
+
+  @Override public boolean isWrapperFor(Class<?> iface) throws SQLException {
+    return iface.isInstance(this);
+  }
+
+  @Override public void insertRow() throws SQLException {
+    throw readOnly();
+  }
+
+  @Override public void updateRow() throws SQLException {
+    throw readOnly();
+  }
+
+  @Override public void deleteRow() throws SQLException {
+    throw readOnly();
+  }
+
+  @Override public void refreshRow() throws SQLException {
+    throw readOnly();
+  }
+
+  @Override public void cancelRowUpdates() throws SQLException {
+    throw readOnly();
+  }
+
+  @Override public void moveToInsertRow() throws SQLException {
+    throw readOnly();
+  }
+
+  @Override public void moveToCurrentRow() throws SQLException {
+    throw readOnly();
+  }
+
+  // Por nombre de columna
+
+  @Override public String getString(String columnLabel) throws SQLException {
+    return getString(findColumn(columnLabel));
+  }
+
+  @Override public boolean getBoolean(String columnLabel) throws SQLException {
+    return getBoolean(findColumn(columnLabel));
+  }
+
+  @Override public byte getByte(String columnLabel) throws SQLException {
+    return getByte(findColumn(columnLabel));
+  }
+
+  @Override public short getShort(String columnLabel) throws SQLException {
+    return getShort(findColumn(columnLabel));
+  }
+
+  @Override public int getInt(String columnLabel) throws SQLException {
+    return getInt(findColumn(columnLabel));
+  }
+
+  @Override public long getLong(String columnLabel) throws SQLException {
+    return getLong(findColumn(columnLabel));
+  }
+
+  @Override public float getFloat(String columnLabel) throws SQLException {
+    return getFloat(findColumn(columnLabel));
+  }
+
+  @Override public double getDouble(String columnLabel) throws SQLException {
+    return getDouble(findColumn(columnLabel));
+  }
+
+  @Deprecated
+  @Override public BigDecimal getBigDecimal(String columnLabel, int scale) throws SQLException {
+    return getBigDecimal(findColumn(columnLabel), scale);
+  }
+
+  @Override public byte[] getBytes(String columnLabel) throws SQLException {
+    return getBytes(findColumn(columnLabel));
+  }
+
+  @Override public Date getDate(String columnLabel) throws SQLException {
+    return getDate(findColumn(columnLabel));
+  }
+
+  @Override public Time getTime(String columnLabel) throws SQLException {
+    return getTime(findColumn(columnLabel));
+  }
+
+  @Override public Timestamp getTimestamp(String columnLabel) throws SQLException {
+    return getTimestamp(findColumn(columnLabel));
+  }
+
+  @Override public InputStream getAsciiStream(String columnLabel) throws SQLException {
+    return getAsciiStream(findColumn(columnLabel));
+  }
+
+  @Deprecated
+  @Override public InputStream getUnicodeStream(String columnLabel) throws SQLException {
+    return getUnicodeStream(findColumn(columnLabel));
+  }
+
+  @Override public InputStream getBinaryStream(String columnLabel) throws SQLException {
+    return getBinaryStream(findColumn(columnLabel));
+  }
+
+  @Override public Object getObject(String columnLabel) throws SQLException {
+    return getObject(findColumn(columnLabel));
+  }
+
+  @Override public Reader getCharacterStream(String columnLabel) throws SQLException {
+    return getCharacterStream(findColumn(columnLabel));
+  }
+
+  @Override public BigDecimal getBigDecimal(String columnLabel) throws SQLException {
+    return getBigDecimal(findColumn(columnLabel));
+  }
+
+  @Override public void updateNull(int columnIndex) throws SQLException {
+    throw readOnly();
+  }
+
+  @Override public void updateBoolean(int columnIndex, boolean x) throws SQLException {
+    throw readOnly();
+  }
+
+  @Override public void updateByte(int columnIndex, byte x) throws SQLException {
+    throw readOnly();
+  }
+
+  @Override public void updateShort(int columnIndex, short x) throws SQLException {
+    throw readOnly();
+  }
+
+  @Override public void updateInt(int columnIndex, int x) throws SQLException {
+    throw readOnly();
+  }
+
+  @Override public void updateLong(int columnIndex, long x) throws SQLException {
+    throw readOnly();
+  }
+
+  @Override public void updateFloat(int columnIndex, float x) throws SQLException {
+    throw readOnly();
+  }
+
+  @Override public void updateDouble(int columnIndex, double x) throws SQLException {
+    throw readOnly();
+  }
+
+  @Override public void updateBigDecimal(int columnIndex, BigDecimal x) throws SQLException {
+    throw readOnly();
+  }
+
+  @Override public void updateString(int columnIndex, String x) throws SQLException {
+    throw readOnly();
+  }
+
+  @Override public void updateBytes(int columnIndex, byte[] x) throws SQLException {
+    throw readOnly();
+  }
+
+  @Override public void updateDate(int columnIndex, Date x) throws SQLException {
+    throw readOnly();
+  }
+
+  @Override public void updateTime(int columnIndex, Time x) throws SQLException {
+    throw readOnly();
+  }
+
+  @Override public void updateTimestamp(int columnIndex, Timestamp x) throws SQLException {
+    throw readOnly();
+  }
+
+  @Override public void updateAsciiStream(int columnIndex, InputStream x, int length) throws SQLException {
+    throw readOnly();
+  }
+
+  @Override public void updateBinaryStream(int columnIndex, InputStream x, int length) throws SQLException {
+    throw readOnly();
+  }
+
+  @Override public void updateCharacterStream(int columnIndex, Reader x, int length) throws SQLException {
+    throw readOnly();
+  }
+
+  @Override public void updateObject(int columnIndex, Object x, int scaleOrLength) throws SQLException {
+    throw readOnly();
+  }
+
+  @Override public void updateObject(int columnIndex, Object x) throws SQLException {
+    throw readOnly();
+  }
+
+  @Override public void updateNull(String columnLabel) throws SQLException {
+    throw readOnly();
+  }
+
+  @Override public void updateBoolean(String columnLabel, boolean x) throws SQLException {
+    throw readOnly();
+  }
+
+  @Override public void updateByte(String columnLabel, byte x) throws SQLException {
+    throw readOnly();
+  }
+
+  @Override public void updateShort(String columnLabel, short x) throws SQLException {
+    throw readOnly();
+  }
+
+  @Override public void updateInt(String columnLabel, int x) throws SQLException {
+    throw readOnly();
+  }
+
+  @Override public void updateLong(String columnLabel, long x) throws SQLException {
+    throw readOnly();
+  }
+
+  @Override public void updateFloat(String columnLabel, float x) throws SQLException {
+    throw readOnly();
+  }
+
+  @Override public void updateDouble(String columnLabel, double x) throws SQLException {
+    throw readOnly();
+  }
+
+  @Override public void updateBigDecimal(String columnLabel, BigDecimal x) throws SQLException {
+    throw readOnly();
+  }
+
+  @Override public void updateString(String columnLabel, String x) throws SQLException {
+    throw readOnly();
+  }
+
+  @Override public void updateBytes(String columnLabel, byte[] x) throws SQLException {
+    throw readOnly();
+  }
+
+  @Override public void updateDate(String columnLabel, Date x) throws SQLException {
+    throw readOnly();
+  }
+
+  @Override public void updateTime(String columnLabel, Time x) throws SQLException {
+    throw readOnly();
+  }
+
+  @Override public void updateTimestamp(String columnLabel, Timestamp x) throws SQLException {
+    throw readOnly();
+  }
+
+  @Override public void updateAsciiStream(String columnLabel, InputStream x, int length) throws SQLException {
+    throw readOnly();
+  }
+
+  @Override public void updateBinaryStream(String columnLabel, InputStream x, int length) throws SQLException {
+    throw readOnly();
+  }
+
+  @Override public void updateCharacterStream(String columnLabel, Reader reader, int length) throws SQLException {
+    throw readOnly();
+  }
+
+  @Override public void updateObject(String columnLabel, Object x, int scaleOrLength) throws SQLException {
+    throw readOnly();
+  }
+
+  @Override public void updateObject(String columnLabel, Object x) throws SQLException {
+    throw readOnly();
+  }
+
+  @Override public Object getObject(String columnLabel, Map<String, Class<?>> map) throws SQLException {
+    return getObject(findColumn(columnLabel), map);
+  }
+
+  @Override public Ref getRef(String columnLabel) throws SQLException {
+    return getRef(findColumn(columnLabel));
+  }
+
+  @Override public Blob getBlob(String columnLabel) throws SQLException {
+    return getBlob(findColumn(columnLabel));
+  }
+
+  @Override public Clob getClob(String columnLabel) throws SQLException {
+    return getClob(findColumn(columnLabel));
+  }
+
+  @Override public Array getArray(String columnLabel) throws SQLException {
+    return getArray(findColumn(columnLabel));
+  }
+
+  @Override public Date getDate(String columnLabel, Calendar cal) throws SQLException {
+    return getDate(findColumn(columnLabel), cal);
+  }
+
+  @Override public Time getTime(String columnLabel, Calendar cal) throws SQLException {
+    return getTime(findColumn(columnLabel), cal);
+  }
+
+  @Override public Timestamp getTimestamp(String columnLabel, Calendar cal) throws SQLException {
+    return getTimestamp(findColumn(columnLabel), cal);
+  }
+
+  @Override public URL getURL(String columnLabel) throws SQLException {
+    return getURL(findColumn(columnLabel));
+  }
+
+  @Override public void updateRef(int columnIndex, Ref x) throws SQLException {
+    throw readOnly();
+  }
+
+  @Override public void updateRef(String columnLabel, Ref x) throws SQLException {
+    throw readOnly();
+  }
+
+  @Override public void updateBlob(int columnIndex, Blob x) throws SQLException {
+    throw readOnly();
+  }
+
+  @Override public void updateBlob(String columnLabel, Blob x) throws SQLException {
+    throw readOnly();
+  }
+
+  @Override public void updateClob(int columnIndex, Clob x) throws SQLException {
+    throw readOnly();
+  }
+
+  @Override public void updateClob(String columnLabel, Clob x) throws SQLException {
+    throw readOnly();
+  }
+
+  @Override public void updateArray(int columnIndex, Array x) throws SQLException {
+    throw readOnly();
+  }
+
+  @Override public void updateArray(String columnLabel, Array x) throws SQLException {
+    throw readOnly();
+  }
+
+  @Override public RowId getRowId(String columnLabel) throws SQLException {
+    return getRowId(findColumn(columnLabel));
+  }
+
+  @Override public void updateRowId(int columnIndex, RowId x) throws SQLException {
+    throw readOnly();
+  }
+
+  @Override public void updateRowId(String columnLabel, RowId x) throws SQLException {
+    throw readOnly();
+  }
+
+  @Override public void updateNString(int columnIndex, String nString) throws SQLException {
+    throw readOnly();
+  }
+
+  @Override public void updateNString(String columnLabel, String nString) throws SQLException {
+    throw readOnly();
+  }
+
+  @Override public void updateNClob(int columnIndex, NClob nClob) throws SQLException {
+    throw readOnly();
+  }
+
+  @Override public void updateNClob(String columnLabel, NClob nClob) throws SQLException {
+    throw readOnly();
+  }
+
+  @Override public NClob getNClob(String columnLabel) throws SQLException {
+    return getNClob(findColumn(columnLabel));
+  }
+
+  @Override public SQLXML getSQLXML(String columnLabel) throws SQLException {
+    return getSQLXML(findColumn(columnLabel));
+  }
+
+  @Override public void updateSQLXML(int columnIndex, SQLXML xmlObject) throws SQLException {
+    throw readOnly();
+  }
+
+  @Override public void updateSQLXML(String columnLabel, SQLXML xmlObject) throws SQLException {
+    throw readOnly();
+  }
+
+  @Override public String getNString(String columnLabel) throws SQLException {
+    return getNString(findColumn(columnLabel));
+  }
+
+  @Override public Reader getNCharacterStream(String columnLabel) throws SQLException {
+    return getNCharacterStream(findColumn(columnLabel));
+  }
+
+  @Override public void updateNCharacterStream(int columnIndex, Reader x, long length) throws SQLException {
+    throw readOnly();
+  }
+
+  @Override public void updateNCharacterStream(String columnLabel, Reader reader, long length) throws SQLException {
+    throw readOnly();
+  }
+
+  @Override public void updateAsciiStream(int columnIndex, InputStream x, long length) throws SQLException {
+    throw readOnly();
+  }
+
+  @Override public void updateBinaryStream(int columnIndex, InputStream x, long length) throws SQLException {
+    throw readOnly();
+  }
+
+  @Override public void updateCharacterStream(int columnIndex, Reader x, long length) throws SQLException {
+    throw readOnly();
+  }
+
+  @Override public void updateAsciiStream(String columnLabel, InputStream x, long length) throws SQLException {
+    throw readOnly();
+  }
+
+  @Override public void updateBinaryStream(String columnLabel, InputStream x, long length) throws SQLException {
+    throw readOnly();
+  }
+
+  @Override public void updateCharacterStream(String columnLabel, Reader reader, long length) throws SQLException {
+    throw readOnly();
+  }
+
+  @Override public void updateBlob(int columnIndex, InputStream inputStream, long length) throws SQLException {
+    throw readOnly();
+  }
+
+  @Override public void updateBlob(String columnLabel, InputStream inputStream, long length) throws SQLException {
+    throw readOnly();
+  }
+
+  @Override public void updateClob(int columnIndex, Reader reader, long length) throws SQLException {
+    throw readOnly();
+  }
+
+  @Override public void updateClob(String columnLabel, Reader reader, long length) throws SQLException {
+    throw readOnly();
+  }
+
+  @Override public void updateNClob(int columnIndex, Reader reader, long length) throws SQLException {
+    throw readOnly();
+  }
+
+  @Override public void updateNClob(String columnLabel, Reader reader, long length) throws SQLException {
+    throw readOnly();
+  }
+
+  @Override public void updateNCharacterStream(int columnIndex, Reader x) throws SQLException {
+    throw readOnly();
+  }
+
+  @Override public void updateNCharacterStream(String columnLabel, Reader reader) throws SQLException {
+    throw readOnly();
+  }
+
+  @Override public void updateAsciiStream(int columnIndex, InputStream x) throws SQLException {
+    throw readOnly();
+  }
+
+  @Override public void updateBinaryStream(int columnIndex, InputStream x) throws SQLException {
+    throw readOnly();
+  }
+
+  @Override public void updateCharacterStream(int columnIndex, Reader x) throws SQLException {
+    throw readOnly();
+  }
+
+  @Override public void updateAsciiStream(String columnLabel, InputStream x) throws SQLException {
+    throw readOnly();
+  }
+
+  @Override public void updateBinaryStream(String columnLabel, InputStream x) throws SQLException {
+    throw readOnly();
+  }
+
+  @Override public void updateCharacterStream(String columnLabel, Reader reader) throws SQLException {
+    throw readOnly();
+  }
+
+  @Override public void updateBlob(int columnIndex, InputStream inputStream) throws SQLException {
+    throw readOnly();
+  }
+
+  @Override public void updateBlob(String columnLabel, InputStream inputStream) throws SQLException {
+    throw readOnly();
+  }
+
+  @Override public void updateClob(int columnIndex, Reader reader) throws SQLException {
+    throw readOnly();
+  }
+
+  @Override public void updateClob(String columnLabel, Reader reader) throws SQLException {
+    throw readOnly();
+  }
+
+  @Override public void updateNClob(int columnIndex, Reader reader) throws SQLException {
+    throw readOnly();
+  }
+
+  @Override public void updateNClob(String columnLabel, Reader reader) throws SQLException {
+    throw readOnly();
+  }
+
+  @Override public <T> T getObject(String columnLabel, Class<T> type) throws SQLException {
+    return getObject(findColumn(columnLabel), type);
+  }
+
+  /**
+   * Metadatos de las columnas tal como los reporto el driver al leer las
+   * filas.
+   */
+  static final class MetaData implements ResultSetMetaData {
+    private final Rows rows;
+
+    MetaData(Rows rows) {
+      this.rows = rows;
+    }
+
+    private int index(int column) throws SQLException {
+      if (column < 1 || column > rows.getColumnCount()) {
+        throw new SQLException("Column index out of range: " + column);
+      }
+      return column - 1;
+    }
+
+    @Override public int getColumnCount() throws SQLException {
+      return rows.getColumnCount();
+    }
+
+    @Override public boolean isAutoIncrement(int column) throws SQLException {
+      return false;
+    }
+
+    @Override public boolean isCaseSensitive(int column) throws SQLException {
+      return true;
+    }
+
+    @Override public boolean isSearchable(int column) throws SQLException {
+      return true;
+    }
+
+    @Override public boolean isCurrency(int column) throws SQLException {
+      return false;
+    }
+
+    @Override public int isNullable(int column) throws SQLException {
+      return columnNullableUnknown;
+    }
+
+    @Override public boolean isSigned(int column) throws SQLException {
+      switch (getColumnType(column)) {
+        case Types.TINYINT:
+        case Types.SMALLINT:
+        case Types.INTEGER:
+        case Types.BIGINT:
+        case Types.REAL:
+        case Types.FLOAT:
+        case Types.DOUBLE:
+        case Types.NUMERIC:
+        case Types.DECIMAL:
+          return true;
+        default:
+          return false;
+      }
+    }
+
+    @Override public int getColumnDisplaySize(int column) throws SQLException {
+      return 0;
+    }
+
+    @Override public String getColumnLabel(int column) throws SQLException {
+      int i = index(column);
+      return (rows.labels != null) ? rows.labels[i] : rows.getColumnName(i);
+    }
+
+    @Override public String getColumnName(int column) throws SQLException {
+      return rows.getColumnName(index(column));
+    }
+
+    @Override public String getSchemaName(int column) throws SQLException {
+      return "";
+    }
+
+    @Override public int getPrecision(int column) throws SQLException {
+      return 0;
+    }
+
+    @Override public int getScale(int column) throws SQLException {
+      return 0;
+    }
+
+    @Override public String getTableName(int column) throws SQLException {
+      return "";
+    }
+
+    @Override public String getCatalogName(int column) throws SQLException {
+      return "";
+    }
+
+    @Override public int getColumnType(int column) throws SQLException {
+      int i = index(column);
+      return (rows.types != null) ? rows.types[i] : Types.OTHER;
+    }
+
+    @Override public String getColumnTypeName(int column) throws SQLException {
+      int i = index(column);
+      return (rows.typeNames != null) ? rows.typeNames[i] : "";
+    }
+
+    @Override public boolean isReadOnly(int column) throws SQLException {
+      return true;
+    }
+
+    @Override public boolean isWritable(int column) throws SQLException {
+      return false;
+    }
+
+    @Override public boolean isDefinitelyWritable(int column) throws SQLException {
+      return false;
+    }
+
+    @Override public String getColumnClassName(int column) throws SQLException {
+      int i = index(column);
+      return (rows.classNames != null) ? rows.classNames[i] 
+              : Object.class.getName();
+    }
+
+    @Override public <T> T unwrap(Class<T> iface) throws SQLException {
+      if (iface.isInstance(this)) return iface.cast(this);
+      throw new SQLException("Not a wrapper for " + iface.getName());
+    }
+
+    @Override public boolean isWrapperFor(Class<?> iface) throws SQLException {
+      return iface.isInstance(this);
+    }
+  }
+}
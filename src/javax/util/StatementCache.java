@@ -0,0 +1,209 @@
+package javax.util;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Cache LRU de sentencias preparadas de una coneccion.
+ *
+ * Las sentencias se prestan con {@link #acquire(String, int)} y se regresan
+ * con {@link #release(PreparedStatement)}; mientras estan prestadas no se
+ * comparten, de modo que un ResultSet abierto nunca se cierra por otra
+ * consulta con el mismo sql.
+ */
+public class StatementCache implements AutoCloseable {
+
+  public static final int DEFAULT_SIZE = 64;
+
+  private final Connection conn;
+  private final LinkedHashMap<Key, PreparedStatement> idle;
+  private final IdentityHashMap<PreparedStatement, Key> leased =
+          new IdentityHashMap<PreparedStatement, Key>();
+  private int maxSize;
+  private long hitCount;
+  private long missCount;
+
+  public StatementCache(Connection conn) {
+    this(conn, DEFAULT_SIZE);
+  }
+  public StatementCache(Connection conn, int maxSize) {
+    this.conn = conn;
+    this.maxSize = maxSize;
+    this.idle = new LinkedHashMap<Key, PreparedStatement>(16, 0.75f, true);
+  }
+
+  public PreparedStatement acquire(String sql) throws SQLException {
+    return acquire(sql, Statement.NO_GENERATED_KEYS);
+  }
+
+  /**
+   * Obtiene una sentencia preparada del cache o la compila si no existe.
+   *
+   * @param sql instruccion a preparar
+   * @param autoGeneratedKeys Statement.RETURN_GENERATED_KEYS o
+   *      Statement.NO_GENERATED_KEYS
+   *
+   * @return PreparedStatement setencia preparada
+   *
+   * @throws SQLException
+   */
+  public PreparedStatement acquire(String sql, int autoGeneratedKeys)
+  throws SQLException {
+    final Key key = new Key(sql, autoGeneratedKeys);
+    synchronized (this) {
+      PreparedStatement ps = idle.remove(key);
+      if (ps != null) {
+        hitCount++;
+        leased.put(ps, key);
+        return ps;
+      }
+      missCount++;
+    }
+
+    PreparedStatement ps = (autoGeneratedKeys == Statement.NO_GENERATED_KEYS)
+            ? conn.prepareStatement(sql)
+            : conn.prepareStatement(sql, autoGeneratedKeys);
+    synchronized (this) {
+      leased.put(ps, key);
+    }
+    return ps;
+  }
+
+  /**
+   * Regresa una sentencia al cache para su reutilizacion. Si ya existe una
+   * sentencia ociosa con el mismo sql o el cache esta deshabilitado, la
+   * sentencia se cierra.
+   */
+  public void release(PreparedStatement ps) {
+    if (ps == null) return;
+
+    Key key;
+    synchronized (this) {
+      key = leased.remove(ps);
+    }
+    if (key == null) {
+      // No pertenece al cache o ya fue regresada.
+      return;
+    }
+    if (maxSize <= 0 || !clear(ps)) {
+      DBUtils.closeQuietly(ps);
+      return;
+    }
+
+    List<PreparedStatement> closing = new ArrayList<PreparedStatement>(1);
+    synchronized (this) {
+      PreparedStatement old = idle.put(key, ps);
+      if (old != null && old != ps) closing.add(old);
+      trimLocked(closing);
+    }
+    for (PreparedStatement stmt : closing) {
+      DBUtils.closeQuietly(stmt);
+    }
+  }
+
+  /**
+   * Cierra una sentencia prestada sin regresarla al cache, p. ej. despues de
+   * un error.
+   */
+  public void discard(PreparedStatement ps) {
+    if (ps == null) return;
+    synchronized (this) {
+      leased.remove(ps);
+    }
+    DBUtils.closeQuietly(ps);
+  }
+
+  private static boolean clear(PreparedStatement ps) {
+    try {
+      if (ps.isClosed()) return false;
+      ps.clearParameters();
+      return true;
+    } catch (SQLException e) {
+      return false;
+    }
+  }
+
+  private void trimLocked(List<PreparedStatement> closing) {
+    Iterator<Map.Entry<Key, PreparedStatement>> it = idle.entrySet().iterator();
+    while (idle.size() > Math.max(maxSize, 0) && it.hasNext()) {
+      closing.add(it.next().getValue());
+      it.remove();
+    }
+  }
+
+  public int getMaxSize() {
+    return maxSize;
+  }
+
+  /**
+   * Establece el numero maximo de sentencias ociosas. Cero deshabilita el cache.
+   */
+  public void setMaxSize(int maxSize) {
+    List<PreparedStatement> closing = new ArrayList<PreparedStatement>();
+    synchronized (this) {
+      this.maxSize = maxSize;
+      trimLocked(closing);
+    }
+    for (PreparedStatement stmt : closing) {
+      DBUtils.closeQuietly(stmt);
+    }
+  }
+
+  public synchronized int size() {
+    return idle.size();
+  }
+
+  public synchronized long getHitCount() {
+    return hitCount;
+  }
+
+  public synchronized long getMissCount() {
+    return missCount;
+  }
+
+  /** Cierra todas las sentencias ociosas. */
+  @Override public void close() {
+    List<PreparedStatement> closing;
+    synchronized (this) {
+      closing = new ArrayList<PreparedStatement>(idle.values());
+      idle.clear();
+    }
+    for (PreparedStatement stmt : closing) {
+      DBUtils.closeQuietly(stmt);
+    }
+  }
+
+  @Override public synchronized String toString() {
+    return "StatementCache{size=" + idle.size() + ", maxSize=" + maxSize
+            + ", hits=" + hitCount + ", misses=" + missCount + '}';
+  }
+
+  static final class Key {
+    final String sql;
+    final int flags;
+
+    Key(String sql, int flags) {
+      this.sql = sql;
+      this.flags = flags;
+    }
+
+    @Override public int hashCode() {
+      return 31 * sql.hashCode() + flags;
+    }
+
+    @Override public boolean equals(Object o) {
+      if (this == o) return true;
+      if (!(o instanceof Key)) return false;
+      Key other = (Key) o;
+      return flags == other.flags && sql.equals(other.sql);
+    }
+  }
+}
@@ -18,13 +18,15 @@ public class TestMysql {
   
   
   public List<Map<String, Object>> get() throws SQLException {
+    SQLDatabase db = null;
     ResultSet rs = null;
     try {
-      SQLDatabase db = src.getDatabase();
+      db = src.getDatabase();
       rs = db.query("SELECT * FROM alumno WHERE id > ? ORDER BY nombre", 2);
       return DBUtils.fromList(rs);
     } finally {
       DBUtils.closeQuietly(rs);
+      DBUtils.closeQuietly(db);
       src.close();
     }
   }